@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package reactor.ipc.netty.channel;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+import reactor.ipc.netty.NettyContext;
+import reactor.ipc.netty.NettyInbound;
+import reactor.ipc.netty.NettyOutbound;
+import reactor.ipc.netty.NettyPipeline;
+import reactor.ipc.netty.options.ServerOptions;
+
+/**
+ * A detached {@link ContextHandler} binding {@link ChannelOperations} to an
+ * {@link EmbeddedChannel} for benchmarking the reactive bridge in isolation.
+ *
+ * @author agent
+ */
+final class BenchmarkContextHandler extends ContextHandler<Channel> {
+
+	/**
+	 * Bind new {@link ChannelOperations} and a {@link NettyPipeline#ReactiveBridge} to
+	 * the given channel, releasing any inbound message reaching the pipeline tail.
+	 *
+	 * @param channel the channel to bind
+	 * @param bridge the bridge handler to install
+	 *
+	 * @return the bound {@link ChannelOperations}
+	 */
+	static ChannelOperations<NettyInbound, NettyOutbound> bind(EmbeddedChannel channel,
+			ChannelOperationsHandler bridge) {
+		ChannelOperations<NettyInbound, NettyOutbound> ops =
+				ChannelOperations.bind(channel,
+						ChannelOperations.noopHandler(),
+						new BenchmarkContextHandler());
+
+		channel.attr(ChannelOperations.OPERATIONS_ATTRIBUTE_KEY)
+		       .set(ops);
+		channel.pipeline()
+		       .addLast(NettyPipeline.ReactiveBridge, bridge)
+		       .addLast(RELEASE_INBOUND);
+		return ops;
+	}
+
+	BenchmarkContextHandler() {
+		super((ch, c) -> {
+			throw new UnsupportedOperationException();
+		}, ServerOptions.create(), null, null);
+	}
+
+	@Override
+	public void fireContextActive(NettyContext context) {
+	}
+
+	@Override
+	public void fireContextError(Throwable t) {
+	}
+
+	@Override
+	public void setFuture(Future<?> future) {
+	}
+
+	@Override
+	public void dispose() {
+	}
+
+	@Override
+	protected void doPipeline(ChannelPipeline pipeline) {
+	}
+
+	@Override
+	protected void terminateChannel(Channel channel) {
+	}
+
+	@Override
+	protected Publisher<Void> onCloseOrRelease(Channel channel) {
+		return Mono.never();
+	}
+
+	static final ChannelHandler RELEASE_INBOUND = new ReleaseInboundHandler();
+
+	@ChannelHandler.Sharable
+	static final class ReleaseInboundHandler extends ChannelInboundHandlerAdapter {
+
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg) {
+			ReferenceCountUtil.release(msg);
+		}
+	}
+}
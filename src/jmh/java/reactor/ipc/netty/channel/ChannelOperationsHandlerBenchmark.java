@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package reactor.ipc.netty.channel;
+
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Flux;
+
+/**
+ * Outbound write draining and small-packet inbound dispatch of
+ * {@link ChannelOperationsHandler}.
+ *
+ * @author agent
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class ChannelOperationsHandlerBenchmark {
+
+	@Param({"16", "1024"})
+	int payloadSize;
+
+	@Param({"16"})
+	int itemsPerPublisher;
+
+	EmbeddedChannel channel;
+	ByteBuf         payload;
+	Flux<ByteBuf>   publisher;
+
+	@Setup
+	public void setup() {
+		channel = new EmbeddedChannel();
+		BenchmarkContextHandler.bind(channel, new ChannelOperationsHandler())
+		                       .receiveObject()
+		                       .subscribe();
+
+		payload = Unpooled.directBuffer(payloadSize)
+		                  .writeZero(payloadSize);
+		publisher = Flux.range(0, itemsPerPublisher)
+		                .map(i -> payload.retainedDuplicate());
+	}
+
+	@TearDown
+	public void tearDown() {
+		channel.finishAndReleaseAll();
+		payload.release();
+	}
+
+	@Benchmark
+	public void writeAndFlush(Blackhole bh) {
+		channel.writeAndFlush(payload.retainedDuplicate());
+		releaseOutbound(bh);
+	}
+
+	@Benchmark
+	public void writePublisher(Blackhole bh) {
+		channel.writeAndFlush(publisher);
+		releaseOutbound(bh);
+	}
+
+	@Benchmark
+	public void readInbound() {
+		channel.pipeline()
+		       .fireChannelRead(payload.retainedDuplicate());
+	}
+
+	void releaseOutbound(Blackhole bh) {
+		Object msg;
+		while ((msg = channel.readOutbound()) != null) {
+			bh.consume(msg);
+			ReferenceCountUtil.release(msg);
+		}
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package reactor.ipc.netty.channel;
+
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Inbound draining of {@link FluxReceive} for an unbounded receiver (fast path) and
+ * a receiver requesting one element at a time (queue path).
+ *
+ * @author agent
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class FluxReceiveBenchmark {
+
+	@Param({"true", "false"})
+	boolean unbounded;
+
+	@Param({"64"})
+	int payloadSize;
+
+	EmbeddedChannel channel;
+	ByteBuf         payload;
+
+	@Setup
+	public void setup(Blackhole bh) {
+		channel = new EmbeddedChannel();
+		BenchmarkContextHandler.bind(channel, new ChannelOperationsHandler())
+		                       .receiveObject()
+		                       .subscribe(new ConsumingSubscriber(bh, unbounded));
+
+		payload = Unpooled.directBuffer(payloadSize)
+		                  .writeZero(payloadSize);
+	}
+
+	@TearDown
+	public void tearDown() {
+		channel.finishAndReleaseAll();
+		payload.release();
+	}
+
+	@Benchmark
+	public void receive() {
+		channel.pipeline()
+		       .fireChannelRead(payload.retainedDuplicate());
+	}
+
+	static final class ConsumingSubscriber implements Subscriber<Object> {
+
+		final Blackhole bh;
+		final boolean   unbounded;
+
+		Subscription s;
+
+		ConsumingSubscriber(Blackhole bh, boolean unbounded) {
+			this.bh = bh;
+			this.unbounded = unbounded;
+		}
+
+		@Override
+		public void onSubscribe(Subscription s) {
+			this.s = s;
+			s.request(unbounded ? Long.MAX_VALUE : 1L);
+		}
+
+		@Override
+		public void onNext(Object o) {
+			bh.consume(o);
+			if (!unbounded) {
+				s.request(1L);
+			}
+		}
+
+		@Override
+		public void onError(Throwable t) {
+		}
+
+		@Override
+		public void onComplete() {
+		}
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package reactor.ipc.netty.http.multipart;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.Flux;
+
+/**
+ * Tokenizing of a multipart body into body and delimiter tokens.
+ *
+ * @author agent
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class MultipartTokenizerBenchmark {
+
+	static final String BOUNDARY = "----reactor-netty-boundary";
+
+	@Param({"4"})
+	int parts;
+
+	@Param({"256"})
+	int partSize;
+
+	ByteBuf body;
+
+	@Setup
+	public void setup() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < parts; i++) {
+			sb.append("--")
+			  .append(BOUNDARY)
+			  .append("\r\nContent-Disposition: form-data; name=\"part")
+			  .append(i)
+			  .append("\"\r\n\r\n");
+			for (int j = 0; j < partSize; j++) {
+				sb.append((char) ('a' + j % 26));
+			}
+			sb.append("\r\n");
+		}
+		sb.append("--")
+		  .append(BOUNDARY)
+		  .append("--\r\n");
+		body = Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(sb.toString()
+		                                                            .getBytes(StandardCharsets.US_ASCII)));
+	}
+
+	@Benchmark
+	public void tokenize(Blackhole bh) {
+		Flux.just(body.duplicate())
+		    .subscribe(new MultipartTokenizer(BOUNDARY, new TokenSubscriber(bh)));
+	}
+
+	static final class TokenSubscriber
+			implements Subscriber<MultipartTokenizer.Token> {
+
+		final Blackhole bh;
+
+		TokenSubscriber(Blackhole bh) {
+			this.bh = bh;
+		}
+
+		@Override
+		public void onSubscribe(Subscription s) {
+			s.request(Long.MAX_VALUE);
+		}
+
+		@Override
+		public void onNext(MultipartTokenizer.Token token) {
+			bh.consume(token);
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			bh.consume(t);
+		}
+
+		@Override
+		public void onComplete() {
+		}
+	}
+}
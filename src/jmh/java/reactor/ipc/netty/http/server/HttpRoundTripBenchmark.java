@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package reactor.ipc.netty.http.server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.logging.LoggingHandler;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+import reactor.ipc.netty.NettyContext;
+import reactor.ipc.netty.channel.ContextHandler;
+import reactor.ipc.netty.http.client.HttpClient;
+
+/**
+ * Keep-alive HTTP/1.1 request-response round trips, either through an
+ * {@link EmbeddedChannel} running the full server pipeline or through a loopback
+ * {@link HttpServer} and {@link HttpClient}.
+ *
+ * @author agent
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HttpRoundTripBenchmark {
+
+	static final BiFunction<? super HttpServerRequest, ? super HttpServerResponse, ? extends Publisher<Void>>
+			HANDLER = (req, res) -> res.sendString(Mono.just("Hello World!"));
+
+	@State(Scope.Thread)
+	public static class Embedded {
+
+		EmbeddedChannel channel;
+		ByteBuf         request;
+
+		@Setup
+		public void setup() {
+			Mono.<NettyContext>create(sink -> channel =
+					new EmbeddedChannel(ContextHandler.newServerContext(sink,
+							HttpServerOptions.create(),
+							new LoggingHandler(HttpRoundTripBenchmark.class),
+							(ch, c) -> HttpServerOperations.bindHttp(ch, HANDLER, c))))
+			    .subscribe();
+
+			request = Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(
+					("GET /hello HTTP/1.1\r\n" + "Host: localhost\r\n" + "\r\n").getBytes(
+							StandardCharsets.US_ASCII)));
+		}
+
+		@TearDown
+		public void tearDown() {
+			channel.finishAndReleaseAll();
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Loopback {
+
+		NettyContext server;
+		HttpClient   client;
+
+		@Setup
+		public void setup() {
+			server = HttpServer.create(0)
+			                   .newHandler(HANDLER)
+			                   .block();
+			client = HttpClient.create(server.address()
+			                                 .getPort());
+		}
+
+		@TearDown
+		public void tearDown() {
+			server.dispose();
+		}
+	}
+
+	@Benchmark
+	public void embedded(Embedded state, Blackhole bh) {
+		EmbeddedChannel channel = state.channel;
+		channel.writeInbound(state.request.duplicate());
+		channel.runPendingTasks();
+
+		Object msg;
+		while ((msg = channel.readOutbound()) != null) {
+			bh.consume(msg);
+			ReferenceCountUtil.release(msg);
+		}
+	}
+
+	@Benchmark
+	public String loopback(Loopback state) {
+		return state.client.get("/hello")
+		                   .flatMap(res -> res.receive()
+		                                      .aggregate()
+		                                      .asString())
+		                   .next()
+		                   .block();
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package reactor.ipc.netty.http.server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.logging.LoggingHandler;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Mono;
+import reactor.ipc.netty.NettyContext;
+import reactor.ipc.netty.channel.ContextHandler;
+
+/**
+ * Keep-alive requests routed through {@link HttpServerRoutes} with a growing number
+ * of templated routes, targeting the last registered one.
+ *
+ * @author agent
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class HttpServerRoutesBenchmark {
+
+	@Param({"10", "300"})
+	int routeCount;
+
+	EmbeddedChannel channel;
+	ByteBuf         request;
+
+	@Setup
+	public void setup() {
+		HttpServerRoutes routes = HttpServerRoutes.newRoutes();
+		for (int i = 0; i < routeCount; i++) {
+			String name = "resource" + i;
+			routes.get("/api/" + name + "/{id}/items/{item}",
+					(req, res) -> res.sendString(Mono.just(name + req.param("id"))));
+		}
+
+		Mono.<NettyContext>create(sink -> channel =
+				new EmbeddedChannel(ContextHandler.newServerContext(sink,
+						HttpServerOptions.create(),
+						new LoggingHandler(HttpServerRoutesBenchmark.class),
+						(ch, c) -> HttpServerOperations.bindHttp(ch, routes, c))))
+		    .subscribe();
+
+		request = Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(("GET /api/resource" + (routeCount - 1) + "/42/items/7 HTTP/1.1\r\n" + "Host: localhost\r\n" + "\r\n").getBytes(
+				StandardCharsets.US_ASCII)));
+	}
+
+	@TearDown
+	public void tearDown() {
+		channel.finishAndReleaseAll();
+	}
+
+	@Benchmark
+	public void routeLast(Blackhole bh) {
+		channel.writeInbound(request.duplicate());
+		channel.runPendingTasks();
+
+		Object msg;
+		while ((msg = channel.readOutbound()) != null) {
+			bh.consume(msg);
+			ReferenceCountUtil.release(msg);
+		}
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package reactor.ipc.netty.http.server;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * URI template matching and path parameter extraction for a repeated uri and for a
+ * stream of distinct uris, the latter exercising the template caches.
+ *
+ * @author agent
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class UriPathTemplateBenchmark {
+
+	static final int DISTINCT_URIS = 4096;
+
+	HttpPredicate.UriPathTemplate template;
+	String                        uri;
+	String[]                      distinctUris;
+	int                           index;
+
+	@Setup
+	public void setup() {
+		template = new HttpPredicate.UriPathTemplate("/api/users/{id}/orders/{order}");
+		uri = "/api/users/42/orders/1337";
+		distinctUris = new String[DISTINCT_URIS];
+		for (int i = 0; i < DISTINCT_URIS; i++) {
+			distinctUris[i] = "/api/users/" + i + "/orders/" + (i * 31);
+		}
+	}
+
+	@Benchmark
+	public boolean matches() {
+		return template.matches(uri);
+	}
+
+	@Benchmark
+	public Object match() {
+		return template.match(uri);
+	}
+
+	@Benchmark
+	public Object matchDistinct() {
+		return template.match(distinctUris[index++ & (DISTINCT_URIS - 1)]);
+	}
+}
@@ -35,7 +35,15 @@ import org.reactivestreams.Publisher;
  * -> http server & keep-alive ? [HttpKeepAlive]
  * => [BridgeSetup]
  * -> http ws ? [HttpAggregator]
+ * -> http server & h2c ? [Http2PriorKnowledge]
  * -> http ? [HttpCodecHandler]
+ * -> http client & compression ? [HttpDecompressor]
+ * -> http server & h2c ? [HttpServerUpgrade]
+ * -> http server & h2c ? [Http2ServerUpgrade]
+ * -> http server & compression ? [HttpCompressor]
+ * -> http server & response buffering ? [HttpResponseBuffer]
+ * -> http server ? [HttpPipelining]
+ * -> http2 connection ? [Http2Multiplex]
  * -> onWriteIdle ? [OnChannelWriteIdle]
  * -> onReadIdle ? [OnChannelReadIdle]
  * -> http form/multipart ? [ChunkedWriter]
@@ -47,19 +55,27 @@ import org.reactivestreams.Publisher;
  */
 public interface NettyPipeline {
 
-	String SslHandler         = "sslHandler";
-	String SslReader          = "sslReader";
-	String SslLoggingHandler  = "sslLoggingHandler";
-	String ProxyHandler       = "proxyHandler";
-	String ReactiveBridge     = "reactiveBridge";
-	String BridgeSetup        = "bridgeSetup";
-	String HttpCodecHandler   = "httpCodecHandler";
-	String HttpAggregator     = "reactorHttpAggregator";
-	String HttpKeepAlive      = "httpKeepAlive";
-	String OnChannelWriteIdle = "onChannelWriteIdle";
-	String OnChannelReadIdle  = "onChannelReadIdle";
-	String ChunkedWriter      = "chunkedWriter";
-	String LoggingHandler     = "loggingHandler";
+	String SslHandler          = "sslHandler";
+	String SslReader           = "sslReader";
+	String SslLoggingHandler   = "sslLoggingHandler";
+	String ProxyHandler        = "proxyHandler";
+	String ReactiveBridge      = "reactiveBridge";
+	String BridgeSetup         = "bridgeSetup";
+	String HttpCodecHandler    = "httpCodecHandler";
+	String HttpAggregator      = "reactorHttpAggregator";
+	String HttpKeepAlive       = "httpKeepAlive";
+	String HttpCompressor      = "httpCompressor";
+	String HttpDecompressor    = "httpDecompressor";
+	String HttpResponseBuffer  = "httpResponseBuffer";
+	String HttpPipelining      = "httpPipelining";
+	String HttpServerUpgrade   = "httpServerUpgrade";
+	String Http2ServerUpgrade  = "http2ServerUpgrade";
+	String Http2PriorKnowledge = "http2PriorKnowledge";
+	String Http2Multiplex      = "http2Multiplex";
+	String OnChannelWriteIdle  = "onChannelWriteIdle";
+	String OnChannelReadIdle   = "onChannelReadIdle";
+	String ChunkedWriter       = "chunkedWriter";
+	String LoggingHandler      = "loggingHandler";
 
 	/**
 	 * A builder for sending strategy, similar prefixed methods being mutually exclusive
@@ -74,6 +90,18 @@ public interface NettyPipeline {
 		 */
 		SendOptions flushOnBoundary();
 
+		/**
+		 * Make the underlying channel flush on a terminated {@link Publisher} only. Each
+		 * group of {@link NettyOutbound#sendGroups(Publisher)} is sent as a
+		 * {@link Publisher} of its own and is still flushed once complete. Default to
+		 * {@link #flushOnBoundary()} for implementations without group boundaries.
+		 *
+		 * @return this builder
+		 */
+		default SendOptions flushOnComplete() {
+			return flushOnBoundary();
+		}
+
 		/**
 		 * Make the underlying channel flush item by item.
 		 *
@@ -81,6 +109,17 @@ public interface NettyPipeline {
 		 */
 		SendOptions flushOnEach();
 
+		/**
+		 * Make the underlying channel flush once per event loop iteration, coalescing
+		 * every item written during that iteration. Default to {@link #flushOnEach()}
+		 * for implementations not bound to an event loop.
+		 *
+		 * @return this builder
+		 */
+		default SendOptions flushOnLoop() {
+			return flushOnEach();
+		}
+
 		/**
 		 * Make the underlying channel flush on a memory threshold expressed in bytes.
 		 * This should enable {@link #trackPendingBytes(boolean)} to evaluate written
@@ -144,7 +183,9 @@ public interface NettyPipeline {
 		SendOptions requestOnWriteConfirm();
 
 		/**
-		 * Enable or disable written item size tracking.
+		 * Enable or disable written item size tracking. Tracking is disabled by default
+		 * and is automatically enabled by {@link #flushOnMemoryUsed(long)} and
+		 * {@link #prefetchMemory(long)}.
 		 *
 		 * @param shouldCount true if should track written items size
 		 *
@@ -191,7 +191,7 @@ public class ChannelOperations<INBOUND extends NettyInbound, OUTBOUND extends Ne
 	}
 
 	@Override
-	public final boolean isDisposed() {
+	public boolean isDisposed() {
 		return !channel.isOpen() || channel.attr(OPERATIONS_ATTRIBUTE_KEY)
 		              .get() != this;
 	}
@@ -288,6 +288,13 @@ public class ChannelOperations<INBOUND extends NettyInbound, OUTBOUND extends Ne
 		}
 	}
 
+	/**
+	 * React on inbound cancellation, the receiver having cancelled or the inbound being
+	 * disposed, called from the event loop once pending frames are released.
+	 */
+	protected void onInboundCancel() {
+	}
+
 	/**
 	 * React on inbound/outbound completion (last packet)
 	 */
@@ -359,7 +366,12 @@ public class ChannelOperations<INBOUND extends NettyInbound, OUTBOUND extends Ne
 			onInboundComplete(); // signal receiver
 		}
 		finally {
-			context.terminateChannel(channel); // release / cleanup channel
+			//only the current operations releases the channel, a superseded one
+			// (e.g. a pipelined http response) leaves it to its successor
+			if (!channel.isOpen() || channel.attr(OPERATIONS_ATTRIBUTE_KEY)
+			                                .get() == this) {
+				context.terminateChannel(channel); // release / cleanup channel
+			}
 		}
 	}
 
@@ -389,6 +401,23 @@ public class ChannelOperations<INBOUND extends NettyInbound, OUTBOUND extends Ne
 		return inbound.markInboundDone();
 	}
 
+	/**
+	 * Replace this {@link ChannelOperations} by the passed one as the current channel
+	 * operations if this instance is still current.
+	 *
+	 * @param ops the replacing {@link ChannelOperations}
+	 *
+	 * @return true if replaced
+	 */
+	protected final boolean replace(ChannelOperations<?, ?> ops) {
+		if (channel.attr(OPERATIONS_ATTRIBUTE_KEY)
+		           .compareAndSet(this, ops)) {
+			ChannelOperationsHandler.cacheOperations(channel, ops);
+			return true;
+		}
+		return false;
+	}
+
 	/**
 	 * Return the available parent {@link ContextHandler} for user-facing lifecycle
 	 * handling
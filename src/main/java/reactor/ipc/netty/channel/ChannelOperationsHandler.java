@@ -29,13 +29,17 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufHolder;
 import io.netty.buffer.EmptyByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
 import io.netty.channel.FileRegion;
 import io.netty.handler.stream.ChunkedInput;
+import io.netty.util.ReferenceCountUtil;
 import org.reactivestreams.Publisher;
 import org.reactivestreams.Subscriber;
 import org.reactivestreams.Subscription;
@@ -43,6 +47,7 @@ import reactor.core.Exceptions;
 import reactor.core.publisher.Operators;
 import reactor.ipc.netty.NettyOutbound;
 import reactor.ipc.netty.NettyPipeline;
+import reactor.ipc.netty.options.NettyOptions;
 import reactor.util.Logger;
 import reactor.util.Loggers;
 import reactor.util.concurrent.QueueSupplier;
@@ -58,9 +63,34 @@ final class ChannelOperationsHandler extends ChannelDuplexHandler
 
 	final PublisherSender                     inner;
 	final BiConsumer<?, ? super ByteBuf>      encoder;
-	final int                                 prefetch;
-	final int                                 limit;
-	long                  pendingBytes;
+	int                                       prefetch;
+	int                                       limit;
+	long                                      pendingBytes;
+	/**
+	 * Flush threshold in bytes (flushOnMemoryUsed), {@link Long#MAX_VALUE} if disabled
+	 */
+	long                                      maxPendingBytes;
+	/**
+	 * In-flight bytes budget (prefetchMemory), 0 if demand is item based
+	 */
+	long                                      prefetchBytes;
+	int                                       samplingPrefetch;
+	long                                      sampledBytes;
+	int                                       sampledCount;
+	/**
+	 * Demand to withhold from the next replenishing requests after a prefetch decrease
+	 */
+	long                                      demandDebt;
+	/**
+	 * Demand withheld while the channel was not writable (requestOnWriteAvailable)
+	 */
+	long                                      withheldDemand;
+	/**
+	 * Items written since the last confirmed batch (requestOnWriteConfirm)
+	 */
+	int                                       unconfirmed;
+	boolean                                   trackPendingBytes;
+	boolean                                   requestOnWriteConfirm;
 
 	/**
 	 * Cast the supplied queue (SpscLinkedArrayQueue) to use its atomic dual-insert
@@ -68,18 +98,77 @@ final class ChannelOperationsHandler extends ChannelDuplexHandler
 	 **/
 	BiPredicate<ChannelPromise, Object> pendingWriteOffer;
 	Queue<?>                            pendingWrites;
+	/**
+	 * The preallocated pending writes used instead of {@link #pendingWrites} if bounded
+	 */
+	BoundedPendingWrites                boundedPendingWrites;
+	/**
+	 * A channel read has been withheld by this handler while the bounded pending
+	 * writes are full, to request once they drain (BACKPRESSURE)
+	 */
+	boolean                             readWithheld;
 	ChannelHandlerContext               ctx;
-	boolean                             flushOnEach;
+	FlushMode                           flushMode;
+	/**
+	 * The current channel operations, mirroring
+	 * {@link ChannelOperations#OPERATIONS_ATTRIBUTE_KEY} to save an attribute lookup
+	 * on each inbound event
+	 */
+	volatile ChannelOperations<?, ?>    operations;
+	/**
+	 * A flush is already scheduled for the current event loop iteration (AUTO_LOOP)
+	 */
+	boolean                             flushScheduled;
+	/**
+	 * A message has been written but not flushed, e.g. HTTP headers held for the
+	 * first body element, to flush once the pending writes are drained
+	 */
+	boolean                             unflushed;
+	/**
+	 * The messages left unflushed ahead of the current {@link Publisher}, e.g. HTTP
+	 * headers, are flushed with its first item (MANUAL_BOUNDARY)
+	 */
+	boolean                             flushWithFirstItem;
 
 	volatile boolean innerActive;
 	volatile boolean removed;
 	volatile int     wip;
 
-	@SuppressWarnings("unchecked")
+	final int                  pendingWritesCapacity;
+	final PendingWriteOverflow pendingWritesOverflow;
+	final Runnable             flushTask = this::flushLoop;
+	final Runnable             drainTask = this::drain;
+
 	ChannelOperationsHandler() {
+		this(FlushMode.MANUAL_BOUNDARY, 0, PendingWriteOverflow.FAIL);
+	}
+
+	ChannelOperationsHandler(NettyOptions<?, ?> options) {
+		this(options.flushMode(),
+				options.pendingWritesCapacity(),
+				options.pendingWritesOverflow());
+	}
+
+	@SuppressWarnings("unchecked")
+	ChannelOperationsHandler(FlushMode flushMode,
+			int pendingWritesCapacity,
+			PendingWriteOverflow pendingWritesOverflow) {
+		this.flushMode = Objects.requireNonNull(flushMode, "flushMode");
+		this.pendingWritesCapacity = pendingWritesCapacity;
+		this.pendingWritesOverflow =
+				Objects.requireNonNull(pendingWritesOverflow, "pendingWritesOverflow");
 		this.inner = new PublisherSender(this);
-		this.prefetch = 32;
+		if (pendingWritesOverflow == PendingWriteOverflow.BACKPRESSURE &&
+				pendingWritesCapacity > 0) {
+			//request more only once the written items are confirmed
+			this.prefetch = Math.min(DEFAULT_PREFETCH, pendingWritesCapacity);
+			this.requestOnWriteConfirm = true;
+		}
+		else {
+			this.prefetch = DEFAULT_PREFETCH;
+		}
 		this.limit = prefetch - (prefetch >> 2);
+		this.maxPendingBytes = Long.MAX_VALUE;
 		this.encoder = NOOP_ENCODER;
 	}
 
@@ -127,8 +216,10 @@ final class ChannelOperationsHandler extends ChannelDuplexHandler
 		}
 		ctx.fireChannelWritabilityChanged();
 		if (ctx.channel()
-		       .isWritable()) {
-			inner.request(1L);
+		       .isWritable() && withheldDemand != 0L) {
+			long n = withheldDemand;
+			withheldDemand = 0L;
+			replenish(n);
 		}
 		drain();
 	}
@@ -156,6 +247,11 @@ final class ChannelOperationsHandler extends ChannelDuplexHandler
 	@Override
 	public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
 		this.ctx = ctx;
+		if (operations == null) {
+			operations = ctx.channel()
+			                .attr(ChannelOperations.OPERATIONS_ATTRIBUTE_KEY)
+			                .get();
+		}
 		inner.request(prefetch);
 	}
 
@@ -165,12 +261,28 @@ final class ChannelOperationsHandler extends ChannelDuplexHandler
 			removed = true;
 
 			inner.cancel();
+			discardPendingWrites();
+			resumeReads();
 		}
 	}
 
 	@Override
 	public void operationComplete(ChannelFuture future) throws Exception {
-		inner.request(limit);
+		replenish(limit);
+	}
+
+	@Override
+	public void read(ChannelHandlerContext ctx) throws Exception {
+		if (pendingWritesOverflow == PendingWriteOverflow.BACKPRESSURE &&
+				boundedPendingWrites != null && boundedPendingWrites.isFull()) {
+			if (!readWithheld && log.isDebugEnabled()) {
+				log.debug("Send Queue full, withholding reads");
+			}
+			readWithheld = true;
+		}
+		else {
+			ctx.read();
+		}
 	}
 
 	@Override
@@ -199,102 +311,362 @@ final class ChannelOperationsHandler extends ChannelDuplexHandler
 			log.debug("Writing object {}", msg);
 		}
 
-		if (pendingWrites == null) {
-			this.pendingWrites = QueueSupplier.unbounded()
-			                                  .get();
-			this.pendingWriteOffer = (BiPredicate<ChannelPromise, Object>) pendingWrites;
+		if (pendingWriteOffer == null) {
+			if (pendingWritesCapacity > 0) {
+				this.boundedPendingWrites =
+						new BoundedPendingWrites(pendingWritesCapacity);
+				this.pendingWriteOffer = boundedPendingWrites;
+			}
+			else {
+				this.pendingWrites = QueueSupplier.unbounded()
+				                                  .get();
+				this.pendingWriteOffer =
+						(BiPredicate<ChannelPromise, Object>) pendingWrites;
+			}
 		}
 
 		if (!pendingWriteOffer.test(promise, msg)) {
-			promise.setFailure(new IllegalStateException("Send Queue full?!"));
+			onPendingWritesOverflow(promise, msg);
+		}
+	}
+
+	void onPendingWritesOverflow(ChannelPromise promise, Object msg) {
+		if (pendingWritesOverflow == PendingWriteOverflow.DROP_OLDEST &&
+				boundedPendingWrites.dropOldestPayload() &&
+				pendingWriteOffer.test(promise, msg)) {
+			return;
+		}
+		ReferenceCountUtil.release(msg);
+		promise.setFailure(new IllegalStateException("Send Queue full?!"));
+	}
+
+	Object pollPendingWrite() {
+		return boundedPendingWrites != null ? boundedPendingWrites.poll() :
+				pendingWrites.poll();
+	}
+
+	boolean hasPendingWrites() {
+		return boundedPendingWrites != null ? !boundedPendingWrites.isEmpty() :
+				!pendingWrites.isEmpty();
+	}
+
+	/**
+	 * Fail and release every pending write, and the write of the current
+	 * {@link Publisher} if any, once this handler is removed.
+	 */
+	void discardPendingWrites() {
+		IllegalStateException cause =
+				new IllegalStateException("Send Queue discarded, handler removed");
+		if (innerActive) {
+			innerActive = false;
+			inner.promise.tryFailure(cause);
+		}
+		if (pendingWriteOffer == null) {
+			return;
+		}
+		ChannelPromise promise;
+		while ((promise = (ChannelPromise) pollPendingWrite()) != null) {
+			ReferenceCountUtil.release(pollPendingWrite());
+			promise.tryFailure(cause);
+		}
+	}
+
+	/**
+	 * Request the channel read withheld by {@link #read(ChannelHandlerContext)} while
+	 * the bounded pending writes were full, if any.
+	 */
+	void resumeReads() {
+		if (readWithheld) {
+			if (log.isDebugEnabled()) {
+				log.debug("Send Queue drained, resuming reads");
+			}
+			readWithheld = false;
+			ctx.read();
 		}
 	}
 
 	@Override
 	public NettyPipeline.SendOptions flushOnBoundary() {
+		flushMode = FlushMode.MANUAL_BOUNDARY;
+		maxPendingBytes = Long.MAX_VALUE;
+		return this;
+	}
+
+	@Override
+	public NettyPipeline.SendOptions flushOnComplete() {
+		flushMode = FlushMode.MANUAL_COMPLETE;
+		maxPendingBytes = Long.MAX_VALUE;
 		return this;
 	}
 
 	@Override
 	public NettyPipeline.SendOptions flushOnEach() {
-		flushOnEach = true;
+		flushMode = FlushMode.AUTO_EACH;
+		maxPendingBytes = Long.MAX_VALUE;
+		return this;
+	}
+
+	@Override
+	public NettyPipeline.SendOptions flushOnLoop() {
+		flushMode = FlushMode.AUTO_LOOP;
+		maxPendingBytes = Long.MAX_VALUE;
 		return this;
 	}
 
 	@Override
 	public NettyPipeline.SendOptions flushOnMemoryUsed(long maxPendingBytes) {
+		if (maxPendingBytes < 1L) {
+			throw new IllegalArgumentException("maxPendingBytes must be strictly " +
+					"positive, was: " + maxPendingBytes);
+		}
+		if (flushMode == FlushMode.AUTO_EACH) {
+			flushMode = FlushMode.MANUAL_BOUNDARY;
+		}
+		this.maxPendingBytes = maxPendingBytes;
+		this.trackPendingBytes = true;
 		return this;
 	}
 
 	@Override
 	public NettyPipeline.SendOptions prefetch(int prefetch) {
+		if (prefetch < 1) {
+			throw new IllegalArgumentException("prefetch must be strictly positive, " +
+					"was: " + prefetch);
+		}
+		this.prefetchBytes = 0L;
+		updatePrefetch(prefetch);
 		return this;
 	}
 
 	@Override
 	public NettyPipeline.SendOptions prefetchMemory(long prefetchBytes) {
-		return this;
+		return prefetchMemory(1, prefetchBytes);
 	}
 
 	@Override
 	public NettyPipeline.SendOptions prefetchMemory(int samplingPrefetch,
 			long prefetchBytes) {
+		if (samplingPrefetch < 1) {
+			throw new IllegalArgumentException("samplingPrefetch must be strictly " +
+					"positive, was: " + samplingPrefetch);
+		}
+		if (prefetchBytes < 1L) {
+			throw new IllegalArgumentException("prefetchBytes must be strictly " +
+					"positive, was: " + prefetchBytes);
+		}
+		this.samplingPrefetch = samplingPrefetch;
+		this.prefetchBytes = prefetchBytes;
+		this.sampledBytes = 0L;
+		this.sampledCount = 0;
+		this.trackPendingBytes = true;
 		return this;
 	}
 
 	@Override
 	public NettyPipeline.SendOptions requestOnWriteAvailable() {
+		this.requestOnWriteConfirm = false;
 		return this;
 	}
 
 	@Override
 	public NettyPipeline.SendOptions requestOnWriteConfirm() {
+		this.requestOnWriteConfirm = true;
+		this.unconfirmed = 0;
 		return this;
 	}
 
 	@Override
 	public NettyPipeline.SendOptions trackPendingBytes(boolean shouldCount) {
+		this.trackPendingBytes = shouldCount;
+		if (!shouldCount) {
+			pendingBytes = 0L;
+		}
 		return this;
 	}
 
 	ChannelFuture doWrite(Object msg, ChannelPromise promise, PublisherSender inner) {
-		if (flushOnEach || //fastpath
+		if (trackPendingBytes) {
+			long size = messageSize(msg);
+			pendingBytes = Operators.addCap(pendingBytes, size);
+			if (inner != null && prefetchBytes != 0L) {
+				sampleDemand(size);
+			}
+			if (log.isDebugEnabled()) {
+				log.debug("Pending write size = {}", pendingBytes);
+			}
+		}
+		if (flushMode == FlushMode.AUTO_LOOP && !(msg instanceof ChunkedInput) &&
+				pendingBytes < maxPendingBytes && ctx.channel()
+				                                     .isWritable()) {
+			//coalesce with the other writes of this event loop iteration
+			if (inner != null) {
+				inner.justFlushed = true;
+			}
+			scheduleFlush();
+			return ctx.write(msg, promise);
+		}
+		if (flushMode == FlushMode.AUTO_EACH || //fastpath
+				inner != null && flushWithFirstItem || //held messages ahead of the publisher
 				msg instanceof ChunkedInput || //let chunkedwriterhandler process
-				inner == null && pendingWrites.isEmpty() || //last drained element
+				inner == null && !hasPendingWrites() || //last drained element
+				pendingBytes >= maxPendingBytes || //flush on memory threshold
 				!ctx.channel()
 				    .isWritable() //force flush if write buffer full
 				) {
 			pendingBytes = 0L;
+			unflushed = false;
+			flushWithFirstItem = false;
 			if(inner != null){
 				inner.justFlushed = true;
 			}
 			return ctx.writeAndFlush(msg, promise);
 		}
 		else {
-			if (msg instanceof ByteBuf) {
-				pendingBytes =
-						Operators.addCap(pendingBytes, ((ByteBuf) msg).readableBytes());
-			}
-			else if (msg instanceof ByteBufHolder) {
-				pendingBytes = Operators.addCap(pendingBytes,
-						((ByteBufHolder) msg).content()
-						                     .readableBytes());
-			}
-			else if (msg instanceof FileRegion) {
-				pendingBytes = Operators.addCap(pendingBytes, ((FileRegion) msg).count());
-			}
-			if (log.isDebugEnabled()) {
-				log.debug("Pending write size = {}", pendingBytes);
-			}
 			if(inner != null && inner.justFlushed){
 				inner.justFlushed = false;
 			}
+			unflushed = true;
 			return ctx.write(msg, promise);
 		}
 	}
 
+	/**
+	 * Schedule a single flush at the end of the current event loop iteration.
+	 */
+	void scheduleFlush() {
+		if (!flushScheduled) {
+			flushScheduled = true;
+			ctx.channel()
+			   .eventLoop()
+			   .execute(flushTask);
+		}
+	}
+
+	void flushLoop() {
+		flushScheduled = false;
+		if (removed) {
+			return;
+		}
+		flushPending();
+	}
+
+	/**
+	 * Flush the messages written so far, resetting the pending bytes accounting of
+	 * {@link #flushOnMemoryUsed(long)}.
+	 */
+	void flushPending() {
+		pendingBytes = 0L;
+		unflushed = false;
+		flushWithFirstItem = false;
+		ctx.flush();
+	}
+
+	/**
+	 * Evaluate the demand to request after an item has been written, according to the
+	 * requestOnWriteAvailable (default) or requestOnWriteConfirm strategy.
+	 *
+	 * @param lastWrite the item write future
+	 */
+	void onItemWritten(ChannelFuture lastWrite) {
+		if (requestOnWriteConfirm) {
+			if (++unconfirmed < limit) {
+				return;
+			}
+			unconfirmed = 0;
+			if (!inner.justFlushed) {
+				//the confirmation would never come without flushing the batch
+				inner.justFlushed = true;
+				flushPending();
+			}
+			lastWrite.addListener(this);
+		}
+		else if (ctx.channel()
+		            .isWritable()) {
+			replenish(1L);
+		}
+		else {
+			withheldDemand++;
+		}
+	}
+
+	/**
+	 * Request more elements from the current {@link Publisher} minus any demand that
+	 * must still be absorbed from a previous prefetch decrease.
+	 *
+	 * @param n the demand to replenish
+	 */
+	void replenish(long n) {
+		if (demandDebt != 0L) {
+			long absorbed = Math.min(demandDebt, n);
+			demandDebt -= absorbed;
+			n -= absorbed;
+		}
+		if (n != 0L) {
+			inner.request(n);
+		}
+	}
+
+	/**
+	 * Accumulate written item sizes and re-evaluate the item prefetch every
+	 * {@link #samplingPrefetch} items so that in-flight items weigh about
+	 * {@link #prefetchBytes}.
+	 *
+	 * @param size the last written item size
+	 */
+	void sampleDemand(long size) {
+		sampledBytes = Operators.addCap(sampledBytes, size);
+		if (++sampledCount < samplingPrefetch) {
+			return;
+		}
+		long average = Math.max(1L, sampledBytes / sampledCount);
+		sampledBytes = 0L;
+		sampledCount = 0;
+		updatePrefetch((int) Math.min(Integer.MAX_VALUE,
+				Math.max(1L, prefetchBytes / average)));
+	}
+
+	/**
+	 * Update the item prefetch, requesting the extra demand immediately if it grows
+	 * or withholding the next replenishing requests if it shrinks.
+	 *
+	 * @param prefetch the new prefetch
+	 */
+	void updatePrefetch(int prefetch) {
+		if (pendingWritesOverflow == PendingWriteOverflow.BACKPRESSURE &&
+				pendingWritesCapacity > 0) {
+			prefetch = Math.min(prefetch, pendingWritesCapacity);
+		}
+		long delta = prefetch - this.prefetch;
+		this.prefetch = prefetch;
+		this.limit = prefetch - (prefetch >> 2);
+		if (delta == 0L || ctx == null) {
+			//not yet added, handlerAdded will request the new prefetch
+			return;
+		}
+		if (delta < 0L) {
+			demandDebt = Operators.addCap(demandDebt, -delta);
+			return;
+		}
+		if (demandDebt >= delta) {
+			demandDebt -= delta;
+			return;
+		}
+		delta -= demandDebt;
+		demandDebt = 0L;
+		inner.request(delta);
+	}
+
 	@SuppressWarnings("unchecked")
 	void drain() {
+		if (!ctx.channel()
+		        .eventLoop()
+		        .inEventLoop()) {
+			//pending writes are only consumed from the event loop
+			ctx.channel()
+			   .eventLoop()
+			   .execute(drainTask);
+			return;
+		}
 		if (WIP.getAndIncrement(this) == 0) {
 
 			for (; ; ) {
@@ -302,8 +674,8 @@ final class ChannelOperationsHandler extends ChannelDuplexHandler
 					return;
 				}
 
-				if (pendingWrites == null || innerActive || !ctx.channel()
-				                       .isWritable()) {
+				if (pendingWriteOffer == null || innerActive || !ctx.channel()
+				                                                    .isWritable()) {
 					if (WIP.decrementAndGet(this) == 0) {
 						break;
 					}
@@ -313,7 +685,7 @@ final class ChannelOperationsHandler extends ChannelDuplexHandler
 				ChannelPromise promise;
 
 				try {
-					promise = (ChannelPromise) pendingWrites.poll();
+					promise = (ChannelPromise) pollPendingWrite();
 				}
 				catch (Throwable e) {
 					ctx.fireExceptionCaught(e);
@@ -323,16 +695,25 @@ final class ChannelOperationsHandler extends ChannelDuplexHandler
 				boolean empty = promise == null;
 
 				if (empty) {
+					if (unflushed && !innerActive) {
+						flushPending();
+					}
 					if (WIP.decrementAndGet(this) == 0) {
 						break;
 					}
 					continue;
 				}
 
-				Object v = pendingWrites.poll();
+				Object v = pollPendingWrite();
+
+				if (readWithheld) {
+					resumeReads();
+				}
 
 				if (v instanceof Publisher) {
 					Publisher<?> p = (Publisher<?>) v;
+					flushWithFirstItem =
+							unflushed && flushMode == FlushMode.MANUAL_BOUNDARY;
 
 					if (p instanceof Callable) {
 						@SuppressWarnings("unchecked") Callable<?> supplier =
@@ -377,9 +758,128 @@ final class ChannelOperationsHandler extends ChannelDuplexHandler
 
 	//
 	final ChannelOperations<?, ?> inbound() {
-		return ctx.channel()
-		          .attr(ChannelOperations.OPERATIONS_ATTRIBUTE_KEY)
-		          .get();
+		return operations;
+	}
+
+	/**
+	 * Bind the given {@link ChannelOperations} as the current channel operations, both
+	 * in the {@link ChannelOperations#OPERATIONS_ATTRIBUTE_KEY} attribute and in the
+	 * {@link NettyPipeline#ReactiveBridge} handler if already installed.
+	 *
+	 * @param channel the channel to bind to
+	 * @param ops the new current operations
+	 *
+	 * @return the previous operations or null
+	 */
+	static ChannelOperations<?, ?> bindOperations(Channel channel,
+			ChannelOperations<?, ?> ops) {
+		ChannelOperations<?, ?> previous =
+				channel.attr(ChannelOperations.OPERATIONS_ATTRIBUTE_KEY)
+				       .getAndSet(ops);
+		cacheOperations(channel, ops);
+		return previous;
+	}
+
+	static void cacheOperations(Channel channel, ChannelOperations<?, ?> ops) {
+		ChannelHandler handler = channel.pipeline()
+		                                .get(NettyPipeline.ReactiveBridge);
+		if (handler instanceof ChannelOperationsHandler) {
+			((ChannelOperationsHandler) handler).operations = ops;
+		}
+	}
+
+	/**
+	 * A preallocated ring buffer of (promise, message) pairs confined to the channel
+	 * event loop.
+	 */
+	static final class BoundedPendingWrites
+			implements BiPredicate<ChannelPromise, Object> {
+
+		final Object[] buffer;
+		final int      mask;
+		final int      maxSize;
+
+		long producerIndex;
+		long consumerIndex;
+
+		BoundedPendingWrites(int capacity) {
+			if (capacity < 1 || capacity > 1 << 29) {
+				throw new IllegalArgumentException("capacity must be between 1 and " +
+						(1 << 29) + ", was: " + capacity);
+			}
+			int length = 1 << (32 - Integer.numberOfLeadingZeros(capacity * 2 - 1));
+			this.buffer = new Object[length];
+			this.mask = length - 1;
+			this.maxSize = capacity * 2;
+		}
+
+		@Override
+		public boolean test(ChannelPromise promise, Object msg) {
+			long p = producerIndex;
+			if (p - consumerIndex + 2 > maxSize) {
+				return false;
+			}
+			int offset = (int) p & mask;
+			buffer[offset] = promise;
+			buffer[offset + 1] = msg;
+			producerIndex = p + 2;
+			return true;
+		}
+
+		Object poll() {
+			long c = consumerIndex;
+			if (c == producerIndex) {
+				return null;
+			}
+			int offset = (int) c & mask;
+			Object v = buffer[offset];
+			buffer[offset] = null;
+			consumerIndex = c + 1;
+			return v;
+		}
+
+		boolean isEmpty() {
+			return producerIndex == consumerIndex;
+		}
+
+		boolean isFull() {
+			return producerIndex - consumerIndex + 2 > maxSize;
+		}
+
+		/**
+		 * Fail and release the oldest pending write of a raw {@link ByteBuf}, keeping
+		 * the other pending writes in order. Other messages, e.g. protocol headers or
+		 * {@link Publisher}, are never dropped.
+		 *
+		 * @return true if a pending write has been dropped
+		 */
+		boolean dropOldestPayload() {
+			long c = consumerIndex;
+			for (long i = c; i != producerIndex; i += 2) {
+				int offset = (int) i & mask;
+				Object msg = buffer[offset + 1];
+				if (!(msg instanceof ByteBuf)) {
+					continue;
+				}
+				ChannelPromise promise = (ChannelPromise) buffer[offset];
+				//shift the older pending writes over the dropped one
+				for (long j = i; j != c; j -= 2) {
+					int to = (int) j & mask;
+					int from = (int) (j - 2) & mask;
+					buffer[to] = buffer[from];
+					buffer[to + 1] = buffer[from + 1];
+				}
+				int first = (int) c & mask;
+				buffer[first] = null;
+				buffer[first + 1] = null;
+				consumerIndex = c + 2;
+				ReferenceCountUtil.release(msg);
+				promise.setFailure(new IllegalStateException("Send Queue full, " +
+						"dropped oldest pending write"));
+				return true;
+			}
+			return false;
+		}
 	}
 
 	static final class PublisherSender
@@ -422,6 +922,12 @@ final class ChannelOperationsHandler extends ChannelDuplexHandler
 
 		@Override
 		public void onComplete() {
+			EventLoop loop = parent.ctx.channel()
+			                           .eventLoop();
+			if (!loop.inEventLoop()) {
+				loop.execute(this::onComplete);
+				return;
+			}
 			long p = produced;
 			ChannelFuture f = lastWrite;
 			parent.innerActive = false;
@@ -430,7 +936,7 @@ final class ChannelOperationsHandler extends ChannelDuplexHandler
 				produced = 0L;
 				produced(p);
 				if(!justFlushed) {
-					parent.ctx.flush();
+					parent.flushPending();
 				}
 			}
 
@@ -445,6 +951,12 @@ final class ChannelOperationsHandler extends ChannelDuplexHandler
 
 		@Override
 		public void onError(Throwable t) {
+			EventLoop loop = parent.ctx.channel()
+			                           .eventLoop();
+			if (!loop.inEventLoop()) {
+				loop.execute(() -> onError(t));
+				return;
+			}
 			long p = produced;
 			ChannelFuture f = lastWrite;
 			parent.innerActive = false;
@@ -453,7 +965,7 @@ final class ChannelOperationsHandler extends ChannelDuplexHandler
 				produced = 0L;
 				produced(p);
 				if(!justFlushed) {
-					parent.ctx.flush();
+					parent.flushPending();
 				}
 			}
 
@@ -468,13 +980,18 @@ final class ChannelOperationsHandler extends ChannelDuplexHandler
 
 		@Override
 		public void onNext(Object t) {
+			EventLoop loop = parent.ctx.channel()
+			                           .eventLoop();
+			if (!loop.inEventLoop()) {
+				//the write and demand accounting of the parent is confined to the
+				//event loop, the signals are replayed there in order
+				loop.execute(() -> onNext(t));
+				return;
+			}
 			produced++;
 
 			lastWrite = parent.doWrite(t, parent.ctx.newPromise(), this);
-			if (parent.ctx.channel()
-			              .isWritable()) {
-				request(1L);
-			}
+			parent.onItemWritten(lastWrite);
 		}
 
 		@Override
@@ -508,11 +1025,12 @@ final class ChannelOperationsHandler extends ChannelDuplexHandler
 
 		@Override
 		public void operationComplete(ChannelFuture future) throws Exception {
+			//the promise may have been failed already if the handler was removed
 			if (future.isSuccess()) {
-				promise.setSuccess();
+				promise.trySuccess();
 			}
 			else {
-				promise.setFailure(future.cause());
+				promise.tryFailure(future.cause());
 			}
 			parent.drain();
 		}
@@ -697,4 +1215,20 @@ final class ChannelOperationsHandler extends ChannelDuplexHandler
 	static final BiConsumer<?, ? super ByteBuf> NOOP_ENCODER = (a, b) -> {
 	};
 
+	static final int DEFAULT_PREFETCH = 32;
+
+	static long messageSize(Object msg) {
+		if (msg instanceof ByteBuf) {
+			return ((ByteBuf) msg).readableBytes();
+		}
+		if (msg instanceof ByteBufHolder) {
+			return ((ByteBufHolder) msg).content()
+			                            .readableBytes();
+		}
+		if (msg instanceof FileRegion) {
+			return ((FileRegion) msg).count();
+		}
+		return 0L;
+	}
+
 }
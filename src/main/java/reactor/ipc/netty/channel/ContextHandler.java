@@ -190,6 +190,35 @@ public abstract class ContextHandler<CHANNEL extends Channel>
 		}
 	}
 
+	/**
+	 * Create a new {@link ChannelOperations} for the given channel with this context
+	 * operations selector, e.g. to take over a channel still served by the current
+	 * operations.
+	 *
+	 * @param channel the channel served by the new operations
+	 *
+	 * @return the new {@link ChannelOperations}
+	 */
+	@SuppressWarnings("unchecked")
+	public final ChannelOperations<?, ?> createOperations(Channel channel) {
+		return channelOpSelector.apply((CHANNEL) channel, this);
+	}
+
+	/**
+	 * Initialize a child channel multiplexed over a channel of this context, e.g. an
+	 * HTTP/2 stream, so that it is served by its own operations once active. A child
+	 * channel carries a single exchange and is closed rather than recycled when its
+	 * operations terminate.
+	 *
+	 * @param channel the child channel to initialize before its registration
+	 */
+	public final void initChildChannel(Channel channel) {
+		channel.attr(CLOSE_CHANNEL)
+		       .set(true);
+		channel.pipeline()
+		       .addLast(NettyPipeline.BridgeSetup, new BridgeSetupHandler(this));
+	}
+
 	/**
 	 * One-time only future setter
 	 *
@@ -327,9 +356,14 @@ public abstract class ContextHandler<CHANNEL extends Channel>
 					   .attr(ChannelOperations.OPERATIONS_ATTRIBUTE_KEY)
 					   .set(op);
 
+					ChannelOperationsHandler bridge =
+							new ChannelOperationsHandler(parent.options);
+					bridge.operations = op;
+
 					ctx.pipeline()
 					   .addAfter(NettyPipeline.BridgeSetup,
-							   NettyPipeline.ReactiveBridge, new ChannelOperationsHandler());
+							   NettyPipeline.ReactiveBridge,
+							   bridge);
 
 					op.onChannelActive(ctx);
 				}
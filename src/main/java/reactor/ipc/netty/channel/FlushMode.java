@@ -16,9 +16,42 @@
 package reactor.ipc.netty.channel;
 
 /**
+ * Strategies deciding when the written items of a connection are flushed to the
+ * socket. Each mode can be selected per connection via
+ * {@link reactor.ipc.netty.options.NettyOptions#flushMode(FlushMode)} or per send via
+ * {@link reactor.ipc.netty.NettyPipeline.SendOptions}.
  *
+ * @author Stephane Maldini
+ * @since 0.6
  */
 public enum FlushMode {
-	AUTO_EACH, AUTO_LOOP, MANUAL_COMPLETE, MANUAL_BOUNDARY
-
+	/**
+	 * Flush every written item.
+	 *
+	 * @see reactor.ipc.netty.NettyPipeline.SendOptions#flushOnEach()
+	 */
+	AUTO_EACH,
+	/**
+	 * Coalesce every write made during one event loop iteration into a single flush.
+	 *
+	 * @see reactor.ipc.netty.NettyPipeline.SendOptions#flushOnLoop()
+	 */
+	AUTO_LOOP,
+	/**
+	 * Flush when a written {@link org.reactivestreams.Publisher} terminates.
+	 *
+	 * @see reactor.ipc.netty.NettyPipeline.SendOptions#flushOnComplete()
+	 */
+	MANUAL_COMPLETE,
+	/**
+	 * Flush when a written {@link org.reactivestreams.Publisher} terminates, including
+	 * each group sent with
+	 * {@link reactor.ipc.netty.NettyOutbound#sendGroups(org.reactivestreams.Publisher)}
+	 * as a {@link org.reactivestreams.Publisher} of its own (default). Messages written
+	 * without flush ahead of a {@link org.reactivestreams.Publisher}, e.g. HTTP headers,
+	 * are flushed with its first item.
+	 *
+	 * @see reactor.ipc.netty.NettyPipeline.SendOptions#flushOnBoundary()
+	 */
+	MANUAL_BOUNDARY
 }
@@ -59,14 +59,12 @@ final class FluxReceive extends Flux<Object>
 
 	@Override
 	public void cancel() {
-		if (cancelReceiver()) {
-			Queue<Object> q = receiverQueue;
-			if (q != null) {
-				Object o;
-				while ((o = q.poll()) != null) {
-					ReferenceCountUtil.release(o);
-				}
-			}
+		cancelReceiver();
+		if (eventLoop.inEventLoop()) {
+			discardReceiver();
+		}
+		else {
+			eventLoop.execute(this::discardReceiver);
 		}
 	}
 
@@ -264,7 +262,7 @@ final class FluxReceive extends Flux<Object>
 	}
 
 	final void onInboundNext(Object msg) {
-		if (inboundDone) {
+		if (inboundDone || isCancelled()) {
 			if (log.isDebugEnabled()) {
 				log.debug("[{}] Dropping frame {}", parent.formatName(), msg);
 			}
@@ -343,6 +341,21 @@ final class FluxReceive extends Flux<Object>
 		parent.context.fireContextActive(parent);
 	}
 
+	/**
+	 * Release the pending frames of a cancelled receiver, subscribed or not, and let
+	 * the parent operations react, must be called from the event loop.
+	 */
+	final void discardReceiver() {
+		Queue<Object> q = receiverQueue;
+		if (q != null) {
+			Object o;
+			while ((o = q.poll()) != null) {
+				ReferenceCountUtil.release(o);
+			}
+		}
+		parent.onInboundCancel();
+	}
+
 	final void unsubscribeReceiver() {
 		receiverDemand = 0L;
 		receiver = null;
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package reactor.ipc.netty.channel;
+
+/**
+ * Policies applied when a bounded pending write queue is full, see
+ * {@link reactor.ipc.netty.options.NettyOptions#boundedPendingWrites(int, PendingWriteOverflow)}.
+ *
+ * @author agent
+ * @since 0.6
+ */
+public enum PendingWriteOverflow {
+	/**
+	 * Fail the incoming write promise and release its message.
+	 */
+	FAIL,
+	/**
+	 * Limit the demand of each sent {@link org.reactivestreams.Publisher} to the queue
+	 * capacity, requesting more only once its written items are confirmed, and stop
+	 * reading from the channel while the queue is full. A write arriving while the
+	 * queue is still full is failed as with {@link #FAIL}.
+	 */
+	BACKPRESSURE,
+	/**
+	 * Fail the oldest pending write of a raw {@link io.netty.buffer.ByteBuf}, release
+	 * it and enqueue the incoming write. Other messages such as protocol headers or
+	 * {@link org.reactivestreams.Publisher} are never dropped, the incoming write is
+	 * failed as with {@link #FAIL} if no pending write can be dropped.
+	 */
+	DROP_OLDEST
+}
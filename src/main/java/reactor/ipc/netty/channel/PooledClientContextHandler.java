@@ -158,8 +158,7 @@ final class PooledClientContextHandler<CHANNEL extends Channel>
 			ChannelOperations<?, ?> op = channelOpSelector.apply(c, this);
 
 			ChannelOperations<?, ?> previous =
-					c.attr(ChannelOperations.OPERATIONS_ATTRIBUTE_KEY)
-					 .getAndSet(op);
+					ChannelOperationsHandler.bindOperations(c, op);
 
 			if (previous != null) {
 				previous.inbound.cancel();
@@ -238,6 +237,14 @@ final class PooledClientContextHandler<CHANNEL extends Channel>
 
 	@Override
 	protected void doPipeline(ChannelPipeline pipeline) {
+		if (pipeline.channel()
+		            .parent() != null) {
+			//multiplexed channel, transport handlers are set on the parent connection
+			if (log.isDebugEnabled()) {
+				pipeline.addFirst(NettyPipeline.LoggingHandler, loggingHandler);
+			}
+			return;
+		}
 		ClientContextHandler.addSslAndLogHandlers(clientOptions,
 				sink,
 				loggingHandler,
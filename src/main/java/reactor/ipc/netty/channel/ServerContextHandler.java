@@ -21,6 +21,7 @@ import java.util.function.BiFunction;
 
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.DatagramChannel;
 import io.netty.channel.socket.ServerSocketChannel;
@@ -137,11 +138,16 @@ final class ServerContextHandler extends CloseableContextHandler<Channel>
 
 		ChannelOperations<?, ?> op = channelOpSelector.apply(channel, this);
 
+		ChannelHandlerContext ctx = channel.pipeline()
+		                                   .context(NettyPipeline.ReactiveBridge);
+
 		channel.attr(ChannelOperations.OPERATIONS_ATTRIBUTE_KEY)
 		       .set(op);
+		if (ctx != null) {
+			((ChannelOperationsHandler) ctx.handler()).operations = op;
+		}
 
-		op.onChannelActive(channel.pipeline()
-		                          .context(NettyPipeline.ReactiveBridge));
+		op.onChannelActive(ctx);
 	}
 
 	@Override
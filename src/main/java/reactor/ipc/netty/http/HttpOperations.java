@@ -16,6 +16,7 @@
 
 package reactor.ipc.netty.http;
 
+import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
@@ -23,6 +24,7 @@ import java.util.function.BiFunction;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpMessage;
 import io.netty.handler.codec.http.HttpUtil;
@@ -82,12 +84,16 @@ public abstract class HttpOperations<INBOUND extends NettyInbound, OUTBOUND exte
 			return super.send(dataStream);
 		}
 
+		if (dataStream instanceof Mono) {
+			return sendObject(dataStream);
+		}
+
 		if (!HttpUtil.isContentLengthSet(outboundHttpMessage()) && !outboundHttpMessage().headers()
 		                                                                                 .contains(
 				                                                                                 HttpHeaderNames.TRANSFER_ENCODING)) {
 			HttpUtil.setTransferEncodingChunked(outboundHttpMessage(), true);
 		}
-		return sendHeaders().sendObject(dataStream);
+		return sendObject(dataStream);
 	}
 
 	public final NettyOutbound sendHeaders() {
@@ -95,8 +101,8 @@ public abstract class HttpOperations<INBOUND extends NettyInbound, OUTBOUND exte
 			return then(Mono.error(new IllegalStateException("This outbound is not " + "active " + "anymore")));
 		}
 		if (markHeadersAsSent()) {
-			return then(FutureMono.deferFuture(() -> channel().writeAndFlush(
-					outboundHttpMessage())));
+			return then(ordered(FutureMono.deferFuture(() -> channel().writeAndFlush(
+					outboundHttpMessage()))));
 		}
 		else {
 			return this;
@@ -136,10 +142,71 @@ public abstract class HttpOperations<INBOUND extends NettyInbound, OUTBOUND exte
 			return then(Mono.error(new IllegalStateException("This outbound is not " +
 					"active "	+ "anymore")));
 		}
-		if (hasSentHeaders()) {
-			return super.sendObject(source);
+		if (source instanceof Mono && !HttpUtil.isContentLengthSet(outboundHttpMessage()) &&
+				!HttpUtil.isTransferEncodingChunked(outboundHttpMessage())) {
+			return then(Mono.from(source)
+			                .then(this::sendScalar));
 		}
-		return sendHeaders().then(super.sendObject(source));
+		return sendChunks(source);
+	}
+
+	@Override
+	public NettyOutbound sendString(Publisher<? extends String> dataStream,
+			Charset charset) {
+		if (dataStream instanceof Mono) {
+			//preserve the single element nature of the body
+			return send(Mono.from(dataStream)
+			                .map(s -> alloc().buffer()
+			                                 .writeBytes(s.getBytes(charset))));
+		}
+		return super.sendString(dataStream, charset);
+	}
+
+	/**
+	 * Send a single element body as one full message with a {@code Content-Length}
+	 * header if the headers are still pending, or as a regular body element.
+	 *
+	 * @param msg the single body element
+	 *
+	 * @return a {@link Mono} completing when the element has been flushed
+	 */
+	final Mono<Void> sendScalar(Object msg) {
+		if (msg instanceof ByteBuf && markHeadersAsSent()) {
+			ByteBuf body = (ByteBuf) msg;
+			HttpMessage message = outboundHttpMessage();
+			message.headers()
+			       .remove(HttpHeaderNames.TRANSFER_ENCODING);
+			HttpUtil.setContentLength(message, body.readableBytes());
+			return ordered(FutureMono.deferFuture(() -> channel().writeAndFlush(newFullMessage(body))));
+		}
+		return sendChunks(Mono.just(msg)).then();
+	}
+
+	final NettyOutbound sendChunks(Publisher<?> source) {
+		if (markHeadersAsSent()) {
+			//hold the headers until the first element of the body is flushed, or the
+			//last frame if the body is empty
+			return then(ordered(FutureMono.deferFuture(() -> {
+				ChannelPromise promise = channel().newPromise();
+				channel().write(outboundHttpMessage())
+				         .addListener(f -> {
+					         if (!f.isSuccess()) {
+						         promise.tryFailure(f.cause());
+					         }
+				         });
+				channel().writeAndFlush(source)
+				         .addListener(f -> {
+					         if (f.isSuccess()) {
+						         promise.trySuccess();
+					         }
+					         else {
+						         promise.tryFailure(f.cause());
+					         }
+				         });
+				return promise;
+			})));
+		}
+		return super.sendObject(source);
 	}
 
 	@Override
@@ -160,6 +227,19 @@ public abstract class HttpOperations<INBOUND extends NettyInbound, OUTBOUND exte
 		return HEADERS_SENT.compareAndSet(this, 0, 1);
 	}
 
+	/**
+	 * Defer the given write of the outbound message head until the messages it must
+	 * follow on the connection are written, e.g. responses to previously pipelined
+	 * requests. Return the write as is by default.
+	 *
+	 * @param write the deferred write
+	 *
+	 * @return the write, possibly delayed
+	 */
+	protected Mono<Void> ordered(Mono<Void> write) {
+		return write;
+	}
+
 	/**
 	 * Outbound Netty HttpMessage
 	 *
@@ -167,6 +247,17 @@ public abstract class HttpOperations<INBOUND extends NettyInbound, OUTBOUND exte
 	 */
 	protected abstract HttpMessage outboundHttpMessage();
 
+	/**
+	 * Create a full message (e.g. {@link io.netty.handler.codec.http.FullHttpResponse})
+	 * sharing the status and headers of {@link #outboundHttpMessage()} with the given
+	 * body.
+	 *
+	 * @param body the complete message body
+	 *
+	 * @return a full message carrying both headers and body
+	 */
+	protected abstract HttpMessage newFullMessage(ByteBuf body);
+
 
 	final static AtomicIntegerFieldUpdater<HttpOperations> HEADERS_SENT =
 			AtomicIntegerFieldUpdater.newUpdater(HttpOperations.class,
@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package reactor.ipc.netty.http.client;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.compression.DecompressionException;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * Inflate {@code gzip} and {@code deflate} encoded response bodies as they are
+ * received, removing the {@code Content-Encoding} and {@code Content-Length} headers
+ * from the decoded response. Inflated chunks are written to buffers from the channel
+ * allocator and the {@link Inflater} instances are kept on the connection, reused by
+ * every response it receives.
+ *
+ * @author agent
+ */
+final class HttpClientDecompressor extends ChannelInboundHandlerAdapter {
+
+	static final int NONE    = 0;
+	static final int GZIP    = 1;
+	static final int DEFLATE = 2;
+
+	static final int FHCRC    = 0x02;
+	static final int FEXTRA   = 0x04;
+	static final int FNAME    = 0x08;
+	static final int FCOMMENT = 0x10;
+
+	int      encoding;
+	Inflater inflater;
+	ByteBuf  header;
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		if (msg instanceof HttpResponse) {
+			HttpResponse response = (HttpResponse) msg;
+			start(ctx.channel(), response.headers());
+			if (encoding == NONE) {
+				ctx.fireChannelRead(msg);
+				return;
+			}
+			if (msg instanceof FullHttpResponse) {
+				FullHttpResponse full = (FullHttpResponse) msg;
+				ByteBuf out;
+				try {
+					out = decode(ctx, full.content());
+				}
+				catch (Throwable t) {
+					full.release();
+					throw t;
+				}
+				finally {
+					end();
+				}
+				FullHttpResponse decoded = full.replace(out);
+				full.release();
+				decoded.headers()
+				       .setInt(HttpHeaderNames.CONTENT_LENGTH, out.readableBytes());
+				ctx.fireChannelRead(decoded);
+				return;
+			}
+			ctx.fireChannelRead(msg);
+			return;
+		}
+
+		if (encoding == NONE || !(msg instanceof HttpContent)) {
+			ctx.fireChannelRead(msg);
+			return;
+		}
+
+		HttpContent content = (HttpContent) msg;
+		ByteBuf out;
+		try {
+			out = decode(ctx, content.content());
+		}
+		catch (Throwable t) {
+			content.release();
+			end();
+			throw t;
+		}
+		if (msg instanceof LastHttpContent) {
+			LastHttpContent last = new DefaultLastHttpContent(out);
+			last.trailingHeaders()
+			    .set(((LastHttpContent) msg).trailingHeaders());
+			content.release();
+			end();
+			ctx.fireChannelRead(last);
+			return;
+		}
+		content.release();
+		if (!out.isReadable()) {
+			//nothing inflated yet, keep reading
+			out.release();
+			if (!ctx.channel()
+			        .config()
+			        .isAutoRead()) {
+				ctx.read();
+			}
+			return;
+		}
+		ctx.fireChannelRead(new DefaultHttpContent(out));
+	}
+
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+		end();
+	}
+
+	final void start(Channel channel, HttpHeaders headers) {
+		end();
+		String contentEncoding = headers.get(HttpHeaderNames.CONTENT_ENCODING);
+		if (contentEncoding == null) {
+			return;
+		}
+		contentEncoding = contentEncoding.trim();
+		if (HttpHeaderValues.GZIP.contentEqualsIgnoreCase(contentEncoding) || HttpHeaderValues.X_GZIP.contentEqualsIgnoreCase(
+				contentEncoding)) {
+			encoding = GZIP;
+		}
+		else if (HttpHeaderValues.DEFLATE.contentEqualsIgnoreCase(contentEncoding) || HttpHeaderValues.X_DEFLATE.contentEqualsIgnoreCase(
+				contentEncoding)) {
+			encoding = DEFLATE;
+		}
+		else {
+			return;
+		}
+		header = channel.alloc()
+		                .heapBuffer(16);
+		headers.remove(HttpHeaderNames.CONTENT_ENCODING)
+		       .remove(HttpHeaderNames.CONTENT_LENGTH)
+		       .set(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED);
+	}
+
+	final void end() {
+		encoding = NONE;
+		if (inflater != null) {
+			inflater.reset();
+			inflater = null;
+		}
+		if (header != null) {
+			header.release();
+			header = null;
+		}
+	}
+
+	/**
+	 * Inflate the given compressed bytes, reading the {@code gzip} header or detecting
+	 * a raw {@code deflate} stream first if needed.
+	 *
+	 * @param ctx the current {@link ChannelHandlerContext}
+	 * @param in the compressed bytes
+	 *
+	 * @return the inflated bytes, possibly empty
+	 */
+	final ByteBuf decode(ChannelHandlerContext ctx, ByteBuf in)
+			throws DataFormatException {
+		if (inflater == null) {
+			header.writeBytes(in);
+			in = header;
+			Inflaters inflaters = Inflaters.of(ctx.channel());
+			if (encoding == GZIP) {
+				int length = gzipHeaderLength(in);
+				if (length < 0) {
+					return ctx.alloc()
+					          .heapBuffer(0);
+				}
+				in.skipBytes(length);
+				inflater = inflaters.raw();
+			}
+			else {
+				if (in.readableBytes() < 2) {
+					return ctx.alloc()
+					          .heapBuffer(0);
+				}
+				//"deflate" should be zlib wrapped but some servers send raw deflate
+				inflater = isZlibHeader(in) ? inflaters.zlib() : inflaters.raw();
+			}
+		}
+
+		ByteBuf out = ctx.alloc()
+		                 .heapBuffer(Math.max(in.readableBytes() * 2, 256));
+		int length = in.readableBytes();
+		if (inflater.finished()) {
+			//gzip trailer or trailing garbage
+			in.skipBytes(length);
+			return out;
+		}
+		if (length == 0) {
+			return out;
+		}
+		if (in.hasArray()) {
+			inflater.setInput(in.array(), in.arrayOffset() + in.readerIndex(), length);
+		}
+		else {
+			byte[] bytes = new byte[length];
+			in.getBytes(in.readerIndex(), bytes);
+			inflater.setInput(bytes);
+		}
+		try {
+			for (; ; ) {
+				out.ensureWritable(256);
+				int read = inflater.inflate(out.array(),
+						out.arrayOffset() + out.writerIndex(),
+						out.writableBytes());
+				out.writerIndex(out.writerIndex() + read);
+				if (inflater.needsDictionary()) {
+					throw new DecompressionException("Decompression failure, a dictionary is required");
+				}
+				if (read == 0 && (inflater.finished() || inflater.needsInput())) {
+					break;
+				}
+			}
+			in.skipBytes(inflater.finished() ? length : length - inflater.getRemaining());
+		}
+		catch (Throwable t) {
+			out.release();
+			throw t;
+		}
+		return out;
+	}
+
+	static boolean isZlibHeader(ByteBuf in) {
+		int cmf = in.getUnsignedByte(in.readerIndex());
+		int flg = in.getUnsignedByte(in.readerIndex() + 1);
+		return (cmf & 0x0F) == 8 && ((cmf << 8) | flg) % 31 == 0;
+	}
+
+	/**
+	 * Return the length of the {@code gzip} header at the start of the given buffer,
+	 * or -1 if it is not complete yet.
+	 *
+	 * @param in the buffer starting with a gzip header
+	 *
+	 * @return the length of the header or -1 if not complete
+	 */
+	static int gzipHeaderLength(ByteBuf in) {
+		int start = in.readerIndex();
+		int end = in.writerIndex();
+		if (end - start < 10) {
+			return -1;
+		}
+		if (in.getUnsignedByte(start) != 0x1f || in.getUnsignedByte(start + 1) != 0x8b || in.getUnsignedByte(
+				start + 2) != 8) {
+			throw new DecompressionException("Invalid gzip header");
+		}
+		int flags = in.getUnsignedByte(start + 3);
+		int index = start + 10;
+		if ((flags & FEXTRA) != 0) {
+			if (end - index < 2) {
+				return -1;
+			}
+			index += 2 + in.getUnsignedShortLE(index);
+		}
+		if ((flags & FNAME) != 0) {
+			index = index < end ? in.indexOf(index, end, (byte) 0) + 1 : 0;
+			if (index <= 0) {
+				return -1;
+			}
+		}
+		if ((flags & FCOMMENT) != 0) {
+			index = index < end ? in.indexOf(index, end, (byte) 0) + 1 : 0;
+			if (index <= 0) {
+				return -1;
+			}
+		}
+		if ((flags & FHCRC) != 0) {
+			index += 2;
+		}
+		return index > end ? -1 : index - start;
+	}
+
+	/**
+	 * The {@link Inflater} instances of a connection, released when it closes.
+	 */
+	static final class Inflaters {
+
+		static Inflaters of(Channel channel) {
+			Inflaters inflaters = channel.attr(INFLATERS)
+			                             .get();
+			if (inflaters == null) {
+				Inflaters created = new Inflaters();
+				inflaters = channel.attr(INFLATERS)
+				                   .setIfAbsent(created);
+				if (inflaters == null) {
+					inflaters = created;
+					channel.closeFuture()
+					       .addListener(f -> created.dispose());
+				}
+			}
+			return inflaters;
+		}
+
+		Inflater raw;
+		Inflater zlib;
+
+		synchronized Inflater raw() {
+			if (raw == null) {
+				raw = new Inflater(true);
+			}
+			return raw;
+		}
+
+		synchronized Inflater zlib() {
+			if (zlib == null) {
+				zlib = new Inflater(false);
+			}
+			return zlib;
+		}
+
+		synchronized void dispose() {
+			if (raw != null) {
+				raw.end();
+			}
+			if (zlib != null) {
+				zlib.end();
+			}
+		}
+	}
+
+	static final AttributeKey<Inflaters> INFLATERS =
+			AttributeKey.newInstance("httpClientInflaters");
+}
@@ -19,9 +19,11 @@ package reactor.ipc.netty.http.client;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.Duration;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 
@@ -37,6 +39,7 @@ import io.netty.handler.codec.http.EmptyHttpHeaders;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpClientCodec;
 import io.netty.handler.codec.http.HttpConstants;
+import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpMessage;
@@ -54,7 +57,9 @@ import io.netty.handler.codec.http.multipart.DefaultHttpDataFactory;
 import io.netty.handler.codec.http.multipart.HttpDataFactory;
 import io.netty.handler.codec.http.multipart.HttpPostRequestEncoder;
 import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.util.AsciiString;
 import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.ScheduledFuture;
 import org.reactivestreams.Publisher;
 import org.reactivestreams.Subscriber;
 import reactor.core.Exceptions;
@@ -97,6 +102,18 @@ class HttpClientOperations extends HttpOperations<HttpClientResponse, HttpClient
 
 	boolean redirectable;
 
+	long               drainMaxBytes = -1L;
+	long               drainMaxMillis;
+	long               received;
+	/**
+	 * Body bytes received when the response was cancelled, the drain bound applying
+	 * to the bytes discarded from then on
+	 */
+	long               drainedFrom;
+	boolean            responseDone;
+	boolean            draining;
+	ScheduledFuture<?> drainTimeout;
+
 	HttpClientOperations(Channel channel, HttpClientOperations replaced) {
 		super(channel, replaced);
 		this.redirectedFrom = replaced.redirectedFrom;
@@ -106,6 +123,8 @@ class HttpClientOperations extends HttpOperations<HttpClientResponse, HttpClient
 		this.redirectable = replaced.redirectable;
 		this.inboundPrefetch = replaced.inboundPrefetch;
 		this.requestHeaders = replaced.requestHeaders;
+		this.drainMaxBytes = replaced.drainMaxBytes;
+		this.drainMaxMillis = replaced.drainMaxMillis;
 	}
 
 	HttpClientOperations(Channel channel,
@@ -190,6 +209,26 @@ class HttpClientOperations extends HttpOperations<HttpClientResponse, HttpClient
 		return ((SocketChannel) channel()).remoteAddress();
 	}
 
+	/**
+	 * Advertise gzip and deflate support unless the request already defines {@code
+	 * Accept-Encoding}, and inflate encoded responses before they are received.
+	 */
+	final void acceptCompression() {
+		if (!requestHeaders.contains(HttpHeaderNames.ACCEPT_ENCODING)) {
+			requestHeaders.set(HttpHeaderNames.ACCEPT_ENCODING, GZIP_DEFLATE);
+		}
+		addHandler(NettyPipeline.HttpDecompressor, new HttpClientDecompressor());
+	}
+
+	/**
+	 * Discard the remaining body of a cancelled keep-alive response up to the given
+	 * bounds before releasing the connection, or close the connection.
+	 */
+	final void autoDrain(long maxBytes, Duration maxTime) {
+		this.drainMaxBytes = maxBytes;
+		this.drainMaxMillis = maxTime.toMillis();
+	}
+
 	@Override
 	public HttpClientRequest chunkedTransfer(boolean chunked) {
 		if (!hasSentHeaders()) {
@@ -431,7 +470,10 @@ class HttpClientOperations extends HttpOperations<HttpClientResponse, HttpClient
 	@Override
 	protected void onChannelActive(final ChannelHandlerContext ctx) {
 
-		addHandler(NettyPipeline.HttpCodecHandler, new HttpClientCodec());
+		if (channel().parent() == null) {
+			addHandler(NettyPipeline.HttpCodecHandler, new HttpClientCodec());
+		}
+		//else a multiplexed HTTP/2 stream, encoded by its parent connection
 
 		HttpUtil.setTransferEncodingChunked(nettyRequest, true);
 
@@ -467,8 +509,45 @@ class HttpClientOperations extends HttpOperations<HttpClientResponse, HttpClient
 		}
 	}
 
+	@Override
+	protected void onInboundCancel() {
+		ResponseState state = responseState;
+		if (drainMaxBytes < 0L || draining || responseDone || state == null || !channel().isActive() || channel().parent() != null) {
+			return;
+		}
+		if (!isKeepAlive() || !HttpUtil.isKeepAlive(state.response)) {
+			return;
+		}
+		long length = HttpUtil.getContentLength(state.response, -1L);
+		if (length >= 0L && length - received > drainMaxBytes) {
+			closeUndrained();
+			return;
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("Draining cancelled response body before releasing {}",
+					channel());
+		}
+		draining = true;
+		drainedFrom = received;
+		drainTimeout = channel().eventLoop()
+		                        .schedule(this::closeUndrained,
+				                        drainMaxMillis,
+				                        TimeUnit.MILLISECONDS);
+		//read on demand as the body is discarded: turning autoRead on would outlive
+		//this exchange once the connection is released to its pool
+		channel().read();
+	}
+
 	@Override
 	protected void onInboundNext(ChannelHandlerContext ctx, Object msg) {
+		if (draining) {
+			drain(msg);
+			return;
+		}
+		if (msg instanceof HttpContent && drainMaxBytes >= 0L) {
+			received += ((HttpContent) msg).content()
+			                               .readableBytes();
+		}
 		if (msg instanceof HttpResponse) {
 			HttpResponse response = (HttpResponse) msg;
 			setNettyResponse(response);
@@ -492,12 +571,14 @@ class HttpClientOperations extends HttpOperations<HttpClientResponse, HttpClient
 				parentContext().fireContextActive(this);
 			}
 			if (msg instanceof FullHttpResponse) {
+				responseDone = true;
 				super.onInboundNext(ctx, msg);
 				onChannelInactive();
 			}
 			return;
 		}
 		if (msg instanceof LastHttpContent) {
+			responseDone = true;
 			if (log.isDebugEnabled()) {
 				log.debug("Received last HTTP packet");
 			}
@@ -523,6 +604,16 @@ class HttpClientOperations extends HttpOperations<HttpClientResponse, HttpClient
 		return nettyRequest;
 	}
 
+	@Override
+	protected HttpMessage newFullMessage(ByteBuf body) {
+		return new DefaultFullHttpRequest(nettyRequest.protocolVersion(),
+				nettyRequest.method(),
+				nettyRequest.uri(),
+				body,
+				nettyRequest.headers(),
+				EmptyHttpHeaders.INSTANCE);
+	}
+
 	final boolean checkResponseCode(HttpResponse response) {
 		int code = response.status()
 		                   .code();
@@ -554,6 +645,48 @@ class HttpClientOperations extends HttpOperations<HttpClientResponse, HttpClient
 		return nettyRequest;
 	}
 
+	/**
+	 * Discard a frame of a cancelled response body and release the connection on its
+	 * last frame, or close it once the discarded body exceeds the drain bound.
+	 */
+	final void drain(Object msg) {
+		if (msg instanceof HttpContent) {
+			received += ((HttpContent) msg).content()
+			                               .readableBytes();
+		}
+		if (msg instanceof LastHttpContent) {
+			draining = false;
+			responseDone = true;
+			drainTimeout.cancel(false);
+			if (log.isDebugEnabled()) {
+				log.debug("Drained cancelled response body, releasing {}", channel());
+			}
+			onChannelInactive();
+		}
+		else if (received - drainedFrom > drainMaxBytes) {
+			closeUndrained();
+		}
+		else {
+			channel().read();
+		}
+	}
+
+	final void closeUndrained() {
+		if (responseDone || !channel().isOpen()) {
+			return;
+		}
+		draining = false;
+		if (drainTimeout != null) {
+			drainTimeout.cancel(false);
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("Closing {} instead of draining its cancelled response body",
+					channel());
+		}
+		ignoreChannelPersistence();
+		channel().close();
+	}
+
 	final void prefetchMore(ChannelHandlerContext ctx) {
 		int inboundPrefetch = this.inboundPrefetch - 1;
 		if (inboundPrefetch >= 0) {
@@ -583,8 +716,7 @@ class HttpClientOperations extends HttpOperations<HttpClientResponse, HttpClient
 
 			HttpClientWSOperations ops = new HttpClientWSOperations(url, protocols, this);
 
-			if (channel().attr(OPERATIONS_ATTRIBUTE_KEY)
-			             .compareAndSet(this, ops)) {
+			if (replace(ops)) {
 				Mono<Void> handshake = FutureMono.from(ops.handshakerResult)
 				                                 .then(() -> Mono.from(
 						                                 websocketHandler.apply(ops,
@@ -719,4 +851,6 @@ class HttpClientOperations extends HttpOperations<HttpClientResponse, HttpClient
 			Loggers.getLogger(HttpClientOperations.class);
 	static final AttributeKey<String[]> REDIRECT_ATTR_KEY  =
 			AttributeKey.newInstance("httpRedirects");
+	static final AsciiString            GZIP_DEFLATE       =
+			AsciiString.of("gzip, deflate");
 }
@@ -37,6 +37,7 @@ import io.netty.channel.pool.ChannelPool;
 import io.netty.channel.socket.InternetProtocolFamily;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.resolver.AddressResolverGroup;
 import io.netty.util.AttributeKey;
 import reactor.ipc.netty.resources.LoopResources;
 import reactor.ipc.netty.options.ClientOptions;
@@ -60,11 +61,85 @@ public final class HttpClientOptions extends ClientOptions {
 		return new HttpClientOptions();
 	}
 
+	boolean  acceptCompression;
+	long     drainMaxBytes = -1L;
+	Duration drainMaxTime;
+
 	HttpClientOptions() {
 	}
 
-	HttpClientOptions(ClientOptions options) {
+	HttpClientOptions(HttpClientOptions options) {
 		super(options);
+		this.acceptCompression = options.acceptCompression;
+		this.drainMaxBytes = options.drainMaxBytes;
+		this.drainMaxTime = options.drainMaxTime;
+	}
+
+	/**
+	 * Send {@code Accept-Encoding: gzip, deflate} with requests not defining it and
+	 * transparently inflate encoded response bodies as they are received.
+	 *
+	 * @param enabled true to accept compressed responses
+	 *
+	 * @return {@literal this}
+	 */
+	public HttpClientOptions compression(boolean enabled) {
+		this.acceptCompression = enabled;
+		return this;
+	}
+
+	/**
+	 * Return true if compressed responses are accepted and inflated
+	 *
+	 * @return true if compressed responses are accepted and inflated
+	 */
+	public boolean isCompressionEnabled() {
+		return acceptCompression;
+	}
+
+	/**
+	 * Read and discard the remaining body of a keep-alive response cancelled or
+	 * disposed before its end, then release the connection to the pool. The
+	 * connection is closed instead if the remaining body is larger than the given
+	 * size, as announced by its {@code Content-Length} or as discarded, or does not
+	 * end within the given time.
+	 *
+	 * @param maxBytes the maximum number of body bytes to discard
+	 * @param maxTime the maximum time to discard the body
+	 *
+	 * @return {@literal this}
+	 */
+	public HttpClientOptions autoDrain(long maxBytes, Duration maxTime) {
+		if (maxBytes < 0L) {
+			throw new IllegalArgumentException("maxBytes must be positive, was: " + maxBytes);
+		}
+		Objects.requireNonNull(maxTime, "maxTime");
+		if (maxTime.isNegative() || maxTime.isZero()) {
+			throw new IllegalArgumentException("maxTime must be strictly positive, was: " + maxTime);
+		}
+		this.drainMaxBytes = maxBytes;
+		this.drainMaxTime = maxTime;
+		return this;
+	}
+
+	/**
+	 * Return the maximum number of body bytes discarded before releasing a connection,
+	 * -1 if auto-drain is disabled
+	 *
+	 * @return the maximum number of body bytes to discard, -1 if auto-drain is disabled
+	 */
+	public long autoDrainMaxBytes() {
+		return drainMaxBytes;
+	}
+
+	/**
+	 * Return the maximum time to discard a body before releasing a connection, null if
+	 * auto-drain is disabled
+	 *
+	 * @return the maximum time to discard a body, null if auto-drain is disabled
+	 */
+	public Duration autoDrainMaxTime() {
+		return drainMaxTime;
 	}
 
 	@Override
@@ -136,7 +211,8 @@ public final class HttpClientOptions extends ClientOptions {
 		Objects.requireNonNull(uri, "uri");
 		boolean secure = isSecure(uri);
 		int port = uri.getPort() != -1 ? uri.getPort() : (secure ? 443 : 80);
-		return useProxy() ? InetSocketAddress.createUnresolved(uri.getHost(), port) :
+		return useProxy() || useResolver() ?
+				InetSocketAddress.createUnresolved(uri.getHost(), port) :
 				new InetSocketAddress(uri.getHost(), port);
 	}
 
@@ -290,6 +366,12 @@ public final class HttpClientOptions extends ClientOptions {
 		return this;
 	}
 
+	@Override
+	public HttpClientOptions resolver(AddressResolverGroup<?> resolver) {
+		super.resolver(resolver);
+		return this;
+	}
+
 	@Override
 	public HttpClientOptions sslContext(SslContext sslContext) {
 		super.sslContext(sslContext);
@@ -107,6 +107,15 @@ final class MonoHttpClientResponse extends Mono<HttpClientResponse> {
 					ch.disableChunkedTransfer();
 				}
 
+				if (parent.parent.options.isCompressionEnabled()) {
+					ch.acceptCompression();
+				}
+
+				if (parent.parent.options.autoDrainMaxBytes() >= 0L) {
+					ch.autoDrain(parent.parent.options.autoDrainMaxBytes(),
+							parent.parent.options.autoDrainMaxTime());
+				}
+
 				if (parent.handler != null) {
 					return parent.handler.apply(ch);
 				}
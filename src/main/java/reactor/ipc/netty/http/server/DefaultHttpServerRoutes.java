@@ -22,9 +22,17 @@ import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.BiFunction;
 import java.util.function.Function;
@@ -44,6 +52,12 @@ final class DefaultHttpServerRoutes implements HttpServerRoutes {
 	private final CopyOnWriteArrayList<HttpRouteHandler> handlers =
 			new CopyOnWriteArrayList<>();
 
+	/**
+	 * Compiled view of {@link #handlers}, reset on each registration and rebuilt
+	 * lazily by the next request.
+	 */
+	volatile HttpRouter router;
+
 	@Override
 	public HttpServerRoutes directory(String uri, Path directory,
 			Function<HttpServerResponse, HttpServerResponse> interceptor) {
@@ -73,7 +87,7 @@ final class DefaultHttpServerRoutes implements HttpServerRoutes {
 	}
 
 	@Override
-	public HttpServerRoutes route(Predicate<? super HttpServerRequest> condition,
+	public synchronized HttpServerRoutes route(Predicate<? super HttpServerRequest> condition,
 			BiFunction<? super HttpServerRequest, ? super HttpServerResponse, ? extends Publisher<Void>> handler) {
 		Objects.requireNonNull(condition, "condition");
 		Objects.requireNonNull(handler, "handler");
@@ -86,20 +100,29 @@ final class DefaultHttpServerRoutes implements HttpServerRoutes {
 		else {
 			handlers.add(new HttpRouteHandler(condition, handler, null));
 		}
+		router = null;
 		return this;
 	}
 
 	@Override
 	public Publisher<Void> apply(HttpServerRequest request, HttpServerResponse response) {
-		final Iterator<HttpRouteHandler> iterator = handlers.iterator();
-		HttpRouteHandler cursor;
+		HttpRouter router = router();
 
 		try {
-			while (iterator.hasNext()) {
-				cursor = iterator.next();
-				if (cursor.test(request)) {
-					return cursor.apply(request, response);
+			HttpRouteMatch match = router.find(request);
+			int bound = match != null ? match.route.index : Integer.MAX_VALUE;
+
+			for (HttpRoute fallback : router.fallbacks) {
+				if (fallback.index > bound) {
+					break;
 				}
+				if (fallback.handler.test(request)) {
+					return fallback.handler.apply(request, response);
+				}
+			}
+
+			if (match != null) {
+				return match.apply(request, response);
 			}
 		}
 		catch (Throwable t) {
@@ -110,6 +133,47 @@ final class DefaultHttpServerRoutes implements HttpServerRoutes {
 		return response.sendNotFound();
 	}
 
+	@Override
+	public int uriTemplateCacheSize() {
+		int size = 0;
+		for (HttpRoute fallback : router().fallbacks) {
+			HttpPredicate.UriPathTemplate template = fallback.handler.template();
+			if (template != null) {
+				size += template.cacheSize();
+			}
+		}
+		return size;
+	}
+
+	@Override
+	public double uriTemplateCacheHitRate() {
+		long hits = 0L;
+		long lookups = 0L;
+		for (HttpRoute fallback : router().fallbacks) {
+			HttpPredicate.UriPathTemplate template = fallback.handler.template();
+			if (template != null) {
+				long h = template.cacheHits();
+				hits += h;
+				lookups += h + template.cacheMisses();
+			}
+		}
+		return lookups == 0L ? 0d : (double) hits / lookups;
+	}
+
+	final HttpRouter router() {
+		HttpRouter router = this.router;
+		return router != null ? router : compile();
+	}
+
+	synchronized HttpRouter compile() {
+		HttpRouter router = this.router;
+		if (router == null) {
+			router = new HttpRouter(handlers.toArray(new HttpRouteHandler[0]));
+			this.router = router;
+		}
+		return router;
+	}
+
 	/**
 	 */
 	static final class HttpRouteHandler
@@ -139,6 +203,315 @@ final class DefaultHttpServerRoutes implements HttpServerRoutes {
 		public boolean test(HttpServerRequest o) {
 			return condition.test(o);
 		}
+
+		/**
+		 * @return the uri template of this route if registered with a
+		 * {@link HttpPredicate}, null otherwise
+		 */
+		HttpPredicate.UriPathTemplate template() {
+			return resolver instanceof HttpPredicate ?
+					((HttpPredicate) resolver).template : null;
+		}
+	}
+
+	/**
+	 * A prefix tree of the registered {@link HttpPredicate} routes keyed by path
+	 * segment, resolving a request in a single walk over its uri whatever the number of
+	 * routes. Templates that cannot be expressed as literal and whole-segment
+	 * {@code {name}} variables, as well as custom {@link Predicate} routes, are kept
+	 * as ordered fallbacks. Registration order is preserved across both: the first
+	 * registered route matching a request wins.
+	 */
+	static final class HttpRouter {
+
+		final HttpRouteNode root = new HttpRouteNode();
+		final HttpRoute[]   fallbacks;
+		final int           maxVariables;
+
+		HttpRouter(HttpRouteHandler[] handlers) {
+			List<HttpRoute> fallbacks = new ArrayList<>();
+			int maxVariables = 0;
+			for (int i = 0; i < handlers.length; i++) {
+				HttpRouteHandler handler = handlers[i];
+				String[] segments = handler.resolver instanceof HttpPredicate ?
+						segments(((HttpPredicate) handler.resolver).uri) : null;
+
+				if (segments == null) {
+					fallbacks.add(new HttpRoute(i, handler, null));
+					continue;
+				}
+
+				HttpRoute route = new HttpRoute(i, handler, segments);
+				maxVariables = Math.max(maxVariables, route.variables.length);
+				HttpRouteNode node = root;
+				node.minIndex = Math.min(node.minIndex, i);
+				for (String segment : segments) {
+					node = node.child(segment);
+					node.minIndex = Math.min(node.minIndex, i);
+				}
+				node.add(route);
+			}
+			this.fallbacks = fallbacks.toArray(new HttpRoute[fallbacks.size()]);
+			this.maxVariables = maxVariables;
+		}
+
+		/**
+		 * Find the first registered tree route matching the given request.
+		 *
+		 * @param request the request to route
+		 *
+		 * @return the matched route and its path variables or null
+		 */
+		HttpRouteMatch find(HttpServerRequest request) {
+			String uri = request.uri();
+			if (uri.isEmpty() || uri.charAt(0) != '/' || root.minIndex == Integer.MAX_VALUE) {
+				return null;
+			}
+			HttpRouteMatch match = new HttpRouteMatch(request, new String[maxVariables]);
+			match.find(root, uri, 1, 0);
+			return match.route != null ? match : null;
+		}
+
+		/**
+		 * Split a template into path segments, or return null if it cannot be
+		 * compiled into the tree and has to be tested as a regular predicate.
+		 *
+		 * @param template the {@link HttpPredicate} uri template
+		 *
+		 * @return the template segments or null
+		 */
+		static String[] segments(String template) {
+			if (template == null || template.isEmpty() || template.charAt(0) != '/') {
+				return null;
+			}
+			String[] segments = template.substring(1)
+			                            .split("/", -1);
+			for (String segment : segments) {
+				if (isVariable(segment)) {
+					continue;
+				}
+				for (int i = 0; i < segment.length(); i++) {
+					if (REGEX_CHARS.indexOf(segment.charAt(i)) != -1) {
+						return null;
+					}
+				}
+			}
+			return segments;
+		}
+
+		static boolean isVariable(String segment) {
+			return segment.length() > 2 && segment.charAt(0) == '{' && segment.indexOf(
+					'}') == segment.length() - 1 && segment.indexOf('{', 1) == -1;
+		}
+
+		static final String REGEX_CHARS = "\\.[]{}()*+?^$|";
+	}
+
+	/**
+	 * A path segment node, children are either literal segments or a single variable
+	 * segment matching any value without {@code /} or {@code .}, consistently with
+	 * {@link HttpPredicate.UriPathTemplate}.
+	 */
+	static final class HttpRouteNode {
+
+		final Map<String, HttpRouteNode> literals = new HashMap<>();
+
+		HttpRouteNode variable;
+		HttpRoute[]   routes   = NO_ROUTES;
+		int           minIndex = Integer.MAX_VALUE;
+
+		HttpRouteNode child(String segment) {
+			if (HttpRouter.isVariable(segment)) {
+				if (variable == null) {
+					variable = new HttpRouteNode();
+				}
+				return variable;
+			}
+			return literals.computeIfAbsent(segment, s -> new HttpRouteNode());
+		}
+
+		void add(HttpRoute route) {
+			HttpRoute[] routes = Arrays.copyOf(this.routes, this.routes.length + 1);
+			routes[routes.length - 1] = route;
+			this.routes = routes;
+		}
+
+		static final HttpRoute[] NO_ROUTES = new HttpRoute[0];
 	}
 
+	/**
+	 * A registered route and its position in registration order.
+	 */
+	static final class HttpRoute {
+
+		final int              index;
+		final HttpRouteHandler handler;
+		final String[]         variables;
+
+		HttpRoute(int index, HttpRouteHandler handler, String[] segments) {
+			this.index = index;
+			this.handler = handler;
+			if (segments == null) {
+				this.variables = null;
+				return;
+			}
+			List<String> variables = new ArrayList<>();
+			for (String segment : segments) {
+				if (HttpRouter.isVariable(segment)) {
+					variables.add(segment.substring(1, segment.length() - 1));
+				}
+			}
+			this.variables = variables.toArray(new String[variables.size()]);
+		}
+
+		boolean accept(HttpServerRequest request) {
+			HttpPredicate predicate = (HttpPredicate) handler.resolver;
+			return (predicate.method == null || predicate.method.equals(request.method())) &&
+					(predicate.protocol == null || predicate.protocol.equals(request.version()));
+		}
+	}
+
+	/**
+	 * A single route lookup walking the tree, capturing the path variables of the
+	 * current branch and keeping the lowest indexed route found so far.
+	 */
+	static final class HttpRouteMatch {
+
+		final HttpServerRequest request;
+		final String[]          captures;
+
+		HttpRoute route;
+		String[]  values;
+
+		HttpRouteMatch(HttpServerRequest request, String[] captures) {
+			this.request = request;
+			this.captures = captures;
+		}
+
+		void find(HttpRouteNode node, String uri, int start, int captured) {
+			int end = uri.indexOf('/', start);
+			boolean last = end == -1;
+			if (last) {
+				end = uri.length();
+			}
+
+			if (!node.literals.isEmpty()) {
+				HttpRouteNode child = node.literals.get(uri.substring(start, end));
+				if (child != null) {
+					visit(child, uri, end, last, captured);
+				}
+			}
+
+			HttpRouteNode child = node.variable;
+			if (child != null) {
+				int dot = uri.indexOf('.', start);
+				if (dot == -1 || dot >= end) {
+					captures[captured] = uri.substring(start, end);
+					visit(child, uri, end, last, captured + 1);
+				}
+			}
+		}
+
+		void visit(HttpRouteNode node, String uri, int end, boolean last, int captured) {
+			if (route != null && node.minIndex >= route.index) {
+				return;
+			}
+			if (!last) {
+				find(node, uri, end + 1, captured);
+				return;
+			}
+			for (HttpRoute candidate : node.routes) {
+				if (route != null && candidate.index >= route.index) {
+					return;
+				}
+				if (candidate.accept(request)) {
+					route = candidate;
+					values = captured != 0 ? Arrays.copyOf(captures, captured) : null;
+					return;
+				}
+			}
+		}
+
+		Publisher<Void> apply(HttpServerRequest request, HttpServerResponse response) {
+			Map<String, String> params =
+					values != null ? new HttpRouteParams(route.variables, values) : null;
+			return route.handler.handler.apply(request.paramsResolver(uri -> params),
+					response);
+		}
+	}
+
+	/**
+	 * Path variables captured while routing, backed by the route variable names and
+	 * the matched values. Lookups scan the few variables of a route and allocate
+	 * nothing.
+	 */
+	static final class HttpRouteParams extends AbstractMap<String, String> {
+
+		final String[] names;
+		final String[] values;
+
+		HttpRouteParams(String[] names, String[] values) {
+			this.names = names;
+			this.values = values;
+		}
+
+		@Override
+		public String get(Object key) {
+			int i = indexOf(key);
+			return i != -1 ? values[i] : null;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return indexOf(key) != -1;
+		}
+
+		@Override
+		public int size() {
+			return values.length;
+		}
+
+		@Override
+		public Set<Entry<String, String>> entrySet() {
+			return new AbstractSet<Entry<String, String>>() {
+				@Override
+				public Iterator<Entry<String, String>> iterator() {
+					return new Iterator<Entry<String, String>>() {
+						int index;
+
+						@Override
+						public boolean hasNext() {
+							return index < values.length;
+						}
+
+						@Override
+						public Entry<String, String> next() {
+							if (index >= values.length) {
+								throw new NoSuchElementException();
+							}
+							int i = index++;
+							return new SimpleImmutableEntry<>(names[i], values[i]);
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return values.length;
+				}
+			};
+		}
+
+		int indexOf(Object key) {
+			if (!(key instanceof CharSequence)) {
+				return -1;
+			}
+			for (int i = names.length - 1; i >= 0; i--) {
+				if (names[i].contentEquals((CharSequence) key)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+	}
 }
@@ -0,0 +1,389 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package reactor.ipc.netty.http.server;
+
+import java.util.ArrayList;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http2.DefaultHttp2Connection;
+import io.netty.handler.codec.http2.Http2ConnectionHandler;
+import io.netty.handler.codec.http2.Http2ConnectionHandlerBuilder;
+import io.netty.handler.codec.http2.Http2Error;
+import io.netty.handler.codec.http2.Http2Exception;
+import io.netty.handler.codec.http2.Http2FrameAdapter;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2Stream;
+import io.netty.handler.codec.http2.HttpConversionUtil;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import io.netty.util.concurrent.PromiseCombiner;
+import reactor.ipc.netty.NettyPipeline;
+import reactor.ipc.netty.channel.ContextHandler;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+/**
+ * Serve the streams of an HTTP/2 connection, each with an {@link
+ * Http2ServerStreamChannel} initialized by the server {@link ContextHandler} so that
+ * it gets its own {@link HttpServerOperations}. Streams are read and written
+ * independently: the connection reads continuously, every stream being flow
+ * controlled by its own window, and responses are written in any order.
+ *
+ * @author agent
+ */
+final class Http2ServerConnection extends ChannelInboundHandlerAdapter {
+
+	final HttpServerOptions                      options;
+	final ContextHandler<?>                      context;
+	final IntObjectMap<Http2ServerStreamChannel> streams;
+	final FrameListener                          frameListener;
+
+	Channel                channel;
+	Http2ConnectionHandler codec;
+	ChannelHandlerContext  codecContext;
+	int                    lastStreamId;
+
+	Http2ServerConnection(HttpServerOptions options, ContextHandler<?> context) {
+		this.options = options;
+		this.context = context;
+		this.streams = new IntObjectHashMap<>();
+		this.frameListener = new FrameListener();
+	}
+
+	/**
+	 * Create the HTTP/2 codec of this connection, to be installed as {@link
+	 * NettyPipeline#HttpCodecHandler} before this handler.
+	 *
+	 * @return a new HTTP/2 codec notifying this connection of the received frames
+	 */
+	final Http2ConnectionHandler newCodec() {
+		return new Http2ConnectionHandlerBuilder()
+				.connection(new DefaultHttp2Connection(true))
+				.frameListener(frameListener)
+				.initialSettings(new Http2Settings()
+						.maxConcurrentStreams(options.http2MaxConcurrentStreams()))
+				.build();
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+		this.channel = ctx.channel();
+		this.codecContext = ctx.pipeline()
+		                       .context(NettyPipeline.HttpCodecHandler);
+		this.codec = (Http2ConnectionHandler) codecContext.handler();
+		//streams are flow controlled by their window rather than by connection reads
+		channel.config()
+		       .setAutoRead(true);
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		for (Http2ServerStreamChannel stream : new ArrayList<>(streams.values())) {
+			stream.close();
+		}
+		ctx.fireChannelInactive();
+	}
+
+	/**
+	 * Serve the request of a cleartext upgrade as the stream 1 request, the stream
+	 * being half closed by the upgrade.
+	 *
+	 * @param request the upgrade request
+	 */
+	final void onUpgradeRequest(FullHttpRequest request) {
+		openStream(1, request);
+	}
+
+	final void onHeaders(ChannelHandlerContext ctx,
+			int streamId,
+			Http2Headers headers,
+			boolean endOfStream) throws Http2Exception {
+		if (streamId <= lastStreamId) {
+			//trailers are not exposed, they only end the request body if still read
+			Http2ServerStreamChannel stream = streams.get(streamId);
+			if (stream != null && endOfStream) {
+				stream.inbound(LastHttpContent.EMPTY_LAST_CONTENT);
+			}
+			return;
+		}
+		FullHttpRequest request =
+				HttpConversionUtil.toFullHttpRequest(streamId, headers, ctx.alloc(), true);
+		if (endOfStream) {
+			openStream(streamId, request);
+			return;
+		}
+		//the body follows as DATA frames, delivered as they are read
+		HttpRequest head = new DefaultHttpRequest(request.protocolVersion(),
+				request.method(),
+				request.uri(),
+				false);
+		head.headers()
+		    .set(request.headers());
+		request.release();
+		openStream(streamId, head);
+	}
+
+	final int onData(int streamId, ByteBuf data, int padding, boolean endOfStream) {
+		Http2ServerStreamChannel stream = streams.get(streamId);
+		if (stream == null) {
+			//the stream is gone, its data is discarded right away
+			return data.readableBytes() + padding;
+		}
+		data.retain();
+		stream.inbound(endOfStream ? new DefaultLastHttpContent(data) :
+				new DefaultHttpContent(data));
+		//the data bytes are returned to the flow controller once read by the stream
+		return padding;
+	}
+
+	final void onReset(int streamId) {
+		Http2ServerStreamChannel stream = streams.get(streamId);
+		if (stream != null) {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Open a stream channel served by its own operations, reading the given request
+	 * first.
+	 */
+	final void openStream(int streamId, HttpRequest request) {
+		lastStreamId = streamId;
+		Http2ServerStreamChannel stream = new Http2ServerStreamChannel(this, streamId);
+		stream.headRequest = HttpMethod.HEAD.equals(request.method());
+		stream.inbound(request);
+		streams.put(streamId, stream);
+		context.initChildChannel(stream);
+		ChannelFuture f = channel.eventLoop()
+		                         .register(stream);
+		if (f.isDone() && !f.isSuccess()) {
+			//closing releases the enqueued request and resets the stream
+			log.error("Failed registering HTTP/2 stream {}", streamId, f.cause());
+			stream.unsafe()
+			      .closeForcibly();
+		}
+	}
+
+	/**
+	 * Acknowledge the given body bytes read by a stream, sending a {@code
+	 * WINDOW_UPDATE} once enough bytes are consumed.
+	 */
+	final void consumeBytes(Http2ServerStreamChannel stream, int bytes) {
+		if (bytes == 0) {
+			return;
+		}
+		Http2Stream s = codec.connection()
+		                     .stream(stream.streamId);
+		if (s == null) {
+			//a closed stream returned its bytes already
+			return;
+		}
+		try {
+			if (codec.connection()
+			         .local()
+			         .flowController()
+			         .consumeBytes(s, bytes)) {
+				flush();
+			}
+		}
+		catch (Http2Exception e) {
+			codecContext.fireExceptionCaught(e);
+		}
+	}
+
+	final void flush() {
+		codecContext.flush();
+	}
+
+	final void onStreamClosed(Http2ServerStreamChannel stream) {
+		streams.remove(stream.streamId);
+		Http2Stream s = codec.connection()
+		                     .stream(stream.streamId);
+		if (!stream.endStream && s != null && s.state() != Http2Stream.State.CLOSED && channel.isActive()) {
+			codec.resetStream(codecContext,
+					stream.streamId,
+					Http2Error.CANCEL.code(),
+					codecContext.newPromise());
+			flush();
+		}
+	}
+
+	/**
+	 * Fail the given stream after a write failure: the stream exchange is errored
+	 * and the stream closed, which resets it and frees it from this connection.
+	 */
+	final void onStreamWriteFailed(Http2ServerStreamChannel stream, Throwable cause) {
+		if (log.isDebugEnabled()) {
+			log.debug("Failed writing on HTTP/2 stream {}", stream, cause);
+		}
+		stream.pipeline()
+		      .fireExceptionCaught(cause);
+		stream.close();
+	}
+
+	/**
+	 * Encode a response message written on the given stream.
+	 *
+	 * @return the future of the encoded frames
+	 */
+	final ChannelFuture write(Http2ServerStreamChannel stream, Object msg) {
+		if (msg instanceof HttpResponse) {
+			if (stream.headersSent) {
+				throw new IllegalStateException("Headers already sent on stream " + stream.streamId);
+			}
+			HttpResponse response = (HttpResponse) msg;
+			stream.headersSent = true;
+			Http2Headers headers = HttpConversionUtil.toHttp2Headers(response, false);
+
+			ByteBuf content = msg instanceof FullHttpResponse ?
+					((FullHttpResponse) msg).content() : null;
+			if (!stream.headRequest && content != null && content.isReadable()) {
+				ChannelPromise promise = codecContext.newPromise();
+				PromiseCombiner combiner = new PromiseCombiner();
+				combiner.add(writeHeaders(stream, headers, false));
+				combiner.add(writeData(stream, content.retain(), true));
+				combiner.finish(promise);
+				return promise;
+			}
+			if (content == null && !isBodyless(stream, response) && !HttpUtil.isTransferEncodingChunked(
+					response) && HttpUtil.isContentLengthSet(response)) {
+				stream.remaining = HttpUtil.getContentLength(response);
+			}
+			//without a body to follow, the response ends with its headers
+			return writeHeaders(stream,
+					headers,
+					content != null || isBodyless(stream, response) || stream.remaining == 0L);
+		}
+		if (!stream.headersSent) {
+			throw new IllegalStateException("Headers not sent on stream " + stream.streamId);
+		}
+		if (msg instanceof HttpContent) {
+			return writeData(stream,
+					((HttpContent) msg).content()
+					                   .retain(),
+					msg instanceof LastHttpContent);
+		}
+		if (msg instanceof ByteBuf) {
+			return writeData(stream, ((ByteBuf) msg).retain(), false);
+		}
+		throw new IllegalArgumentException("Unsupported message type on HTTP/2 stream: " + msg.getClass()
+		                                                                                    .getName());
+	}
+
+	final ChannelFuture writeHeaders(Http2ServerStreamChannel stream,
+			Http2Headers headers,
+			boolean endStream) {
+		stream.endStream = endStream;
+		return codec.encoder()
+		            .writeHeaders(codecContext,
+				            stream.streamId,
+				            headers,
+				            0,
+				            endStream,
+				            codecContext.newPromise());
+	}
+
+	final ChannelFuture writeData(Http2ServerStreamChannel stream,
+			ByteBuf data,
+			boolean endStream) {
+		if (stream.endStream) {
+			//the response already ended, e.g. with the headers of a bodyless response
+			data.release();
+			return codecContext.newSucceededFuture();
+		}
+		if (stream.remaining > 0L) {
+			//a declared body ends with its last byte
+			stream.remaining -= data.readableBytes();
+			endStream |= stream.remaining <= 0L;
+		}
+		stream.endStream = endStream;
+		return codec.encoder()
+		            .writeData(codecContext,
+				            stream.streamId,
+				            data,
+				            0,
+				            endStream,
+				            codecContext.newPromise());
+	}
+
+	static boolean isBodyless(Http2ServerStreamChannel stream, HttpResponse response) {
+		int code = response.status()
+		                   .code();
+		return stream.headRequest || code == HttpResponseStatus.NO_CONTENT.code() || code == HttpResponseStatus.NOT_MODIFIED.code();
+	}
+
+	final class FrameListener extends Http2FrameAdapter {
+
+		@Override
+		public void onHeadersRead(ChannelHandlerContext ctx,
+				int streamId,
+				Http2Headers headers,
+				int padding,
+				boolean endOfStream) throws Http2Exception {
+			onHeaders(ctx, streamId, headers, endOfStream);
+		}
+
+		@Override
+		public void onHeadersRead(ChannelHandlerContext ctx,
+				int streamId,
+				Http2Headers headers,
+				int streamDependency,
+				short weight,
+				boolean exclusive,
+				int padding,
+				boolean endOfStream) throws Http2Exception {
+			onHeaders(ctx, streamId, headers, endOfStream);
+		}
+
+		@Override
+		public int onDataRead(ChannelHandlerContext ctx,
+				int streamId,
+				ByteBuf data,
+				int padding,
+				boolean endOfStream) throws Http2Exception {
+			return onData(streamId, data, padding, endOfStream);
+		}
+
+		@Override
+		public void onRstStreamRead(ChannelHandlerContext ctx,
+				int streamId,
+				long errorCode) throws Http2Exception {
+			onReset(streamId);
+		}
+	}
+
+	static final Logger log = Loggers.getLogger(Http2ServerConnection.class);
+}
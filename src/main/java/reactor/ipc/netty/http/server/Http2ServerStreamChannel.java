@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package reactor.ipc.netty.http.server;
+
+import java.net.SocketAddress;
+import java.util.ArrayDeque;
+
+import io.netty.channel.AbstractChannel;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultChannelConfig;
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * A {@link Channel} mapped on a single HTTP/2 stream of a server connection, its
+ * {@link #parent()}. It is fed with the request of its stream as HTTP/1.1 messages,
+ * one per {@link #read()}, and accepts HTTP/1.1 response messages which are
+ * translated to HTTP/2 frames. The request body is acknowledged to the client with
+ * {@code WINDOW_UPDATE} as it is read, so that a stream not read is flow controlled
+ * without stalling the other streams. Closing it frees the stream, resetting it if
+ * the response has not ended.
+ *
+ * @author agent
+ */
+final class Http2ServerStreamChannel extends AbstractChannel {
+
+	static final ChannelMetadata METADATA = new ChannelMetadata(false);
+
+	final Http2ServerConnection connection;
+	final int                   streamId;
+	final ChannelConfig         config;
+	final ArrayDeque<Object>    inbound;
+
+	/**
+	 * The frames write futures of the encoded messages still in the outbound buffer
+	 */
+	final ArrayDeque<ChannelFuture>             encoding = new ArrayDeque<>();
+	final ChannelOutboundBuffer.MessageProcessor encoder  = this::encode;
+	final ChannelFutureListener                 onEncoded;
+
+	/**
+	 * The remaining response body size if declared with {@code Content-Length}, -1
+	 * otherwise
+	 */
+	long    remaining = -1L;
+	int     skipped;
+	boolean headRequest;
+	boolean headersSent;
+	boolean endStream;
+	boolean readPending;
+	boolean reading;
+	boolean writing;
+
+	volatile boolean open = true;
+
+	Http2ServerStreamChannel(Http2ServerConnection connection, int streamId) {
+		super(connection.channel);
+		this.connection = connection;
+		this.streamId = streamId;
+		this.inbound = new ArrayDeque<>();
+		this.config = new DefaultChannelConfig(this);
+		this.config.setAutoRead(false);
+		this.onEncoded = f -> {
+			if (!writing) {
+				removeWritten();
+			}
+		};
+	}
+
+	@Override
+	public ChannelConfig config() {
+		return config;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return open;
+	}
+
+	@Override
+	public boolean isActive() {
+		return open && parent().isActive();
+	}
+
+	@Override
+	public ChannelMetadata metadata() {
+		return METADATA;
+	}
+
+	@Override
+	protected AbstractUnsafe newUnsafe() {
+		return new StreamUnsafe();
+	}
+
+	@Override
+	protected boolean isCompatible(EventLoop loop) {
+		return loop == parent().eventLoop();
+	}
+
+	@Override
+	protected SocketAddress localAddress0() {
+		return parent().localAddress();
+	}
+
+	@Override
+	protected SocketAddress remoteAddress0() {
+		return parent().remoteAddress();
+	}
+
+	@Override
+	protected void doBind(SocketAddress localAddress) throws Exception {
+		throw new UnsupportedOperationException("bind");
+	}
+
+	@Override
+	protected void doDisconnect() throws Exception {
+		doClose();
+	}
+
+	@Override
+	protected void doClose() throws Exception {
+		if (open) {
+			open = false;
+			Object msg;
+			while ((msg = inbound.poll()) != null) {
+				//the stream is freed next, returning its unread bytes to the connection
+				ReferenceCountUtil.release(msg);
+			}
+			connection.onStreamClosed(this);
+		}
+	}
+
+	@Override
+	protected void doBeginRead() throws Exception {
+		readPending = true;
+		deliver();
+	}
+
+	/**
+	 * Enqueue a request message received on this stream, delivered on {@link #read()}.
+	 *
+	 * @param msg the request message
+	 */
+	final void inbound(Object msg) {
+		if (!open) {
+			ReferenceCountUtil.release(msg);
+			return;
+		}
+		inbound.add(msg);
+		if (readPending && isRegistered()) {
+			deliver();
+		}
+	}
+
+	/**
+	 * Deliver one enqueued request message per pending read, then consume the
+	 * delivered body bytes so that the client can send more.
+	 */
+	final void deliver() {
+		if (reading) {
+			//a read requested while delivering is served by the outer loop
+			return;
+		}
+		reading = true;
+		try {
+			boolean read = false;
+			while (readPending || config.isAutoRead()) {
+				Object msg = inbound.poll();
+				if (msg == null) {
+					break;
+				}
+				readPending = false;
+				read = true;
+				int bytes = msg instanceof HttpContent && !(msg instanceof HttpRequest) ?
+						((HttpContent) msg).content()
+						                   .readableBytes() : 0;
+				pipeline().fireChannelRead(msg);
+				connection.consumeBytes(this, bytes);
+			}
+			if (read) {
+				pipeline().fireChannelReadComplete();
+			}
+		}
+		finally {
+			reading = false;
+		}
+	}
+
+	/**
+	 * Encode the flushed messages not yet encoded, keeping them in the outbound buffer
+	 * until their frames are written so that their promises complete with the frames
+	 * write result.
+	 */
+	@Override
+	protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+		writing = true;
+		try {
+			for (; ; ) {
+				int encoded = encoding.size();
+				skipped = 0;
+				in.forEachFlushedMessage(encoder);
+				if (encoding.size() == encoded) {
+					return;
+				}
+				connection.flush();
+				//completing the written messages may flush new messages
+				removeWritten();
+				in = unsafe().outboundBuffer();
+				if (in == null) {
+					return;
+				}
+			}
+		}
+		finally {
+			writing = false;
+		}
+	}
+
+	/**
+	 * Encode a flushed message unless already encoded, the messages being iterated in
+	 * order from the first flushed one.
+	 */
+	final boolean encode(Object msg) {
+		if (skipped < encoding.size()) {
+			skipped++;
+			return true;
+		}
+		ChannelFuture f;
+		try {
+			f = connection.write(this, msg);
+		}
+		catch (Throwable t) {
+			f = newFailedFuture(t);
+		}
+		encoding.add(f);
+		f.addListener(onEncoded);
+		skipped++;
+		return true;
+	}
+
+	/**
+	 * Remove the messages whose frames have been written from the outbound buffer, in
+	 * order, completing their promise with the frames write result. A failed write
+	 * fails the stream.
+	 */
+	final void removeWritten() {
+		ChannelFuture f;
+		while ((f = encoding.peek()) != null && f.isDone()) {
+			encoding.poll();
+			ChannelOutboundBuffer in = unsafe().outboundBuffer();
+			if (in == null) {
+				//closed, the remaining messages have been failed already
+				encoding.clear();
+				return;
+			}
+			if (f.isSuccess()) {
+				in.remove();
+			}
+			else {
+				in.remove(f.cause());
+				encoding.clear();
+				connection.onStreamWriteFailed(this, f.cause());
+				return;
+			}
+		}
+	}
+
+	final class StreamUnsafe extends AbstractUnsafe {
+
+		@Override
+		public void connect(SocketAddress remoteAddress,
+				SocketAddress localAddress,
+				ChannelPromise promise) {
+			promise.setFailure(new UnsupportedOperationException("connect"));
+		}
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package reactor.ipc.netty.http.server;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.util.ReferenceCountUtil;
+import reactor.ipc.netty.channel.ChannelOperations;
+
+/**
+ * Bound the number of HTTP/1.1 requests dispatched on a connection while their
+ * responses are still pending. Requests decoded ahead beyond that depth, and their
+ * content, are held in arrival order and no further read is issued until a response
+ * completes and frees a slot. Responses are expected in request order, as mandated for
+ * pipelined requests. Once the connection is closed, held requests are released and
+ * the operations of the dispatched requests are terminated.
+ *
+ * @author agent
+ */
+final class HttpPipeliningHandler extends ChannelDuplexHandler {
+
+	final int           maxDepth;
+	final Queue<Object> pending;
+
+	ChannelHandlerContext ctx;
+	int                   inFlight;
+	boolean               readPending;
+	boolean               dispatching;
+
+	HttpPipeliningHandler(int maxDepth) {
+		if (maxDepth <= 0) {
+			throw new IllegalArgumentException("maxDepth must be strictly positive, was: " + maxDepth);
+		}
+		this.maxDepth = maxDepth;
+		this.pending = new ArrayDeque<>();
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		if (!pending.isEmpty()) {
+			pending.add(msg);
+			return;
+		}
+		if (msg instanceof HttpRequest) {
+			if (inFlight >= maxDepth) {
+				pending.add(msg);
+				return;
+			}
+			inFlight++;
+		}
+		ctx.fireChannelRead(msg);
+	}
+
+	@Override
+	public void read(ChannelHandlerContext ctx) throws Exception {
+		if (pending.isEmpty()) {
+			ctx.read();
+		}
+		else {
+			//stop decoding ahead until the held requests are dispatched
+			readPending = true;
+		}
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+		this.ctx = ctx;
+	}
+
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+		releasePending();
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		releasePending();
+		inFlight = 0;
+		ChannelOperations<?, ?> ops = ctx.channel()
+		                                 .attr(ChannelOperations.OPERATIONS_ATTRIBUTE_KEY)
+		                                 .get();
+		if (ops instanceof HttpServerOperations) {
+			//the current operations is terminated by the bridge, not the ones it
+			// superseded while their response was pending
+			((HttpServerOperations) ops).terminatePrevious();
+		}
+		ctx.fireChannelInactive();
+	}
+
+	final void releasePending() {
+		readPending = false;
+		Object msg;
+		while ((msg = pending.poll()) != null) {
+			ReferenceCountUtil.release(msg);
+		}
+	}
+
+	/**
+	 * Release the slot of the oldest dispatched request once its response has been
+	 * terminated, dispatching the next held request if any.
+	 */
+	final void onResponseComplete() {
+		if (ctx.executor()
+		       .inEventLoop()) {
+			responseComplete();
+		}
+		else {
+			ctx.executor()
+			   .execute(this::responseComplete);
+		}
+	}
+
+	final void responseComplete() {
+		if (inFlight > 0) {
+			inFlight--;
+		}
+		if (!pending.isEmpty() && !dispatching) {
+			dispatching = true;
+			//dispatch outside of the terminating operation call stack
+			ctx.executor()
+			   .execute(this::dispatch);
+		}
+	}
+
+	final void dispatch() {
+		dispatching = false;
+		if (ctx.isRemoved()) {
+			return;
+		}
+		boolean fired = false;
+		Object msg;
+		while ((msg = pending.peek()) != null) {
+			if (msg instanceof HttpRequest) {
+				if (inFlight >= maxDepth) {
+					break;
+				}
+				inFlight++;
+			}
+			pending.poll();
+			fired = true;
+			ctx.fireChannelRead(msg);
+		}
+		if (fired) {
+			ctx.fireChannelReadComplete();
+		}
+		if (pending.isEmpty() && readPending) {
+			readPending = false;
+			ctx.read();
+		}
+	}
+}
@@ -17,10 +17,13 @@
 package reactor.ipc.netty.http.server;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.regex.Matcher;
@@ -223,12 +226,8 @@ final class HttpPredicate
 		private static final String  NAME_REPLACEMENT = "(?<%NAME%>[^\\/.]*)";
 		//private static final String  NAME_REPLACEMENT = "([^\\/.]*)";
 
-		private final List<String>                         pathVariables =
-				new ArrayList<>();
-		private final HashMap<String, Matcher>             matchers      =
-				new HashMap<>();
-		private final HashMap<String, Map<String, String>> vars          =
-				new HashMap<>();
+		private final List<String> pathVariables = new ArrayList<>();
+		private final MatchCache   cache;
 
 		private final Pattern uriPattern;
 
@@ -238,6 +237,21 @@ final class HttpPredicate
 		 * @param uriPattern The pattern to be used by the template
 		 */
 		public UriPathTemplate(String uriPattern) {
+			this(uriPattern, DEFAULT_CACHE_CAPACITY);
+		}
+
+		/**
+		 * Creates a new {@code UriPathTemplate} from the given {@code uriPattern},
+		 * caching the match result of up to {@code cacheCapacity} distinct uris.
+		 *
+		 * @param uriPattern The pattern to be used by the template
+		 * @param cacheCapacity the maximum number of cached uri matches, 0 to disable
+		 */
+		UriPathTemplate(String uriPattern, int cacheCapacity) {
+			if (cacheCapacity < 0) {
+				throw new IllegalArgumentException("cacheCapacity must be positive, was: " + cacheCapacity);
+			}
+			this.cache = new MatchCache(cacheCapacity);
 			String s = "^" + uriPattern;
 
 			Matcher m = NAME_SPLAT_PATTERN.matcher(s);
@@ -278,7 +292,7 @@ final class HttpPredicate
 		 * @return {@code true} if there's a match, {@code false} otherwise
 		 */
 		public boolean matches(String uri) {
-			return matcher(uri).matches();
+			return resolve(uri) != NO_MATCH;
 		}
 
 		/**
@@ -291,38 +305,158 @@ final class HttpPredicate
 		 * @return the path parameters from the uri. Never {@code null}.
 		 */
 		final Map<String, String> match(String uri) {
-			Map<String, String> pathParameters = vars.get(uri);
-			if (null != pathParameters) {
+			return resolve(uri);
+		}
+
+		/**
+		 * @return the number of uris currently held in the match cache
+		 */
+		final int cacheSize() {
+			return cache.size();
+		}
+
+		/**
+		 * @return the ratio of lookups served by the match cache, between 0 and 1
+		 */
+		final double cacheHitRate() {
+			return cache.hitRate();
+		}
+
+		/**
+		 * @return the number of lookups served by the match cache
+		 */
+		final long cacheHits() {
+			return cache.hits.sum();
+		}
+
+		/**
+		 * @return the number of lookups not served by the match cache
+		 */
+		final long cacheMisses() {
+			return cache.misses.sum();
+		}
+
+		Map<String, String> resolve(String uri) {
+			Map<String, String> pathParameters = cache.get(uri);
+			if (pathParameters != null) {
 				return pathParameters;
 			}
 
-			pathParameters = new HashMap<>();
-			Matcher m = matcher(uri);
-			if (m.matches()) {
+			Matcher m = uriPattern.matcher(uri);
+			if (!m.matches()) {
+				pathParameters = NO_MATCH;
+			}
+			else if (pathVariables.isEmpty()) {
+				pathParameters = Collections.emptyMap();
+			}
+			else {
+				Map<String, String> params = new HashMap<>();
 				int i = 1;
 				for (String name : pathVariables) {
-					String val = m.group(i++);
-					pathParameters.put(name, val);
+					params.put(name, m.group(i++));
 				}
+				pathParameters = Collections.unmodifiableMap(params);
 			}
-			synchronized (vars) {
-				vars.put(uri, pathParameters);
+			cache.put(uri, pathParameters);
+			return pathParameters;
+		}
+
+		/**
+		 * Shared empty result for non matching uris, distinct from
+		 * {@link Collections#emptyMap()} used for matching uris without variables.
+		 */
+		static final Map<String, String> NO_MATCH =
+				Collections.unmodifiableMap(new HashMap<>());
+
+		static final int DEFAULT_CACHE_CAPACITY =
+				Integer.parseInt(System.getProperty("reactor.ipc.netty.http.uriTemplateCacheSize",
+						"256"));
+	}
+
+	/**
+	 * A bounded least-recently-used cache of uri match results, striped across
+	 * synchronized access-ordered maps so that event loops looking up different uris
+	 * rarely contend. Eviction is per stripe, so the least recently used entry of the
+	 * stripe receiving a new uri is dropped.
+	 */
+	static final class MatchCache {
+
+		final Stripe[]  stripes;
+		final LongAdder hits   = new LongAdder();
+		final LongAdder misses = new LongAdder();
+
+		MatchCache(int capacity) {
+			int count = capacity < STRIPES ? 1 : STRIPES;
+			this.stripes = new Stripe[count];
+			int stripeCapacity = Math.max(1, capacity / count);
+			for (int i = 0; i < count; i++) {
+				stripes[i] = new Stripe(capacity == 0 ? 0 : stripeCapacity);
 			}
+		}
 
-			return pathParameters;
+		Map<String, String> get(String uri) {
+			Stripe stripe = stripe(uri);
+			Map<String, String> value;
+			synchronized (stripe) {
+				value = stripe.get(uri);
+			}
+			if (value != null) {
+				hits.increment();
+			}
+			else {
+				misses.increment();
+			}
+			return value;
+		}
+
+		void put(String uri, Map<String, String> value) {
+			Stripe stripe = stripe(uri);
+			if (stripe.capacity == 0) {
+				return;
+			}
+			synchronized (stripe) {
+				stripe.put(uri, value);
+			}
 		}
 
-		private Matcher matcher(String uri) {
-			Matcher m = matchers.get(uri);
-			if (null == m) {
-				m = uriPattern.matcher(uri);
-				synchronized (matchers) {
-					matchers.put(uri, m);
+		int size() {
+			int size = 0;
+			for (Stripe stripe : stripes) {
+				synchronized (stripe) {
+					size += stripe.size();
 				}
 			}
-			return m;
+			return size;
+		}
+
+		double hitRate() {
+			long hits = this.hits.sum();
+			long total = hits + misses.sum();
+			return total == 0 ? 0d : (double) hits / total;
+		}
+
+		Stripe stripe(String uri) {
+			int h = uri.hashCode();
+			return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
 		}
 
+		static final int STRIPES = 16;
+
+		@SuppressWarnings("serial")
+		static final class Stripe extends LinkedHashMap<String, Map<String, String>> {
+
+			final int capacity;
+
+			Stripe(int capacity) {
+				super(16, 0.75f, true);
+				this.capacity = capacity;
+			}
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Map<String, String>> eldest) {
+				return size() > capacity;
+			}
+		}
 	}
 
 	static final class HttpPrefixPredicate implements Predicate<HttpServerRequest> {
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package reactor.ipc.netty.http.server;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * Hold a response without {@code Content-Length} and its body until either the last
+ * frame is written, in which case a single {@link FullHttpResponse} with a computed
+ * {@code Content-Length} is written instead, or the body grows beyond the configured
+ * threshold, in which case the held messages are released as they were written.
+ * Responses to {@code HEAD} requests and {@code 1xx}, {@code 204} or {@code 304}
+ * responses never have a body and are passed through untouched.
+ *
+ * @author agent
+ */
+final class HttpResponseBufferHandler extends ChannelDuplexHandler {
+
+	final int            maxContentLength;
+	final Queue<Boolean> headRequests;
+
+	HttpResponse   response;
+	ChannelPromise responsePromise;
+	List<Object>   contents;
+	int            contentLength;
+	boolean        passThrough;
+
+	HttpResponseBufferHandler(int maxContentLength) {
+		if (maxContentLength <= 0) {
+			throw new IllegalArgumentException("maxContentLength must be strictly positive, was: " + maxContentLength);
+		}
+		this.maxContentLength = maxContentLength;
+		this.headRequests = new ArrayDeque<>();
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		if (msg instanceof HttpRequest) {
+			//responses are written in request order, pipelined or not
+			headRequests.add(HttpMethod.HEAD.equals(((HttpRequest) msg).method()));
+		}
+		ctx.fireChannelRead(msg);
+	}
+
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+			throws Exception {
+		if (passThrough) {
+			if (msg instanceof LastHttpContent) {
+				passThrough = false;
+			}
+			ctx.write(msg, promise);
+			return;
+		}
+
+		if (response == null) {
+			if (msg instanceof HttpResponse && !isBodyless((HttpResponse) msg) && !(msg instanceof FullHttpResponse) && !HttpUtil.isContentLengthSet(
+					(HttpResponse) msg)) {
+				response = (HttpResponse) msg;
+				responsePromise = promise;
+				contents = new ArrayList<>();
+				contentLength = 0;
+				return;
+			}
+			ctx.write(msg, promise);
+			return;
+		}
+
+		ByteBuf content = msg instanceof ByteBuf ? (ByteBuf) msg :
+				msg instanceof HttpContent ? ((HttpContent) msg).content() : null;
+
+		if (content == null || contentLength + content.readableBytes() > maxContentLength) {
+			release(ctx, !(msg instanceof LastHttpContent));
+			ctx.write(msg, promise);
+			return;
+		}
+
+		contentLength += content.readableBytes();
+
+		if (msg instanceof LastHttpContent && ((LastHttpContent) msg).trailingHeaders()
+		                                                             .isEmpty()) {
+			contents.add(content);
+			writeFullResponse(ctx, promise);
+			return;
+		}
+		if (msg instanceof LastHttpContent) {
+			release(ctx, false);
+			ctx.write(msg, promise);
+			return;
+		}
+
+		//the sender waits for its writes before the last frame is written: complete
+		//them once held, a failed response write failing the response promise
+		contents.add(msg);
+		promise.trySuccess();
+	}
+
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+		if (response != null) {
+			responsePromise.tryFailure(new IllegalStateException(
+					"Response discarded before its last frame was written"));
+			for (Object content : contents) {
+				ReferenceCountUtil.release(content);
+			}
+			reset();
+		}
+	}
+
+	/**
+	 * Return true if the given response never has a body, consuming the request
+	 * method of final responses.
+	 */
+	final boolean isBodyless(HttpResponse response) {
+		int code = response.status()
+		                   .code();
+		if (code < 200) {
+			return true;
+		}
+		boolean head = Boolean.TRUE.equals(headRequests.poll());
+		return head || code == 204 || code == 304;
+	}
+
+	void writeFullResponse(ChannelHandlerContext ctx, ChannelPromise lastPromise) {
+		HttpResponse response = this.response;
+		CompositeByteBuf body = ctx.alloc()
+		                           .compositeBuffer(Math.max(2, contents.size()));
+		for (Object content : contents) {
+			ByteBuf buf = content instanceof ByteBuf ? (ByteBuf) content :
+					((HttpContent) content).content();
+			body.addComponent(buf);
+			body.writerIndex(body.writerIndex() + buf.readableBytes());
+		}
+
+		response.headers()
+		        .remove(HttpHeaderNames.TRANSFER_ENCODING);
+		HttpUtil.setContentLength(response, contentLength);
+
+		FullHttpResponse full = new DefaultFullHttpResponse(response.protocolVersion(),
+				response.status(),
+				body,
+				response.headers(),
+				EmptyHttpHeaders.INSTANCE);
+
+		ChannelPromise responsePromise = this.responsePromise;
+		reset();
+
+		ctx.write(full)
+		   .addListener((ChannelFutureListener) f -> {
+			   if (f.isSuccess()) {
+				   responsePromise.trySuccess();
+				   lastPromise.trySuccess();
+			   }
+			   else {
+				   responsePromise.tryFailure(f.cause());
+				   lastPromise.tryFailure(f.cause());
+			   }
+		   });
+	}
+
+	void release(ChannelHandlerContext ctx, boolean passThrough) {
+		ctx.write(response, responsePromise);
+		for (Object content : contents) {
+			ctx.write(content);
+		}
+		reset();
+		this.passThrough = passThrough;
+	}
+
+	void reset() {
+		response = null;
+		responsePromise = null;
+		contents = null;
+		contentLength = 0;
+	}
+}
@@ -0,0 +1,505 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package reactor.ipc.netty.http.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.FileRegion;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.AsciiString;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.FastThreadLocal;
+
+/**
+ * Compress responses with {@code gzip} or {@code deflate} as negotiated by the
+ * {@code Accept-Encoding} header of their request, provided their {@code Content-Type}
+ * is allowed and their body is not known to be smaller than the configured minimum.
+ * Full responses are compressed at once with a computed {@code Content-Length},
+ * others are switched to chunked transfer and each written chunk is compressed and
+ * flushed as it goes. {@link Deflater} instances are recycled per event loop.
+ *
+ * @author agent
+ */
+final class HttpResponseCompressor extends ChannelDuplexHandler {
+
+	static final int COMPRESSION_LEVEL = 6;
+
+	/**
+	 * Maximum number of idle {@link Deflater} kept per event loop and format
+	 */
+	static final int MAX_POOLED_DEFLATERS = 32;
+
+	static final AsciiString GZIP     = HttpHeaderValues.GZIP;
+	static final AsciiString DEFLATE  = HttpHeaderValues.DEFLATE;
+	static final AsciiString IDENTITY = HttpHeaderValues.IDENTITY;
+
+	static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+	final int                minResponseSize;
+	final String[]           compressibleTypes;
+	final Queue<AsciiString> encodings;
+
+	Deflater deflater;
+	CRC32    crc;
+	long     remaining;
+	boolean  gzipHeaderWritten;
+	boolean  ended;
+
+	HttpResponseCompressor(int minResponseSize, String[] compressibleTypes) {
+		if (minResponseSize < 0) {
+			throw new IllegalArgumentException("minResponseSize must be positive, was: " + minResponseSize);
+		}
+		this.minResponseSize = Math.max(minResponseSize, 1);
+		this.compressibleTypes = compressibleTypes;
+		this.encodings = new ArrayDeque<>();
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		if (msg instanceof HttpRequest) {
+			HttpRequest request = (HttpRequest) msg;
+			encodings.add(HttpMethod.HEAD.equals(request.method()) ? IDENTITY :
+					selectEncoding(request.headers()
+					                      .get(HttpHeaderNames.ACCEPT_ENCODING)));
+		}
+		ctx.fireChannelRead(msg);
+	}
+
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+			throws Exception {
+		if (msg instanceof HttpResponse) {
+			HttpResponse response = (HttpResponse) msg;
+			if (response.status()
+			            .code() == 100) {
+				ctx.write(msg, promise);
+				return;
+			}
+			ended = false;
+			AsciiString encoding = encodings.poll();
+			if (encoding == null || encoding == IDENTITY || !isCompressible(response)) {
+				ctx.write(msg, promise);
+				return;
+			}
+			if (msg instanceof FullHttpResponse) {
+				writeFull(ctx, (FullHttpResponse) msg, encoding, promise);
+				return;
+			}
+			long length = HttpUtil.getContentLength(response, -1L);
+			if (length >= 0L && length < minResponseSize) {
+				ctx.write(msg, promise);
+				return;
+			}
+			start(encoding);
+			remaining = length;
+			response.headers()
+			        .remove(HttpHeaderNames.CONTENT_LENGTH)
+			        .set(HttpHeaderNames.CONTENT_ENCODING, encoding)
+			        .add(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING);
+			HttpUtil.setTransferEncodingChunked(response, true);
+			ctx.write(msg, promise);
+			return;
+		}
+
+		if (deflater != null) {
+			if (msg instanceof HttpContent || msg instanceof ByteBuf) {
+				writeContent(ctx, msg, promise);
+				return;
+			}
+			if (msg instanceof FileRegion) {
+				writeFileRegion(ctx, (FileRegion) msg, promise);
+				return;
+			}
+		}
+		else if (ended && msg instanceof LastHttpContent && !((LastHttpContent) msg).content()
+		                                                                            .isReadable()) {
+			//the compressed body already ended with its declared length
+			ended = false;
+			ReferenceCountUtil.release(msg);
+			promise.trySuccess();
+			return;
+		}
+		ctx.write(msg, promise);
+	}
+
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+		end();
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		end();
+		ctx.fireChannelInactive();
+	}
+
+	final boolean isCompressible(HttpResponse response) {
+		int code = response.status()
+		                   .code();
+		if (code < 200 || code == 204 || code == 304) {
+			return false;
+		}
+		HttpHeaders headers = response.headers();
+		String contentEncoding = headers.get(HttpHeaderNames.CONTENT_ENCODING);
+		if (contentEncoding != null && !IDENTITY.contentEqualsIgnoreCase(contentEncoding.trim())) {
+			return false;
+		}
+		String contentType = headers.get(HttpHeaderNames.CONTENT_TYPE);
+		if (contentType == null) {
+			return false;
+		}
+		int index = contentType.indexOf(';');
+		String mimeType = (index < 0 ? contentType : contentType.substring(0, index)).trim();
+		for (String type : compressibleTypes) {
+			if (type.endsWith("/*") ?
+					mimeType.regionMatches(true, 0, type, 0, type.length() - 1) :
+					mimeType.equalsIgnoreCase(type)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	final void writeFull(ChannelHandlerContext ctx,
+			FullHttpResponse response,
+			AsciiString encoding,
+			ChannelPromise promise) {
+		ByteBuf content = response.content();
+		if (content.readableBytes() < minResponseSize) {
+			ctx.write(response, promise);
+			return;
+		}
+		start(encoding);
+		ByteBuf out = ctx.alloc()
+		                 .heapBuffer(content.readableBytes() / 2 + 64);
+		try {
+			compress(content, out, true);
+		}
+		catch (Throwable t) {
+			out.release();
+			response.release();
+			promise.tryFailure(t);
+			return;
+		}
+		finally {
+			end();
+		}
+		FullHttpResponse compressed = response.replace(out);
+		response.release();
+		compressed.headers()
+		          .remove(HttpHeaderNames.TRANSFER_ENCODING)
+		          .setInt(HttpHeaderNames.CONTENT_LENGTH, out.readableBytes())
+		          .set(HttpHeaderNames.CONTENT_ENCODING, encoding)
+		          .add(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING);
+		ctx.write(compressed, promise);
+	}
+
+	final void writeContent(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+		ByteBuf in = msg instanceof ByteBuf ? (ByteBuf) msg : ((HttpContent) msg).content();
+		boolean last = msg instanceof LastHttpContent || consumed(in.readableBytes());
+		ByteBuf out = ctx.alloc()
+		                 .heapBuffer(in.readableBytes() / 2 + 64);
+		try {
+			compress(in, out, last);
+		}
+		catch (Throwable t) {
+			out.release();
+			ReferenceCountUtil.release(msg);
+			end();
+			promise.tryFailure(t);
+			return;
+		}
+		Object chunk;
+		if (last) {
+			LastHttpContent lastContent = new DefaultLastHttpContent(out);
+			if (msg instanceof LastHttpContent) {
+				lastContent.trailingHeaders()
+				           .set(((LastHttpContent) msg).trailingHeaders());
+			}
+			else {
+				ended = true;
+			}
+			chunk = lastContent;
+			end();
+		}
+		else {
+			chunk = new DefaultHttpContent(out);
+		}
+		ReferenceCountUtil.release(msg);
+		ctx.write(chunk, promise);
+	}
+
+	/**
+	 * Read a {@link FileRegion} through the compressor, giving up zero-copy transfer
+	 * for this response.
+	 */
+	final void writeFileRegion(ChannelHandlerContext ctx,
+			FileRegion region,
+			ChannelPromise promise) {
+		boolean last = consumed(region.count());
+		ByteBuf out = ctx.alloc()
+		                 .heapBuffer((int) Math.min(region.count() / 2 + 64, 65536));
+		try {
+			WritableByteChannel target = new WritableByteChannel() {
+				@Override
+				public int write(ByteBuffer src) throws IOException {
+					int length = src.remaining();
+					byte[] bytes = new byte[length];
+					src.get(bytes);
+					compress(bytes, 0, length, out);
+					return length;
+				}
+
+				@Override
+				public boolean isOpen() {
+					return true;
+				}
+
+				@Override
+				public void close() throws IOException {
+				}
+			};
+			long position = 0L;
+			while (position < region.count()) {
+				long written = region.transferTo(target, position);
+				if (written <= 0L) {
+					break;
+				}
+				position += written;
+			}
+			if (last) {
+				finish(out);
+			}
+		}
+		catch (Throwable t) {
+			out.release();
+			region.release();
+			end();
+			promise.tryFailure(t);
+			return;
+		}
+		region.release();
+		if (last) {
+			ended = true;
+			end();
+			ctx.write(new DefaultLastHttpContent(out), promise);
+		}
+		else {
+			ctx.write(new DefaultHttpContent(out), promise);
+		}
+	}
+
+	final boolean consumed(long length) {
+		if (remaining < 0L) {
+			return false;
+		}
+		remaining -= length;
+		return remaining <= 0L;
+	}
+
+	final void start(AsciiString encoding) {
+		end();
+		boolean gzip = encoding == GZIP;
+		deflater = acquire(gzip);
+		crc = gzip ? new CRC32() : null;
+		gzipHeaderWritten = false;
+	}
+
+	final void end() {
+		Deflater deflater = this.deflater;
+		if (deflater != null) {
+			this.deflater = null;
+			recycle(deflater, crc != null);
+			crc = null;
+		}
+	}
+
+	final void compress(ByteBuf in, ByteBuf out, boolean last) {
+		int length = in.readableBytes();
+		if (length > 0) {
+			if (in.hasArray()) {
+				compress(in.array(), in.arrayOffset() + in.readerIndex(), length, out);
+			}
+			else {
+				byte[] bytes = new byte[length];
+				in.getBytes(in.readerIndex(), bytes);
+				compress(bytes, 0, length, out);
+			}
+		}
+		if (last) {
+			finish(out);
+		}
+	}
+
+	final void compress(byte[] bytes, int offset, int length, ByteBuf out) {
+		writeGzipHeader(out);
+		if (crc != null) {
+			crc.update(bytes, offset, length);
+		}
+		deflater.setInput(bytes, offset, length);
+		for (; ; ) {
+			out.ensureWritable(Math.max(length / 2, 256));
+			int writable = out.writableBytes();
+			int written = deflater.deflate(out.array(),
+					out.arrayOffset() + out.writerIndex(),
+					writable,
+					Deflater.SYNC_FLUSH);
+			out.writerIndex(out.writerIndex() + written);
+			if (written < writable) {
+				return;
+			}
+		}
+	}
+
+	final void finish(ByteBuf out) {
+		writeGzipHeader(out);
+		deflater.finish();
+		while (!deflater.finished()) {
+			out.ensureWritable(256);
+			int written = deflater.deflate(out.array(),
+					out.arrayOffset() + out.writerIndex(),
+					out.writableBytes());
+			out.writerIndex(out.writerIndex() + written);
+		}
+		if (crc != null) {
+			out.writeIntLE((int) crc.getValue());
+			out.writeIntLE(deflater.getTotalIn());
+		}
+	}
+
+	final void writeGzipHeader(ByteBuf out) {
+		if (crc != null && !gzipHeaderWritten) {
+			gzipHeaderWritten = true;
+			out.writeBytes(GZIP_HEADER);
+		}
+	}
+
+	/**
+	 * Select the preferred supported content coding of an {@code Accept-Encoding}
+	 * header, favoring {@code gzip} over {@code deflate} at equal quality.
+	 *
+	 * @param acceptEncoding the {@code Accept-Encoding} header value or null
+	 *
+	 * @return {@link #GZIP}, {@link #DEFLATE} or {@link #IDENTITY}
+	 */
+	static AsciiString selectEncoding(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return IDENTITY;
+		}
+		float gzip = -1f;
+		float deflate = -1f;
+		float any = -1f;
+		for (String token : acceptEncoding.split(",")) {
+			float q = 1f;
+			String coding = token;
+			int index = token.indexOf(';');
+			if (index >= 0) {
+				coding = token.substring(0, index);
+				String parameter = token.substring(index + 1)
+				                        .trim();
+				if (parameter.startsWith("q=")) {
+					try {
+						q = Float.parseFloat(parameter.substring(2));
+					}
+					catch (NumberFormatException e) {
+						q = 0f;
+					}
+				}
+			}
+			coding = coding.trim();
+			if (GZIP.contentEqualsIgnoreCase(coding) || HttpHeaderValues.X_GZIP.contentEqualsIgnoreCase(
+					coding)) {
+				gzip = q;
+			}
+			else if (DEFLATE.contentEqualsIgnoreCase(coding) || HttpHeaderValues.X_DEFLATE.contentEqualsIgnoreCase(
+					coding)) {
+				deflate = q;
+			}
+			else if ("*".equals(coding)) {
+				any = q;
+			}
+		}
+		if (gzip < 0f) {
+			gzip = any;
+		}
+		if (deflate < 0f) {
+			deflate = any;
+		}
+		if (gzip > 0f && gzip >= deflate) {
+			return GZIP;
+		}
+		if (deflate > 0f) {
+			return DEFLATE;
+		}
+		return IDENTITY;
+	}
+
+	static Deflater acquire(boolean gzip) {
+		Deflater deflater = (gzip ? GZIP_DEFLATERS : ZLIB_DEFLATERS).get()
+		                                                           .poll();
+		return deflater != null ? deflater : new Deflater(COMPRESSION_LEVEL, gzip);
+	}
+
+	static void recycle(Deflater deflater, boolean gzip) {
+		ArrayDeque<Deflater> pool = (gzip ? GZIP_DEFLATERS : ZLIB_DEFLATERS).get();
+		if (pool.size() < MAX_POOLED_DEFLATERS) {
+			deflater.reset();
+			pool.push(deflater);
+		}
+		else {
+			deflater.end();
+		}
+	}
+
+	static final FastThreadLocal<ArrayDeque<Deflater>> GZIP_DEFLATERS =
+			new FastThreadLocal<ArrayDeque<Deflater>>() {
+				@Override
+				protected ArrayDeque<Deflater> initialValue() throws Exception {
+					return new ArrayDeque<>();
+				}
+			};
+
+	static final FastThreadLocal<ArrayDeque<Deflater>> ZLIB_DEFLATERS =
+			new FastThreadLocal<ArrayDeque<Deflater>>() {
+				@Override
+				protected ArrayDeque<Deflater> initialValue() throws Exception {
+					return new ArrayDeque<>();
+				}
+			};
+}
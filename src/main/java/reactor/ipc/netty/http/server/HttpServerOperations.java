@@ -23,13 +23,16 @@ import java.util.Date;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.DateFormatter;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.DefaultHttpResponse;
 import io.netty.handler.codec.http.EmptyHttpHeaders;
@@ -45,14 +48,14 @@ import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
-import io.netty.handler.codec.http.HttpServerCodec;
-import io.netty.handler.codec.http.HttpServerKeepAliveHandler;
 import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.HttpVersion;
 import io.netty.handler.codec.http.LastHttpContent;
 import io.netty.handler.codec.http.cookie.Cookie;
 import io.netty.handler.codec.http.cookie.ServerCookieEncoder;
 import io.netty.util.AsciiString;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.FastThreadLocal;
 import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -80,32 +83,51 @@ class HttpServerOperations extends HttpOperations<HttpServerRequest, HttpServerR
 	static HttpServerOperations bindHttp(Channel channel,
 			BiFunction<? super HttpServerRequest, ? super HttpServerResponse, ? extends Publisher<Void>> handler,
 			ContextHandler<?> context) {
-		return new HttpServerOperations(channel, handler, context);
+		return bindHttp(channel, handler, context, DEFAULT_OPTIONS);
 	}
 
-	final HttpResponse nettyResponse;
-	final HttpHeaders  responseHeaders;
+	static HttpServerOperations bindHttp(Channel channel,
+			BiFunction<? super HttpServerRequest, ? super HttpServerResponse, ? extends Publisher<Void>> handler,
+			ContextHandler<?> context,
+			HttpServerOptions options) {
+		return new HttpServerOperations(channel, handler, context, options);
+	}
+
+	final HttpResponse      nettyResponse;
+	final HttpHeaders       responseHeaders;
+	final HttpServerOptions options;
 
 	Cookies                                       cookieHolder;
 	HttpRequest                                   nettyRequest;
 	Function<? super String, Map<String, String>> paramsResolver;
+	Map<String, String>                           params;
+	boolean                                       paramsResolved;
+	HttpServerOperations                          previous;
+	boolean                                       pipelined;
+
+	volatile int responseDone;
 
 	HttpServerOperations(Channel ch, HttpServerOperations replaced) {
 		super(ch, replaced);
 		this.cookieHolder = replaced.cookieHolder;
 		this.responseHeaders = replaced.responseHeaders;
 		this.nettyResponse = replaced.nettyResponse;
+		this.options = replaced.options;
 		this.paramsResolver = replaced.paramsResolver;
+		this.params = replaced.params;
+		this.paramsResolved = replaced.paramsResolved;
 	}
 
 	HttpServerOperations(Channel ch,
 			BiFunction<? super HttpServerRequest, ? super HttpServerResponse, ? extends Publisher<Void>> handler,
-			ContextHandler<?> context) {
+			ContextHandler<?> context,
+			HttpServerOptions options) {
 		super(ch, handler, context);
+		this.options = options;
 		this.nettyResponse =
 				new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
 		this.responseHeaders = nettyResponse.headers();
-		responseHeaders.add(HttpHeaderNames.DATE, new Date());
+		responseHeaders.add(HttpHeaderNames.DATE, DATE_HEADER.get().value());
 	}
 
 	@Override
@@ -212,21 +234,24 @@ class HttpServerOperations extends HttpOperations<HttpServerRequest, HttpServerR
 	@Override
 	public String param(CharSequence key) {
 		Objects.requireNonNull(key, "key");
-		Map<String, String> params = null;
-		if (paramsResolver != null) {
-			params = this.paramsResolver.apply(uri());
-		}
+		Map<String, String> params = params();
 		return null != params ? params.get(key) : null;
 	}
 
 	@Override
 	public Map<String, String> params() {
-		return null != paramsResolver ? paramsResolver.apply(uri()) : null;
+		if (!paramsResolved) {
+			params = null != paramsResolver ? paramsResolver.apply(uri()) : null;
+			paramsResolved = true;
+		}
+		return params;
 	}
 
 	@Override
 	public HttpServerRequest paramsResolver(Function<? super String, Map<String, String>> headerResolver) {
 		this.paramsResolver = headerResolver;
+		this.params = null;
+		this.paramsResolved = false;
 		return this;
 	}
 
@@ -237,8 +262,8 @@ class HttpServerOperations extends HttpOperations<HttpServerRequest, HttpServerR
 		//   and discard the traffic or close the connection.
 		//       No need to notify the upstream handlers - just log.
 		//       If decoding a response, just throw an error.
-		if (HttpUtil.is100ContinueExpected(nettyRequest)) {
-			return FutureMono.deferFuture(() -> channel().writeAndFlush(CONTINUE))
+		if (HttpUtil.is100ContinueExpected(nettyRequest) && !isHttp2()) {
+			return ordered(FutureMono.deferFuture(() -> channel().writeAndFlush(CONTINUE)))
 			                 .thenMany(super.receiveObject());
 		}
 		else {
@@ -355,15 +380,25 @@ class HttpServerOperations extends HttpOperations<HttpServerRequest, HttpServerR
 	}
 
 	@Override
-	protected void onChannelActive(ChannelHandlerContext ctx) {
+	public boolean isDisposed() {
+		if (pipelined && channel().isOpen()) {
+			//a subsequent pipelined request took over the channel, but this response
+			// is active until terminated
+			return responseDone == 1;
+		}
+		return super.isDisposed();
+	}
 
-		addHandler(NettyPipeline.HttpCodecHandler, new HttpServerCodec());
-		if (ctx.pipeline()
-		       .context(NettyPipeline.HttpKeepAlive) == null) {
-			ctx.pipeline()
-			   .addBefore(NettyPipeline.ReactiveBridge,
-					   NettyPipeline.HttpKeepAlive,
-					   new HttpServerKeepAliveHandler());
+	@Override
+	protected void onChannelActive(ChannelHandlerContext ctx) {
+		if (isHttp2()) {
+			HttpServerPipeline.configureStream(ctx.pipeline(), options);
+		}
+		//connection scoped handlers, kept across keep-alive and pipelined requests
+		// so that requests decoded ahead are not lost
+		else if (ctx.pipeline()
+		            .context(NettyPipeline.HttpCodecHandler) == null) {
+			HttpServerPipeline.configure(ctx.pipeline(), options, parentContext());
 		}
 		ctx.read();
 	}
@@ -371,6 +406,10 @@ class HttpServerOperations extends HttpOperations<HttpServerRequest, HttpServerR
 	@Override
 	protected void onInboundNext(ChannelHandlerContext ctx, Object msg) {
 		if (msg instanceof HttpRequest) {
+			if (nettyRequest != null) {
+				onPipelinedRequest(ctx, (HttpRequest) msg);
+				return;
+			}
 			nettyRequest = (HttpRequest) msg;
 			cookieHolder = Cookies.newServerRequestHolder(requestHeaders());
 
@@ -443,6 +482,21 @@ class HttpServerOperations extends HttpOperations<HttpServerRequest, HttpServerR
 		if (discreteRemoteClose(err)) {
 			return;
 		}
+		afterPrevious(() -> replyError(err));
+	}
+
+	@Override
+	protected Mono<Void> ordered(Mono<Void> write) {
+		HttpServerOperations previous = this.previous;
+		if (previous == null) {
+			return write;
+		}
+		return previous.onClose()
+		               .then(() -> write);
+	}
+
+	final void replyError(Throwable err) {
+		markResponseDone();
 		if (markHeadersAsSent()) {
 			log.error("Error starting response. Replying error status", err);
 
@@ -470,7 +524,21 @@ class HttpServerOperations extends HttpOperations<HttpServerRequest, HttpServerR
 		return nettyResponse;
 	}
 
+	@Override
+	protected HttpMessage newFullMessage(ByteBuf body) {
+		return new DefaultFullHttpResponse(nettyResponse.protocolVersion(),
+				nettyResponse.status(),
+				body,
+				responseHeaders,
+				EmptyHttpHeaders.INSTANCE);
+	}
+
 	final void release() {
+		afterPrevious(this::releaseResponse);
+	}
+
+	final void releaseResponse() {
+		markResponseDone();
 		ChannelFuture f = null;
 		if (!isWebsocket()) {
 			if (log.isDebugEnabled()) {
@@ -508,6 +576,84 @@ class HttpServerOperations extends HttpOperations<HttpServerRequest, HttpServerR
 		}
 	}
 
+	/**
+	 * Return true if this request has been received on an http/2 stream
+	 *
+	 * @return true if this request has been received on an http/2 stream
+	 */
+	final boolean isHttp2() {
+		return channel() instanceof Http2ServerStreamChannel;
+	}
+
+	/**
+	 * Run the given task once the response to the previous pipelined request, if any,
+	 * has been terminated.
+	 *
+	 * @param task the task writing the end of this response
+	 */
+	final void afterPrevious(Runnable task) {
+		HttpServerOperations previous = this.previous;
+		if (previous == null) {
+			task.run();
+		}
+		else {
+			previous.onClose(task);
+		}
+	}
+
+	/**
+	 * Terminate the operations superseded by this one while their response was still
+	 * pending, once the connection is closed.
+	 */
+	final void terminatePrevious() {
+		HttpServerOperations previous = this.previous;
+		while (previous != null) {
+			previous.onChannelInactive();
+			previous = previous.previous;
+		}
+	}
+
+	/**
+	 * Release the pipelining slot of this response, once.
+	 */
+	final void markResponseDone() {
+		if (RESPONSE_DONE.compareAndSet(this, 0, 1)) {
+			ChannelHandler pipelining = channel().pipeline()
+			                                     .get(NettyPipeline.HttpPipelining);
+			if (pipelining != null) {
+				((HttpPipeliningHandler) pipelining).onResponseComplete();
+			}
+		}
+	}
+
+	/**
+	 * Hand over a request decoded while this response is still pending to a new
+	 * operations that becomes current, leaving this response to complete first.
+	 *
+	 * @param ctx the bridge context
+	 * @param request the pipelined request
+	 */
+	final void onPipelinedRequest(ChannelHandlerContext ctx, HttpRequest request) {
+		HttpServerOperations next =
+				(HttpServerOperations) parentContext().createOperations(channel());
+		next.previous = this;
+		pipelined = true;
+		if (replace(next)) {
+			if (log.isDebugEnabled()) {
+				log.debug("Pipelined request {} after {}", request.uri(), this);
+			}
+			next.onInboundNext(ctx, request);
+		}
+		else {
+			pipelined = false;
+			ReferenceCountUtil.release(request);
+			log.error("Dropping pipelined request {}, {} is not the current operations",
+					request.uri(),
+					this);
+			channel().close();
+		}
+	}
+
 	final Mono<Void> withWebsocketSupport(String url,
 			String protocols,
 			BiFunction<? super WebsocketInbound, ? super WebsocketOutbound, ? extends Publisher<Void>> websocketHandler) {
@@ -518,8 +664,7 @@ class HttpServerOperations extends HttpOperations<HttpServerRequest, HttpServerR
 		if (markHeadersAsSent()) {
 			HttpServerWSOperations ops = new HttpServerWSOperations(url, protocols, this);
 
-			if (channel().attr(OPERATIONS_ATTRIBUTE_KEY)
-			             .compareAndSet(this, ops)) {
+			if (replace(ops)) {
 				return FutureMono.from(ops.handshakerResult)
 				                 .then(() -> Mono.from(websocketHandler.apply(ops, ops)))
 				                 .doAfterTerminate(ops);
@@ -533,9 +678,43 @@ class HttpServerOperations extends HttpOperations<HttpServerRequest, HttpServerR
 
 	static final Logger log = Loggers.getLogger(HttpServerOperations.class);
 
+	static final HttpServerOptions DEFAULT_OPTIONS = HttpServerOptions.create();
+
+	static final AtomicIntegerFieldUpdater<HttpServerOperations> RESPONSE_DONE =
+			AtomicIntegerFieldUpdater.newUpdater(HttpServerOperations.class,
+					"responseDone");
+
 	final static AsciiString      EVENT_STREAM = new AsciiString("text/event-stream");
 	final static FullHttpResponse CONTINUE     =
 			new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
 					HttpResponseStatus.CONTINUE,
 					EMPTY_BUFFER);
+
+	static final FastThreadLocal<DateHeader> DATE_HEADER =
+			new FastThreadLocal<DateHeader>() {
+				@Override
+				protected DateHeader initialValue() {
+					return new DateHeader();
+				}
+			};
+
+	/**
+	 * The RFC 1123 {@code Date} header value of the current second, owned by a single
+	 * (event loop) thread and re-encoded at most once per second.
+	 */
+	static final class DateHeader {
+
+		long        second = -1L;
+		AsciiString value;
+
+		AsciiString value() {
+			long now = System.currentTimeMillis();
+			long second = now / 1000L;
+			if (second != this.second) {
+				this.second = second;
+				this.value = new AsciiString(DateFormatter.format(new Date(now)));
+			}
+			return value;
+		}
+	}
 }
@@ -18,6 +18,7 @@ package reactor.ipc.netty.http.server;
 
 import java.net.InetSocketAddress;
 import java.time.Duration;
+import java.util.Objects;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
@@ -46,11 +47,181 @@ public final class HttpServerOptions extends ServerOptions {
 		return new HttpServerOptions();
 	}
 
+	/**
+	 * Default compressible response content types
+	 */
+	static final String[] DEFAULT_COMPRESSIBLE_TYPES =
+			{"text/*", "application/json", "application/javascript",
+					"application/xml", "image/svg+xml"};
+
+	int      responseBufferThreshold    = 0;
+	int      pipeliningDepth            = 1;
+	int      http2MaxConcurrentStreams  = 0;
+	int      compressionMinResponseSize = -1;
+	String[] compressibleTypes          = DEFAULT_COMPRESSIBLE_TYPES;
+
 	HttpServerOptions(){
 	}
 
 	HttpServerOptions(HttpServerOptions options){
 		super(options);
+		this.responseBufferThreshold = options.responseBufferThreshold;
+		this.pipeliningDepth = options.pipeliningDepth;
+		this.http2MaxConcurrentStreams = options.http2MaxConcurrentStreams;
+		this.compressionMinResponseSize = options.compressionMinResponseSize;
+		this.compressibleTypes = options.compressibleTypes;
+	}
+
+	/**
+	 * Buffer responses sent without {@code Content-Length} until their body is
+	 * complete, as long as it does not exceed the given size, and send them as a
+	 * single full response with a computed {@code Content-Length} instead of chunks.
+	 * Larger bodies are streamed as usual once the threshold is crossed. Single
+	 * element ({@link reactor.core.publisher.Mono}) bodies are always sent as full
+	 * responses.
+	 *
+	 * @param maxContentLength the maximum buffered body size in bytes, 0 to disable
+	 *
+	 * @return {@literal this}
+	 */
+	public HttpServerOptions responseBufferThreshold(int maxContentLength) {
+		if (maxContentLength < 0) {
+			throw new IllegalArgumentException("maxContentLength must be positive, was: " + maxContentLength);
+		}
+		this.responseBufferThreshold = maxContentLength;
+		return this;
+	}
+
+	/**
+	 * Return the maximum body size of buffered responses, 0 if disabled
+	 *
+	 * @return the maximum body size of buffered responses, 0 if disabled
+	 */
+	public int responseBufferThreshold() {
+		return responseBufferThreshold;
+	}
+
+	/**
+	 * Set the maximum number of pipelined HTTP/1.1 requests handled concurrently on a
+	 * connection. Their handlers run as soon as they are decoded while responses are
+	 * written in request order, each one waiting for the previous one to complete.
+	 * Requests decoded beyond that depth are held and no further read happens until
+	 * a response completes. Default to 1, handling one request at a time: pipelined
+	 * requests are then dispatched one after the other as responses complete.
+	 *
+	 * @param maxDepth the maximum number of requests handled concurrently per
+	 * connection
+	 *
+	 * @return {@literal this}
+	 */
+	public HttpServerOptions pipelining(int maxDepth) {
+		if (maxDepth <= 0) {
+			throw new IllegalArgumentException("maxDepth must be strictly positive, was: " + maxDepth);
+		}
+		this.pipeliningDepth = maxDepth;
+		return this;
+	}
+
+	/**
+	 * Return the maximum number of pipelined requests handled concurrently per
+	 * connection
+	 *
+	 * @return the maximum number of pipelined requests handled concurrently per
+	 * connection
+	 */
+	public int pipeliningDepth() {
+		return pipeliningDepth;
+	}
+
+	/**
+	 * Enable HTTP/2 alongside HTTP/1.1. Secured connections switch to HTTP/2 when
+	 * {@literal h2} is negotiated through ALPN, which requires an {@link SslContext}
+	 * configured with a matching {@link io.netty.handler.ssl.ApplicationProtocolConfig}.
+	 * Cleartext connections switch to HTTP/2 on an {@literal h2c} upgrade request or
+	 * with prior knowledge. Each stream is served as a request with the regular
+	 * handler and routes, up to the given number of concurrent streams. Streams are
+	 * independent: request bodies are streamed and flow controlled per stream as
+	 * they are read, and responses are written as soon as they are produced.
+	 *
+	 * @param maxConcurrentStreams the advertised maximum number of concurrent
+	 * streams per connection, 0 to disable HTTP/2
+	 *
+	 * @return {@literal this}
+	 */
+	public HttpServerOptions http2(int maxConcurrentStreams) {
+		if (maxConcurrentStreams < 0) {
+			throw new IllegalArgumentException("maxConcurrentStreams must be positive, was: " + maxConcurrentStreams);
+		}
+		this.http2MaxConcurrentStreams = maxConcurrentStreams;
+		return this;
+	}
+
+	/**
+	 * Return the maximum number of concurrent HTTP/2 streams per connection, 0 if
+	 * HTTP/2 is disabled
+	 *
+	 * @return the maximum number of concurrent HTTP/2 streams per connection, 0 if
+	 * HTTP/2 is disabled
+	 */
+	public int http2MaxConcurrentStreams() {
+		return http2MaxConcurrentStreams;
+	}
+
+	/**
+	 * Compress responses with {@literal gzip} or {@literal deflate} when the request
+	 * {@code Accept-Encoding} allows it, the response {@code Content-Type} is one of
+	 * the {@link #compressibleTypes(String...) compressible types} and its body is not
+	 * known to be smaller than the given size. Bodies without {@code Content-Length}
+	 * are compressed chunk by chunk as they are written.
+	 *
+	 * @param minResponseSize the minimum body size in bytes to compress, -1 to
+	 * disable compression
+	 *
+	 * @return {@literal this}
+	 */
+	public HttpServerOptions compression(int minResponseSize) {
+		if (minResponseSize < -1) {
+			throw new IllegalArgumentException("minResponseSize must be positive or -1, was: " + minResponseSize);
+		}
+		this.compressionMinResponseSize = minResponseSize;
+		return this;
+	}
+
+	/**
+	 * Return the minimum body size of compressed responses, -1 if disabled
+	 *
+	 * @return the minimum body size of compressed responses, -1 if disabled
+	 */
+	public int compressionMinResponseSize() {
+		return compressionMinResponseSize;
+	}
+
+	/**
+	 * Set the response content types eligible for {@link #compression(int)}, either
+	 * exact mime types or {@literal type/*} wildcards. Default to {@literal text/*},
+	 * {@literal application/json}, {@literal application/javascript}, {@literal
+	 * application/xml} and {@literal image/svg+xml}.
+	 *
+	 * @param contentTypes the compressible mime types
+	 *
+	 * @return {@literal this}
+	 */
+	public HttpServerOptions compressibleTypes(String... contentTypes) {
+		Objects.requireNonNull(contentTypes, "contentTypes");
+		if (contentTypes.length == 0) {
+			throw new IllegalArgumentException("contentTypes must not be empty");
+		}
+		this.compressibleTypes = contentTypes.clone();
+		return this;
+	}
+
+	/**
+	 * Return the response content types eligible for compression
+	 *
+	 * @return the response content types eligible for compression
+	 */
+	public String[] compressibleTypes() {
+		return compressibleTypes.clone();
 	}
 
 	@Override
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package reactor.ipc.netty.http.server;
+
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpServerKeepAliveHandler;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2ServerUpgradeCodec;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.AsciiString;
+import io.netty.util.ReferenceCountUtil;
+import reactor.ipc.netty.NettyPipeline;
+import reactor.ipc.netty.channel.ContextHandler;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+/**
+ * Install the connection scoped http server handlers, either for HTTP/1.1 or for
+ * HTTP/2 when enabled and negotiated through ALPN, prior knowledge or a cleartext
+ * upgrade. HTTP/2 streams are served by an {@link Http2ServerConnection}, each on its
+ * own {@link Http2ServerStreamChannel} with its own {@link HttpServerOperations}.
+ *
+ * @author agent
+ */
+final class HttpServerPipeline {
+
+	/**
+	 * Install the http server handlers before {@link NettyPipeline#ReactiveBridge}
+	 *
+	 * @param pipeline the connection pipeline
+	 * @param options the server options
+	 * @param context the server context initializing the HTTP/2 streams
+	 */
+	static void configure(ChannelPipeline pipeline,
+			HttpServerOptions options,
+			ContextHandler<?> context) {
+		if (options.http2MaxConcurrentStreams() > 0) {
+			SslHandler sslHandler = pipeline.get(SslHandler.class);
+			if (sslHandler == null) {
+				configureHttp1(pipeline, options, new Http2ServerConnection(options, context));
+				return;
+			}
+			//the handshake is complete when the channel becomes active
+			if (ApplicationProtocolNames.HTTP_2.equals(sslHandler.applicationProtocol())) {
+				Http2ServerConnection connection =
+						new Http2ServerConnection(options, context);
+				pipeline.addBefore(NettyPipeline.ReactiveBridge,
+						NettyPipeline.HttpCodecHandler,
+						connection.newCodec());
+				configureHttp2(pipeline, connection);
+				return;
+			}
+		}
+		configureHttp1(pipeline, options, null);
+	}
+
+	/**
+	 * Install the handlers of an HTTP/2 stream: streams are not subject to connection
+	 * keep-alive nor pipelining, but their response is compressed and buffered as an
+	 * HTTP/1.1 response would be.
+	 *
+	 * @param pipeline the stream pipeline
+	 * @param options the server options
+	 */
+	static void configureStream(ChannelPipeline pipeline, HttpServerOptions options) {
+		if (options.compressionMinResponseSize() >= 0) {
+			pipeline.addBefore(NettyPipeline.ReactiveBridge,
+					NettyPipeline.HttpCompressor,
+					newCompressor(options));
+		}
+		if (options.responseBufferThreshold() > 0) {
+			pipeline.addBefore(NettyPipeline.ReactiveBridge,
+					NettyPipeline.HttpResponseBuffer,
+					new HttpResponseBufferHandler(options.responseBufferThreshold()));
+		}
+	}
+
+	static void configureHttp1(ChannelPipeline pipeline,
+			HttpServerOptions options,
+			Http2ServerConnection cleartextHttp2) {
+		HttpServerCodec codec = new HttpServerCodec();
+		pipeline.addBefore(NettyPipeline.ReactiveBridge,
+				NettyPipeline.HttpCodecHandler,
+				codec);
+		if (cleartextHttp2 != null) {
+			pipeline.addBefore(NettyPipeline.HttpCodecHandler,
+					NettyPipeline.Http2PriorKnowledge,
+					new Http2PriorKnowledgeHandler(cleartextHttp2));
+			pipeline.addBefore(NettyPipeline.ReactiveBridge,
+					NettyPipeline.HttpServerUpgrade,
+					new HttpServerUpgradeHandler(codec,
+							protocol -> AsciiString.contentEquals(Http2CodecUtil.HTTP_UPGRADE_PROTOCOL_NAME,
+									protocol) ? new Http2ServerUpgradeCodec(
+									NettyPipeline.HttpCodecHandler,
+									cleartextHttp2.newCodec()) : null));
+			pipeline.addBefore(NettyPipeline.ReactiveBridge,
+					NettyPipeline.Http2ServerUpgrade,
+					new Http2UpgradeHandler(cleartextHttp2));
+		}
+		pipeline.addBefore(NettyPipeline.ReactiveBridge,
+				NettyPipeline.HttpKeepAlive,
+				new HttpServerKeepAliveHandler());
+		if (options.compressionMinResponseSize() >= 0) {
+			pipeline.addBefore(NettyPipeline.ReactiveBridge,
+					NettyPipeline.HttpCompressor,
+					newCompressor(options));
+		}
+		if (options.responseBufferThreshold() > 0) {
+			pipeline.addBefore(NettyPipeline.ReactiveBridge,
+					NettyPipeline.HttpResponseBuffer,
+					new HttpResponseBufferHandler(options.responseBufferThreshold()));
+		}
+		//bound the requests dispatched concurrently, a client may pipeline requests
+		//whatever the depth
+		pipeline.addBefore(NettyPipeline.ReactiveBridge,
+				NettyPipeline.HttpPipelining,
+				new HttpPipeliningHandler(options.pipeliningDepth()));
+	}
+
+	/**
+	 * Install the given {@link Http2ServerConnection} after an HTTP/2 {@link
+	 * NettyPipeline#HttpCodecHandler}, removing the HTTP/1.1 handlers if any: each
+	 * stream installs its own message handlers.
+	 *
+	 * @param pipeline the connection pipeline
+	 * @param connection the connection serving the HTTP/2 streams
+	 */
+	static void configureHttp2(ChannelPipeline pipeline, Http2ServerConnection connection) {
+		for (String name : HTTP1_HANDLERS) {
+			if (pipeline.get(name) != null) {
+				pipeline.remove(name);
+			}
+		}
+		pipeline.addAfter(NettyPipeline.HttpCodecHandler,
+				NettyPipeline.Http2Multiplex,
+				connection);
+	}
+
+	static HttpResponseCompressor newCompressor(HttpServerOptions options) {
+		return new HttpResponseCompressor(options.compressionMinResponseSize(),
+				options.compressibleTypes());
+	}
+
+	/**
+	 * Switch a cleartext connection to HTTP/2 if it starts with the HTTP/2 client
+	 * connection preface, removing itself in any case once decided.
+	 */
+	static final class Http2PriorKnowledgeHandler extends ByteToMessageDecoder {
+
+		final Http2ServerConnection connection;
+
+		Http2PriorKnowledgeHandler(Http2ServerConnection connection) {
+			this.connection = connection;
+		}
+
+		@Override
+		protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out)
+				throws Exception {
+			ByteBuf preface = Http2CodecUtil.connectionPrefaceBuf();
+			try {
+				int length = Math.min(in.readableBytes(), preface.readableBytes());
+				if (!ByteBufUtil.equals(in, in.readerIndex(), preface, 0, length)) {
+					ctx.pipeline()
+					   .remove(this);
+					return;
+				}
+				if (length < preface.readableBytes()) {
+					return;
+				}
+			}
+			finally {
+				preface.release();
+			}
+
+			if (log.isDebugEnabled()) {
+				log.debug("Switching to HTTP/2 with prior knowledge {}", ctx.channel());
+			}
+			ChannelPipeline pipeline = ctx.pipeline();
+			pipeline.replace(NettyPipeline.HttpCodecHandler,
+					NettyPipeline.HttpCodecHandler,
+					connection.newCodec());
+			pipeline.remove(NettyPipeline.HttpServerUpgrade);
+			pipeline.remove(NettyPipeline.Http2ServerUpgrade);
+			configureHttp2(pipeline, connection);
+			//the cumulated preface is forwarded to the HTTP/2 handler on removal
+			pipeline.remove(this);
+		}
+	}
+
+	/**
+	 * Complete a cleartext upgrade to HTTP/2 by serving the upgrade request as the
+	 * stream 1 request.
+	 */
+	static final class Http2UpgradeHandler extends ChannelInboundHandlerAdapter {
+
+		final Http2ServerConnection connection;
+
+		Http2UpgradeHandler(Http2ServerConnection connection) {
+			this.connection = connection;
+		}
+
+		@Override
+		public void userEventTriggered(ChannelHandlerContext ctx, Object evt)
+				throws Exception {
+			if (evt instanceof HttpServerUpgradeHandler.UpgradeEvent) {
+				if (log.isDebugEnabled()) {
+					log.debug("Upgraded to HTTP/2 {}", ctx.channel());
+				}
+				FullHttpRequest request =
+						((HttpServerUpgradeHandler.UpgradeEvent) evt).upgradeRequest()
+						                                             .retainedDuplicate();
+				ReferenceCountUtil.release(evt);
+				ctx.pipeline()
+				   .remove(this);
+				configureHttp2(ctx.pipeline(), connection);
+				connection.onUpgradeRequest(request);
+				return;
+			}
+			ctx.fireUserEventTriggered(evt);
+		}
+	}
+
+	/**
+	 * The connection scoped HTTP/1.1 handlers replaced by the stream ones on HTTP/2
+	 */
+	static final String[] HTTP1_HANDLERS = {NettyPipeline.HttpKeepAlive,
+			NettyPipeline.HttpCompressor, NettyPipeline.HttpResponseBuffer,
+			NettyPipeline.HttpPipelining};
+
+	static final Logger log = Loggers.getLogger(HttpServerPipeline.class);
+
+	HttpServerPipeline() {
+	}
+}
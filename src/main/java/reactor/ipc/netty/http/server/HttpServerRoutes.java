@@ -233,6 +233,35 @@ public interface HttpServerRoutes extends
 	HttpServerRoutes route(Predicate<? super HttpServerRequest> condition,
 			BiFunction<? super HttpServerRequest, ? super HttpServerResponse, ? extends Publisher<Void>> handler);
 
+	/**
+	 * Return the number of request uris currently held in the match caches of the
+	 * registered uri templates. Each template caches up to
+	 * {@code -Dreactor.ipc.netty.http.uriTemplateCacheSize} uris, 256 by default.
+	 * <p>
+	 * Only the templates matched with a regular expression are cached and counted,
+	 * e.g. "/files/{name}.txt" or "/static/**". Templates made of literal and whole
+	 * "{name}" path segments, e.g. "/users/{id}", are resolved by a prefix tree
+	 * without cache.
+	 *
+	 * @return the number of cached uri matches, 0 if not supported by this registry
+	 */
+	default int uriTemplateCacheSize() {
+		return 0;
+	}
+
+	/**
+	 * Return the ratio of uri template lookups served by the match caches of the
+	 * registered uri templates since their registration. As with
+	 * {@link #uriTemplateCacheSize()}, only the templates matched with a regular
+	 * expression are counted.
+	 *
+	 * @return the cache hit rate between 0 and 1, 0 if no lookup happened or if not
+	 * supported by this registry
+	 */
+	default double uriTemplateCacheHitRate() {
+		return 0d;
+	}
+
 	/**
 	 * Listen for WebSocket on the passed path to be used as a routing condition. Incoming
 	 * connections will query the internal registry to invoke the matching handlers. <p>
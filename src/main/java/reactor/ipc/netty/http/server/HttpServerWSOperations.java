@@ -71,6 +71,9 @@ final class HttpServerWSOperations extends HttpServerOperations
 			                             .addListener(f -> {
 				                             ignoreChannelPersistence();
 				                             removeHandler(NettyPipeline.HttpKeepAlive);
+				                             removeHandler(NettyPipeline.HttpCompressor);
+				                             removeHandler(NettyPipeline.HttpResponseBuffer);
+				                             removeHandler(NettyPipeline.HttpPipelining);
 				                             channel.read();
 			                             });
 		}
@@ -37,6 +37,7 @@ import io.netty.handler.proxy.Socks5ProxyHandler;
 import io.netty.handler.ssl.JdkSslContext;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.resolver.AddressResolverGroup;
 import io.netty.resolver.NoopAddressResolverGroup;
 import io.netty.util.NetUtil;
 import reactor.core.Exceptions;
@@ -81,6 +82,7 @@ public class ClientOptions extends NettyOptions<Bootstrap, ClientOptions> {
 
 	InternetProtocolFamily                protocolFamily = null;
 	Supplier<? extends InetSocketAddress> connectAddress = null;
+	AddressResolverGroup<?>               resolver       = null;
 
 	/**
 	 * Build a new {@link Bootstrap}
@@ -116,6 +118,7 @@ public class ClientOptions extends NettyOptions<Bootstrap, ClientOptions> {
 		this.connectAddress = options.connectAddress;
 		this.poolResources = options.poolResources;
 		this.protocolFamily = options.protocolFamily;
+		this.resolver = options.resolver;
 	}
 
 	/**
@@ -205,6 +208,9 @@ public class ClientOptions extends NettyOptions<Bootstrap, ClientOptions> {
 			adr = null;
 		}
 
+		if (resolver != null && !useProxy()) {
+			b.resolver(resolver);
+		}
 		if (adr != null) {
 			if (useDatagramChannel()) {
 				b.localAddress(adr);
@@ -282,6 +288,15 @@ public class ClientOptions extends NettyOptions<Bootstrap, ClientOptions> {
 		return null != connectAddress ? connectAddress.get() : null;
 	}
 
+	/**
+	 * Resolve the latest {@link #proxy} address
+	 *
+	 * @return the proxy address if a proxy is used
+	 */
+	public final InetSocketAddress getProxyAddress() {
+		return useProxy() ? proxyAddress.get() : null;
+	}
+
 	/**
 	 * Configures the {@link ChannelPool} selector for the socket. Will effectively
 	 * enable client connection-pooling.
@@ -403,6 +418,22 @@ public class ClientOptions extends NettyOptions<Bootstrap, ClientOptions> {
 		return this;
 	}
 
+	/**
+	 * Configures the {@link AddressResolverGroup} resolving unresolved remote addresses
+	 * when connecting, e.g. an asynchronous and caching {@link
+	 * reactor.ipc.netty.resources.DnsResolverGroup}. Addresses derived from a host name
+	 * are then left unresolved until the connection is attempted, from its event loop.
+	 * Ignored when a {@link #proxy} resolves remote addresses.
+	 *
+	 * @param resolver the {@link AddressResolverGroup} to use
+	 *
+	 * @return {@code this}
+	 */
+	public ClientOptions resolver(AddressResolverGroup<?> resolver) {
+		this.resolver = Objects.requireNonNull(resolver, "resolver");
+		return this;
+	}
+
 	/**
 	 * Enable default sslContext support
 	 *
@@ -462,6 +493,15 @@ public class ClientOptions extends NettyOptions<Bootstrap, ClientOptions> {
 		return proxyType != null;
 	}
 
+	/**
+	 * Return true if a custom {@link AddressResolverGroup} resolves remote addresses
+	 *
+	 * @return true if a custom {@link AddressResolverGroup} resolves remote addresses
+	 */
+	protected boolean useResolver() {
+		return resolver != null;
+	}
+
 	final void groupAndChannel(Bootstrap bootstrap) {
 		LoopResources loops = Objects.requireNonNull(this.loopResources, "loopResources");
 
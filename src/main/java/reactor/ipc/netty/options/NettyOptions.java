@@ -33,6 +33,8 @@ import io.netty.channel.group.ChannelGroup;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslHandler;
 import io.netty.util.AttributeKey;
+import reactor.ipc.netty.channel.FlushMode;
+import reactor.ipc.netty.channel.PendingWriteOverflow;
 import reactor.ipc.netty.resources.LoopResources;
 
 /**
@@ -69,6 +71,9 @@ public abstract class NettyOptions<BOOSTRAP extends AbstractBootstrap<BOOSTRAP,
 	Consumer<? super Channel>  afterChannelInit          = null;
 	Consumer<? super Channel>  afterChannelInitUser      = null;
 	Predicate<? super Channel> onChannelInit             = null;
+	FlushMode                  flushMode                 = FlushMode.MANUAL_BOUNDARY;
+	int                        pendingWritesCapacity     = 0;
+	PendingWriteOverflow       pendingWritesOverflow     = PendingWriteOverflow.FAIL;
 
 	NettyOptions(BOOSTRAP bootstrapTemplate) {
 		this.bootstrapTemplate = bootstrapTemplate;
@@ -86,6 +91,9 @@ public abstract class NettyOptions<BOOSTRAP extends AbstractBootstrap<BOOSTRAP,
 		this.channelGroup = options.channelGroup;
 		this.loopResources = options.loopResources;
 		this.preferNative = options.preferNative;
+		this.flushMode = options.flushMode;
+		this.pendingWritesCapacity = options.pendingWritesCapacity;
+		this.pendingWritesOverflow = options.pendingWritesOverflow;
 	}
 
 	/**
@@ -142,6 +150,26 @@ public abstract class NettyOptions<BOOSTRAP extends AbstractBootstrap<BOOSTRAP,
 		return (SO) this;
 	}
 
+	/**
+	 * Bound the queue of writes waiting for the current outbound {@link
+	 * org.reactivestreams.Publisher} to be sent, preallocating it once per connection.
+	 * The queue is unbounded by default.
+	 *
+	 * @param capacity the maximum number of pending writes
+	 * @param overflow the {@link PendingWriteOverflow} policy once the queue is full
+	 *
+	 * @return {@code this}
+	 */
+	public SO boundedPendingWrites(int capacity, PendingWriteOverflow overflow) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("pending writes capacity must be " +
+					"strictly positive, was: " + capacity);
+		}
+		this.pendingWritesOverflow = Objects.requireNonNull(overflow, "overflow");
+		this.pendingWritesCapacity = capacity;
+		return (SO) this;
+	}
+
 	/**
 	 * Provide a {@link ChannelGroup} for each active remote channel will be held in the
 	 * provided group.
@@ -199,6 +227,47 @@ public abstract class NettyOptions<BOOSTRAP extends AbstractBootstrap<BOOSTRAP,
 		return loopResources(preferNative -> eventLoopGroup);
 	}
 
+	/**
+	 * Return the default {@link FlushMode} of each connection.
+	 *
+	 * @return the default {@link FlushMode} of each connection
+	 */
+	public final FlushMode flushMode() {
+		return flushMode;
+	}
+
+	/**
+	 * Return the maximum number of pending writes per connection or 0 if unbounded.
+	 *
+	 * @return the maximum number of pending writes per connection or 0 if unbounded
+	 */
+	public final int pendingWritesCapacity() {
+		return pendingWritesCapacity;
+	}
+
+	/**
+	 * Return the {@link PendingWriteOverflow} policy of bounded pending writes.
+	 *
+	 * @return the {@link PendingWriteOverflow} policy of bounded pending writes
+	 */
+	public final PendingWriteOverflow pendingWritesOverflow() {
+		return pendingWritesOverflow;
+	}
+
+	/**
+	 * Set the default {@link FlushMode} of each connection, further adjustable per send
+	 * with {@link reactor.ipc.netty.NettyOutbound#options(Consumer)}. Default to
+	 * {@link FlushMode#MANUAL_BOUNDARY}.
+	 *
+	 * @param flushMode the default {@link FlushMode}
+	 *
+	 * @return {@code this}
+	 */
+	public SO flushMode(FlushMode flushMode) {
+		this.flushMode = Objects.requireNonNull(flushMode, "flushMode");
+		return (SO) this;
+	}
+
 	@Override
 	public BOOSTRAP get() {
 		return bootstrapTemplate.clone();
@@ -320,7 +389,7 @@ public abstract class NettyOptions<BOOSTRAP extends AbstractBootstrap<BOOSTRAP,
 
 	@Override
 	public String toString() {
-		return "NettyOptions{" + "bootstrapTemplate=" + bootstrapTemplate + ", sslHandshakeTimeoutMillis=" + sslHandshakeTimeoutMillis + ", sslContext=" + sslContext + ", preferNative=" + preferNative + ", afterChannelInit=" + afterChannelInit + ", onChannelInit=" + onChannelInit + ", loopResources=" + loopResources + '}';
+		return "NettyOptions{" + "bootstrapTemplate=" + bootstrapTemplate + ", sslHandshakeTimeoutMillis=" + sslHandshakeTimeoutMillis + ", sslContext=" + sslContext + ", preferNative=" + preferNative + ", afterChannelInit=" + afterChannelInit + ", onChannelInit=" + onChannelInit + ", loopResources=" + loopResources + ", flushMode=" + flushMode + ", pendingWritesCapacity=" + pendingWritesCapacity + ", pendingWritesOverflow=" + pendingWritesOverflow + '}';
 	}
 
 	static final boolean DEFAULT_NATIVE =
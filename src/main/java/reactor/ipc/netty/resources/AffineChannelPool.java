@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package reactor.ipc.netty.resources;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.pool.ChannelPool;
+import io.netty.channel.pool.ChannelPoolHandler;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+/**
+ * An uncapped {@link ChannelPool} keeping a partition of idle connections per event
+ * loop. An acquire is first served by the partition of the calling event loop, then
+ * steals the oldest idle connection of another partition, and finally opens a new
+ * connection bound to the calling event loop. Released connections return to the
+ * partition of their own event loop.
+ *
+ * @author agent
+ */
+final class AffineChannelPool implements ChannelPool {
+
+	final Bootstrap                     bootstrap;
+	final ChannelPoolHandler            handler;
+	final EventLoopGroup                group;
+	final Map<EventExecutor, Partition> partitions;
+	final Partition[]                   ring;
+
+	volatile boolean closed;
+
+	AffineChannelPool(Bootstrap bootstrap, ChannelPoolHandler handler) {
+		this.handler = handler;
+		this.group = bootstrap.config()
+		                      .group();
+		this.bootstrap = bootstrap.clone()
+		                          .handler(new ChannelInitializer<Channel>() {
+			                          @Override
+			                          protected void initChannel(Channel ch)
+					                          throws Exception {
+				                          handler.channelCreated(ch);
+			                          }
+		                          });
+
+		List<Partition> loops = new ArrayList<>();
+		this.partitions = new IdentityHashMap<>();
+		for (EventExecutor executor : group) {
+			if (executor instanceof EventLoop) {
+				Partition partition = new Partition((EventLoop) executor, loops.size());
+				loops.add(partition);
+				partitions.put(executor, partition);
+			}
+		}
+		if (loops.isEmpty()) {
+			throw new IllegalArgumentException("EventLoopGroup must provide event loops, was: " + group);
+		}
+		this.ring = loops.toArray(new Partition[loops.size()]);
+	}
+
+	@Override
+	public Future<Channel> acquire() {
+		return acquire(local().loop.<Channel>newPromise());
+	}
+
+	@Override
+	public Future<Channel> acquire(Promise<Channel> promise) {
+		if (closed) {
+			promise.tryFailure(new IllegalStateException("Pool closed"));
+			return promise;
+		}
+		Partition local = local();
+		Channel channel = local.poll();
+		if (channel == null) {
+			channel = steal(local);
+		}
+		if (channel == null) {
+			connect(local, promise);
+			return promise;
+		}
+		try {
+			handler.channelAcquired(channel);
+		}
+		catch (Throwable t) {
+			channel.close();
+			promise.tryFailure(t);
+			return promise;
+		}
+		if (!promise.trySuccess(channel)) {
+			release(channel);
+		}
+		return promise;
+	}
+
+	@Override
+	public Future<Void> release(Channel channel) {
+		return release(channel,
+				channel.eventLoop()
+				       .newPromise());
+	}
+
+	@Override
+	public Future<Void> release(Channel channel, Promise<Void> promise) {
+		if (channel.attr(POOL)
+		           .get() != this) {
+			channel.close();
+			promise.tryFailure(new IllegalArgumentException("Channel " + channel + " was not acquired from this pool"));
+			return promise;
+		}
+		try {
+			handler.channelReleased(channel);
+		}
+		catch (Throwable t) {
+			channel.close();
+			promise.tryFailure(t);
+			return promise;
+		}
+		Partition partition = partitions.get(channel.eventLoop());
+		if (closed || partition == null || !channel.isActive()) {
+			channel.close();
+		}
+		else {
+			partition.idle.offerFirst(channel);
+			//a concurrent close might have missed it
+			if (closed && partition.idle.remove(channel)) {
+				channel.close();
+			}
+		}
+		promise.trySuccess(null);
+		return promise;
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		for (Partition partition : ring) {
+			Channel channel;
+			while ((channel = partition.idle.pollFirst()) != null) {
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * Return the partition of the calling event loop, or the partition of the next
+	 * event loop if called from outside of the pool event loops.
+	 */
+	final Partition local() {
+		for (Partition partition : ring) {
+			if (partition.loop.inEventLoop()) {
+				return partition;
+			}
+		}
+		Partition partition = partitions.get(group.next());
+		return partition != null ? partition : ring[0];
+	}
+
+	final Channel steal(Partition local) {
+		for (int i = 1; i < ring.length; i++) {
+			Channel channel = ring[(local.index + i) % ring.length].steal();
+			if (channel != null) {
+				if (log.isDebugEnabled()) {
+					log.debug("Stole {} for {}", channel, local.loop);
+				}
+				return channel;
+			}
+		}
+		return null;
+	}
+
+	final void connect(Partition partition, Promise<Channel> promise) {
+		bootstrap.clone(partition.loop)
+		         .connect()
+		         .addListener((ChannelFutureListener) f -> {
+			         if (!f.isSuccess()) {
+				         promise.tryFailure(f.cause());
+				         return;
+			         }
+			         Channel channel = f.channel();
+			         channel.attr(POOL)
+			                .set(this);
+			         channel.closeFuture()
+			                .addListener(c -> partition.idle.remove(channel));
+			         if (!promise.trySuccess(channel)) {
+				         release(channel);
+			         }
+		         });
+	}
+
+	static final class Partition {
+
+		final EventLoop      loop;
+		final int            index;
+		final Deque<Channel> idle;
+
+		Partition(EventLoop loop, int index) {
+			this.loop = loop;
+			this.index = index;
+			this.idle = new ConcurrentLinkedDeque<>();
+		}
+
+		/**
+		 * Lease the most recently released connection.
+		 */
+		Channel poll() {
+			Channel channel;
+			while ((channel = idle.pollFirst()) != null) {
+				if (channel.isActive()) {
+					return channel;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Lease the least recently released connection.
+		 */
+		Channel steal() {
+			Channel channel;
+			while ((channel = idle.pollLast()) != null) {
+				if (channel.isActive()) {
+					return channel;
+				}
+			}
+			return null;
+		}
+	}
+
+	static final AttributeKey<AffineChannelPool> POOL =
+			AttributeKey.newInstance("affinePool");
+
+	static final Logger log = Loggers.getLogger(AffineChannelPool.class);
+}
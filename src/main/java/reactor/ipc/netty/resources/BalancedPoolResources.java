@@ -0,0 +1,323 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package reactor.ipc.netty.resources;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.pool.ChannelPool;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.internal.PlatformDependent;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+/**
+ * A {@link PoolResources} balancing connections across a set of endpoints, each
+ * pooled by a delegate {@link PoolResources}. Each requested remote address gets its
+ * own balancer, connecting with the bootstrap of that address, but all of them share
+ * the endpoints: every acquire selects the endpoint with the least acquired
+ * connections, either among all endpoints or among two picked at random, skipping
+ * ejected endpoints.
+ * <p>An endpoint is ejected after consecutive failures, a failure being either a
+ * failed acquire (e.g. connection refused or timed out) or a connection closed while
+ * acquired (e.g. reset by the remote, or closed by the client after a failed
+ * exchange). Response statuses are not visible at this level and never count as
+ * failures. A connection released while open resets the failure count.
+ *
+ * @author agent
+ */
+final class BalancedPoolResources implements PoolResources {
+
+	final String                                  name;
+	final PoolResources                           pools;
+	final boolean                                 ownsPools;
+	final Endpoint[]                              endpoints;
+	final boolean                                 powerOfTwoChoices;
+	final int                                     maxFailures;
+	final long                                    ejectionNanos;
+	final AtomicInteger                           next;
+	final ConcurrentMap<SocketAddress, Balancer> balancers;
+
+	BalancedPoolResources(String name, BalancerOptions options) {
+		InetSocketAddress[] addresses = options.endpoints();
+		if (addresses.length == 0) {
+			throw new IllegalArgumentException("endpoints must not be empty");
+		}
+		this.name = name;
+		this.ownsPools = options.poolResources() == null;
+		this.pools = ownsPools ? PoolResources.elastic(name) : options.poolResources();
+		this.endpoints = new Endpoint[addresses.length];
+		for (int i = 0; i < addresses.length; i++) {
+			endpoints[i] = new Endpoint(addresses[i]);
+		}
+		this.powerOfTwoChoices = options.isPowerOfTwoChoices();
+		this.maxFailures = options.maxFailures();
+		this.ejectionNanos = options.ejectionTime()
+		                            .toNanos();
+		this.next = new AtomicInteger();
+		this.balancers = PlatformDependent.newConcurrentHashMap();
+	}
+
+	@Override
+	public ChannelPool selectOrCreate(SocketAddress address,
+			Supplier<? extends Bootstrap> bootstrap) {
+		SocketAddress key = DefaultPoolResources.key(address != null ? address :
+				bootstrap.get()
+				         .config()
+				         .remoteAddress(), bootstrap);
+		Balancer balancer = balancers.get(key);
+		if (balancer != null) {
+			return balancer;
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("New {} client balancer for {} across {} endpoints",
+					name,
+					key,
+					endpoints.length);
+		}
+		balancer = new Balancer(bootstrap);
+		Balancer previous = balancers.putIfAbsent(key, balancer);
+		return previous != null ? previous : balancer;
+	}
+
+	@Override
+	public Map<SocketAddress, PoolMetrics> metrics() {
+		return pools.metrics();
+	}
+
+	@Override
+	public void dispose() {
+		balancers.clear();
+		//a user supplied PoolResources may be shared and is disposed by its owner
+		if (ownsPools) {
+			pools.dispose();
+		}
+	}
+
+	/**
+	 * Select an available endpoint with the least acquired connections, or the endpoint
+	 * ejected the earliest if all are ejected.
+	 */
+	final Endpoint select() {
+		long now = System.nanoTime();
+		Endpoint selected = null;
+		if (powerOfTwoChoices && endpoints.length > 2) {
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			int a = random.nextInt(endpoints.length);
+			int b = random.nextInt(endpoints.length - 1);
+			if (b >= a) {
+				b++;
+			}
+			selected = lesser(lesser(null, endpoints[a], now), endpoints[b], now);
+		}
+		if (selected == null) {
+			//rotate the scan start so that ties do not favor the first endpoints
+			int start = (next.getAndIncrement() & Integer.MAX_VALUE) % endpoints.length;
+			for (int i = 0; i < endpoints.length; i++) {
+				selected = lesser(selected, endpoints[(start + i) % endpoints.length], now);
+			}
+		}
+		if (selected != null) {
+			return selected;
+		}
+		selected = endpoints[0];
+		for (Endpoint endpoint : endpoints) {
+			if (endpoint.ejectedUntil - selected.ejectedUntil < 0L) {
+				selected = endpoint;
+			}
+		}
+		return selected;
+	}
+
+	static Endpoint lesser(Endpoint current, Endpoint candidate, long now) {
+		if (!candidate.isAvailable(now)) {
+			return current;
+		}
+		if (current == null || candidate.outstanding.get() < current.outstanding.get()) {
+			return candidate;
+		}
+		return current;
+	}
+
+	final class Balancer implements ChannelPool {
+
+		final Supplier<? extends Bootstrap> bootstrap;
+		final EventLoopGroup                group;
+
+		Balancer(Supplier<? extends Bootstrap> bootstrap) {
+			this.bootstrap = bootstrap;
+			this.group = bootstrap.get()
+			                      .config()
+			                      .group();
+		}
+
+		@Override
+		public Future<Channel> acquire() {
+			return acquire(group.next()
+			                    .<Channel>newPromise());
+		}
+
+		@Override
+		public Future<Channel> acquire(Promise<Channel> promise) {
+			Endpoint endpoint = select();
+			endpoint.outstanding.incrementAndGet();
+			pools.selectOrCreate(endpoint.address, bootstrap)
+			     .acquire()
+			     .addListener(f -> {
+				     if (!f.isSuccess()) {
+					     endpoint.outstanding.decrementAndGet();
+					     onFailure(endpoint);
+					     promise.tryFailure(f.cause());
+					     return;
+				     }
+				     Channel channel = (Channel) f.getNow();
+				     if (channel.attr(ENDPOINT)
+				                .setIfAbsent(endpoint) == null) {
+					     //a connection closed while acquired is not released
+					     channel.closeFuture()
+					            .addListener(c -> {
+						            if (untrack(channel)) {
+							            onFailure(endpoint);
+						            }
+					            });
+				     }
+				     channel.attr(ACQUIRED)
+				            .set(Boolean.TRUE);
+				     if (!channel.isOpen()) {
+					     untrack(channel);
+				     }
+				     if (!promise.trySuccess(channel)) {
+					     release(channel);
+				     }
+			     });
+			return promise;
+		}
+
+		@Override
+		public Future<Void> release(Channel channel) {
+			return release(channel,
+					channel.eventLoop()
+					       .newPromise());
+		}
+
+		@Override
+		public Future<Void> release(Channel channel, Promise<Void> promise) {
+			Endpoint endpoint = channel.attr(ENDPOINT)
+			                           .get();
+			if (endpoint == null) {
+				channel.close();
+				promise.tryFailure(new IllegalArgumentException("Channel " + channel + " was not acquired from this pool"));
+				return promise;
+			}
+			if (untrack(channel) && channel.isOpen()) {
+				endpoint.failures.set(0);
+			}
+			return pools.selectOrCreate(endpoint.address, bootstrap)
+			            .release(channel, promise);
+		}
+
+		@Override
+		public void close() {
+			//endpoint pools are closed by dispose
+		}
+
+		@Override
+		public String toString() {
+			return "Balancer{" + "name=" + name + ", endpoints=" + endpoints.length + '}';
+		}
+	}
+
+	/**
+	 * Count a failure against the given endpoint, ejecting it after {@link #maxFailures}
+	 * consecutive failures.
+	 */
+	final void onFailure(Endpoint endpoint) {
+		if (endpoint.failures.incrementAndGet() >= maxFailures) {
+			endpoint.failures.set(0);
+			endpoint.ejectedUntil = System.nanoTime() + ejectionNanos;
+			endpoint.ejected = true;
+			if (log.isDebugEnabled()) {
+				log.debug("Ejecting {} client endpoint {} after {} failures",
+						name,
+						endpoint.address,
+						maxFailures);
+			}
+		}
+	}
+
+	/**
+	 * Stop counting an acquired connection against its endpoint, once released or
+	 * closed.
+	 *
+	 * @return true if the connection was still acquired
+	 */
+	static boolean untrack(Channel channel) {
+		if (channel.attr(ACQUIRED)
+		           .getAndSet(null) != null) {
+			Endpoint endpoint = channel.attr(ENDPOINT)
+			                           .get();
+			endpoint.outstanding.decrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+	static final class Endpoint {
+
+		final InetSocketAddress address;
+		final AtomicInteger     outstanding;
+		final AtomicInteger     failures;
+
+		volatile boolean ejected;
+		volatile long    ejectedUntil;
+
+		Endpoint(InetSocketAddress address) {
+			this.address = address;
+			this.outstanding = new AtomicInteger();
+			this.failures = new AtomicInteger();
+		}
+
+		boolean isAvailable(long now) {
+			if (!ejected) {
+				return true;
+			}
+			if (now - ejectedUntil < 0L) {
+				return false;
+			}
+			ejected = false;
+			return true;
+		}
+	}
+
+	static final AttributeKey<Endpoint> ENDPOINT =
+			AttributeKey.newInstance("balancedEndpoint");
+	static final AttributeKey<Boolean>  ACQUIRED =
+			AttributeKey.newInstance("balancedAcquired");
+
+	static final Logger log = Loggers.getLogger(BalancedPoolResources.class);
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package reactor.ipc.netty.resources;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Options of the client-side load balancing created by {@link
+ * PoolResources#balanced(String, java.util.function.Consumer)}: the endpoints, the
+ * endpoint selection strategy and the ejection of failing endpoints.
+ *
+ * @author agent
+ */
+public final class BalancerOptions {
+
+	/**
+	 * Create new {@link BalancerOptions} with default values
+	 *
+	 * @return new {@link BalancerOptions}
+	 */
+	public static BalancerOptions create() {
+		return new BalancerOptions();
+	}
+
+	InetSocketAddress[] endpoints          = new InetSocketAddress[0];
+	boolean             powerOfTwoChoices  = false;
+	int                 maxFailures        = 5;
+	Duration            ejectionTime       = Duration.ofSeconds(30);
+	PoolResources       poolResources      = null;
+
+	BalancerOptions() {
+	}
+
+	BalancerOptions(BalancerOptions options) {
+		this.endpoints = options.endpoints;
+		this.powerOfTwoChoices = options.powerOfTwoChoices;
+		this.maxFailures = options.maxFailures;
+		this.ejectionTime = options.ejectionTime;
+		this.poolResources = options.poolResources;
+	}
+
+	/**
+	 * Set the endpoints to balance connections across.
+	 *
+	 * @param endpoints the endpoints to connect to
+	 *
+	 * @return {@literal this}
+	 */
+	public BalancerOptions endpoints(InetSocketAddress... endpoints) {
+		Objects.requireNonNull(endpoints, "endpoints");
+		if (endpoints.length == 0) {
+			throw new IllegalArgumentException("endpoints must not be empty");
+		}
+		for (InetSocketAddress endpoint : endpoints) {
+			Objects.requireNonNull(endpoint, "endpoint");
+		}
+		this.endpoints = endpoints.clone();
+		return this;
+	}
+
+	/**
+	 * Select the endpoint with the least acquired connections, scanning all endpoints.
+	 * This is the default.
+	 *
+	 * @return {@literal this}
+	 */
+	public BalancerOptions leastOutstanding() {
+		this.powerOfTwoChoices = false;
+		return this;
+	}
+
+	/**
+	 * Select the endpoint with the least acquired connections among two endpoints
+	 * picked at random, avoiding a scan of all endpoints.
+	 *
+	 * @return {@literal this}
+	 */
+	public BalancerOptions powerOfTwoChoices() {
+		this.powerOfTwoChoices = true;
+		return this;
+	}
+
+	/**
+	 * Set the number of consecutive failed acquires after which an endpoint is ejected
+	 * for {@link #ejectionTime(Duration)}. Default to 5.
+	 *
+	 * @param maxFailures the number of consecutive failures ejecting an endpoint
+	 *
+	 * @return {@literal this}
+	 */
+	public BalancerOptions maxFailures(int maxFailures) {
+		if (maxFailures <= 0) {
+			throw new IllegalArgumentException("maxFailures must be strictly positive, was: " + maxFailures);
+		}
+		this.maxFailures = maxFailures;
+		return this;
+	}
+
+	/**
+	 * Set the time an ejected endpoint is left out of the selection. Default to 30
+	 * seconds.
+	 *
+	 * @param ejectionTime the time an endpoint stays ejected
+	 *
+	 * @return {@literal this}
+	 */
+	public BalancerOptions ejectionTime(Duration ejectionTime) {
+		Objects.requireNonNull(ejectionTime, "ejectionTime");
+		this.ejectionTime = PoolOptions.positive(ejectionTime, "ejectionTime");
+		return this;
+	}
+
+	/**
+	 * Set the {@link PoolResources} providing the connection pool of each endpoint.
+	 * Default to {@link PoolResources#elastic(String)}.
+	 *
+	 * @param poolResources the {@link PoolResources} pooling connections per endpoint
+	 *
+	 * @return {@literal this}
+	 */
+	public BalancerOptions poolResources(PoolResources poolResources) {
+		this.poolResources = Objects.requireNonNull(poolResources, "poolResources");
+		return this;
+	}
+
+	/**
+	 * Return a copy of these options
+	 *
+	 * @return a copy of these options
+	 */
+	public BalancerOptions duplicate() {
+		return new BalancerOptions(this);
+	}
+
+	/**
+	 * Return the endpoints to balance connections across
+	 *
+	 * @return the endpoints to balance connections across
+	 */
+	public InetSocketAddress[] endpoints() {
+		return endpoints.clone();
+	}
+
+	/**
+	 * Return true if endpoints are selected by power of two choices
+	 *
+	 * @return true if endpoints are selected by power of two choices
+	 */
+	public boolean isPowerOfTwoChoices() {
+		return powerOfTwoChoices;
+	}
+
+	/**
+	 * Return the number of consecutive failures ejecting an endpoint
+	 *
+	 * @return the number of consecutive failures ejecting an endpoint
+	 */
+	public int maxFailures() {
+		return maxFailures;
+	}
+
+	/**
+	 * Return the time an endpoint stays ejected
+	 *
+	 * @return the time an endpoint stays ejected
+	 */
+	public Duration ejectionTime() {
+		return ejectionTime;
+	}
+
+	/**
+	 * Return the {@link PoolResources} pooling connections per endpoint if set
+	 *
+	 * @return the {@link PoolResources} pooling connections per endpoint if set
+	 */
+	public PoolResources poolResources() {
+		return poolResources;
+	}
+
+	@Override
+	public String toString() {
+		return "BalancerOptions{" + "endpoints=" + Arrays.toString(endpoints) + ", powerOfTwoChoices=" + powerOfTwoChoices + ", maxFailures=" + maxFailures + ", ejectionTime=" + ejectionTime + ", poolResources=" + poolResources + '}';
+	}
+}
@@ -0,0 +1,545 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package reactor.ipc.netty.resources;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.pool.ChannelPool;
+import io.netty.channel.pool.ChannelPoolHandler;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+/**
+ * A {@link ChannelPool} bounding its connections and pending acquires, failing
+ * acquires waiting beyond a timeout, and closing connections idle or alive for too
+ * long. Idle connections are leased in LIFO or FIFO order. Expired and closed idle
+ * connections are evicted on acquire and by a periodic sweep.
+ *
+ * @author agent
+ */
+final class BoundedChannelPool implements ChannelPool {
+
+	final Bootstrap          bootstrap;
+	final ChannelPoolHandler handler;
+	final PoolOptions        options;
+	final long               maxIdleNanos;
+	final long               maxLifeNanos;
+	final int                minIdle;
+	final Deque<Slot>        idle;
+	final Deque<Pending>     pending;
+	final ScheduledFuture<?> evictionTask;
+
+	int     total;
+	int     warming;
+	boolean closed;
+
+	BoundedChannelPool(Bootstrap bootstrap,
+			ChannelPoolHandler handler,
+			PoolOptions options) {
+		this.handler = handler;
+		this.options = options.duplicate();
+		this.maxIdleNanos = options.maxIdleTime() != null ? options.maxIdleTime()
+		                                                           .toNanos() : 0L;
+		this.maxLifeNanos = options.maxLifeTime() != null ? options.maxLifeTime()
+		                                                           .toNanos() : 0L;
+		this.minIdle = Math.min(options.minIdle(), options.maxConnections());
+		this.idle = new ArrayDeque<>();
+		this.pending = new ArrayDeque<>();
+		this.bootstrap = bootstrap.clone()
+		                          .handler(new ChannelInitializer<Channel>() {
+			                          @Override
+			                          protected void initChannel(Channel ch)
+					                          throws Exception {
+				                          handler.channelCreated(ch);
+			                          }
+		                          });
+
+		long sweepNanos = Math.min(maxIdleNanos > 0L ? maxIdleNanos : Long.MAX_VALUE,
+				maxLifeNanos > 0L ? maxLifeNanos : Long.MAX_VALUE);
+		if (sweepNanos != Long.MAX_VALUE) {
+			sweepNanos = Math.max(sweepNanos / 2, MIN_SWEEP_NANOS);
+		}
+		else if (minIdle > 0) {
+			sweepNanos = REFILL_NANOS;
+		}
+		if (sweepNanos != Long.MAX_VALUE) {
+			this.evictionTask = this.bootstrap.config()
+			                                  .group()
+			                                  .next()
+			                                  .scheduleAtFixedRate(this::evict,
+					                                  sweepNanos,
+					                                  sweepNanos,
+					                                  TimeUnit.NANOSECONDS);
+		}
+		else {
+			this.evictionTask = null;
+		}
+	}
+
+	@Override
+	public Future<Channel> acquire() {
+		return acquire(bootstrap.config()
+		                        .group()
+		                        .next()
+		                        .<Channel>newPromise());
+	}
+
+	@Override
+	public Future<Channel> acquire(Promise<Channel> promise) {
+		for (; ; ) {
+			Slot slot;
+			List<Slot> expired = null;
+			Pending waiter = null;
+			synchronized (this) {
+				if (closed) {
+					promise.tryFailure(new IllegalStateException("Pool closed"));
+					return promise;
+				}
+				long now = System.nanoTime();
+				while ((slot = idle.pollFirst()) != null && isExpired(slot, now, idle.size() + 1)) {
+					slot.state = Slot.CLOSED;
+					total--;
+					if (expired == null) {
+						expired = new ArrayList<>();
+					}
+					expired.add(slot);
+				}
+				if (slot != null) {
+					slot.state = Slot.ACQUIRED;
+				}
+				else if (total < options.maxConnections()) {
+					total++;
+					waiter = enqueue(promise);
+				}
+				else if (options.maxPendingAcquires() >= 0 && pending.size() >= options.maxPendingAcquires()) {
+					promise.tryFailure(new IllegalStateException("Pending acquire queue has reached its maximum size of " + options.maxPendingAcquires()));
+					close(expired);
+					return promise;
+				}
+				else {
+					enqueue(promise);
+					close(expired);
+					return promise;
+				}
+			}
+			close(expired);
+			if (waiter != null) {
+				connect(waiter);
+				return promise;
+			}
+			if (!slot.channel.isActive()) {
+				discard(slot);
+				continue;
+			}
+			if (!lease(slot, promise)) {
+				offer(slot);
+			}
+			refill();
+			return promise;
+		}
+	}
+
+	@Override
+	public Future<Void> release(Channel channel) {
+		return release(channel,
+				channel.eventLoop()
+				       .newPromise());
+	}
+
+	@Override
+	public Future<Void> release(Channel channel, Promise<Void> promise) {
+		Slot slot = channel.attr(SLOT)
+		                   .get();
+		if (slot == null || slot.pool != this) {
+			channel.close();
+			promise.tryFailure(new IllegalArgumentException("Channel " + channel + " was not acquired from this pool"));
+			return promise;
+		}
+		try {
+			handler.channelReleased(channel);
+		}
+		catch (Throwable t) {
+			discard(slot);
+			promise.tryFailure(t);
+			return promise;
+		}
+		offer(slot);
+		promise.trySuccess(null);
+		return promise;
+	}
+
+	@Override
+	public void close() {
+		List<Slot> idleSlots;
+		List<Pending> waiters;
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			idleSlots = new ArrayList<>(idle);
+			waiters = new ArrayList<>(pending);
+			idle.clear();
+			pending.clear();
+			for (Slot slot : idleSlots) {
+				slot.state = Slot.CLOSED;
+				total--;
+			}
+		}
+		if (evictionTask != null) {
+			evictionTask.cancel(false);
+		}
+		close(idleSlots);
+		for (Pending waiter : waiters) {
+			waiter.cancelTimeout();
+			waiter.promise.tryFailure(new IllegalStateException("Pool closed"));
+		}
+	}
+
+	/**
+	 * Close the idle connections that expired and reopen the minimum idle connections,
+	 * called periodically if a maximum idle or life time or a minimum idle count is
+	 * set.
+	 */
+	final void evict() {
+		List<Slot> expired = null;
+		synchronized (this) {
+			long now = System.nanoTime();
+			for (Iterator<Slot> it = idle.iterator(); it.hasNext(); ) {
+				Slot slot = it.next();
+				if (isExpired(slot, now, idle.size())) {
+					it.remove();
+					slot.state = Slot.CLOSED;
+					total--;
+					if (expired == null) {
+						expired = new ArrayList<>();
+					}
+					expired.add(slot);
+				}
+			}
+		}
+		if (expired != null) {
+			if (log.isDebugEnabled()) {
+				log.debug("Evicting {} expired connections to {}",
+						expired.size(),
+						bootstrap.config()
+						         .remoteAddress());
+			}
+			close(expired);
+			drain();
+		}
+		refill();
+	}
+
+	/**
+	 * Return true if the given idle connection is too old, the minimum idle connections
+	 * being only subject to the maximum life time.
+	 */
+	final boolean isExpired(Slot slot, long now, int idleCount) {
+		return (maxLifeNanos > 0L && now - slot.createdAt >= maxLifeNanos) || (maxIdleNanos > 0L && idleCount > minIdle && now - slot.releasedAt >= maxIdleNanos);
+	}
+
+	/**
+	 * Open connections in the background until the pool holds the minimum idle
+	 * connections, unless acquires are pending or the pool is saturated. First called
+	 * once the pool is published rather than on construction, so that a pool losing a
+	 * creation race does not open connections only to close them.
+	 */
+	final void refill() {
+		int missing;
+		synchronized (this) {
+			if (closed || !pending.isEmpty()) {
+				return;
+			}
+			missing = Math.min(minIdle - idle.size() - warming,
+					options.maxConnections() - total);
+			if (missing <= 0) {
+				return;
+			}
+			total += missing;
+			warming += missing;
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("Opening {} idle connections to {}",
+					missing,
+					bootstrap.config()
+					         .remoteAddress());
+		}
+		for (int i = 0; i < missing; i++) {
+			connect(null);
+		}
+	}
+
+	/**
+	 * Queue an acquire and schedule its timeout if any, must be called under this pool
+	 * lock.
+	 */
+	final Pending enqueue(Promise<Channel> promise) {
+		Pending waiter = new Pending(promise);
+		pending.addLast(waiter);
+		if (options.acquireTimeout() != null) {
+			long timeout = options.acquireTimeout()
+			                      .toMillis();
+			EventExecutor executor = bootstrap.config()
+			                                  .group()
+			                                  .next();
+			waiter.timeout = executor.schedule(() -> {
+				boolean removed;
+				synchronized (this) {
+					removed = pending.remove(waiter);
+				}
+				if (removed) {
+					promise.tryFailure(new TimeoutException("Acquire has timed out after " + timeout + "ms"));
+				}
+			}, timeout, TimeUnit.MILLISECONDS);
+		}
+		return waiter;
+	}
+
+	/**
+	 * Open a connection for the given pending acquire, or a background idle connection
+	 * if null.
+	 */
+	final void connect(Pending waiter) {
+		bootstrap.connect()
+		         .addListener((ChannelFutureListener) f -> {
+			         if (waiter == null) {
+				         synchronized (this) {
+					         warming--;
+				         }
+			         }
+			         if (!f.isSuccess()) {
+				         boolean removed;
+				         synchronized (this) {
+					         total--;
+					         removed = waiter != null && pending.remove(waiter);
+				         }
+				         if (waiter == null && log.isDebugEnabled()) {
+					         log.debug("Failed opening idle connection to {}",
+							         bootstrap.config()
+							                  .remoteAddress(),
+							         f.cause());
+				         }
+				         if (removed) {
+					         waiter.cancelTimeout();
+					         waiter.promise.tryFailure(f.cause());
+				         }
+				         drain();
+				         return;
+			         }
+			         Slot slot = new Slot(this, f.channel());
+			         f.channel()
+			          .attr(SLOT)
+			          .set(slot);
+			         f.channel()
+			          .closeFuture()
+			          .addListener(c -> onClose(slot));
+			         //a new connection enters the pool idle, lease() then notifies
+			         // its acquisition
+			         try {
+				         handler.channelReleased(f.channel());
+			         }
+			         catch (Throwable t) {
+				         log.error("Failed pooling new connection {}", f.channel(), t);
+				         discard(slot);
+				         return;
+			         }
+			         offer(slot);
+		         });
+	}
+
+	/**
+	 * Hand an acquired or new connection to the oldest pending acquire or return it
+	 * idle to the pool, unless the pool is closed or the connection closed or too old.
+	 */
+	final void offer(Slot slot) {
+		for (; ; ) {
+			Pending waiter;
+			synchronized (this) {
+				if (closed || !slot.channel.isActive() || (maxLifeNanos > 0L && System.nanoTime() - slot.createdAt >= maxLifeNanos)) {
+					waiter = null;
+				}
+				else {
+					waiter = pending.pollFirst();
+					if (waiter == null) {
+						slot.state = Slot.IDLE;
+						slot.releasedAt = System.nanoTime();
+						if (options.isLifo()) {
+							idle.addFirst(slot);
+						}
+						else {
+							idle.addLast(slot);
+						}
+						return;
+					}
+					slot.state = Slot.ACQUIRED;
+				}
+			}
+			if (waiter == null) {
+				discard(slot);
+				return;
+			}
+			waiter.cancelTimeout();
+			if (lease(slot, waiter.promise)) {
+				return;
+			}
+		}
+	}
+
+	final boolean lease(Slot slot, Promise<Channel> promise) {
+		try {
+			handler.channelAcquired(slot.channel);
+		}
+		catch (Throwable t) {
+			discard(slot);
+			promise.tryFailure(t);
+			return true;
+		}
+		if (promise.trySuccess(slot.channel)) {
+			return true;
+		}
+		//the acquire was cancelled
+		try {
+			handler.channelReleased(slot.channel);
+		}
+		catch (Throwable t) {
+			log.error("Failed releasing cancelled acquire of {}", slot.channel, t);
+		}
+		return false;
+	}
+
+	/**
+	 * Free the slot of a connection closed while idle or acquired, the CLOSED state
+	 * guarding against counting it twice when it is later released or discarded.
+	 */
+	final void onClose(Slot slot) {
+		synchronized (this) {
+			if (slot.state == Slot.CLOSED) {
+				return;
+			}
+			if (slot.state == Slot.IDLE) {
+				idle.remove(slot);
+			}
+			slot.state = Slot.CLOSED;
+			total--;
+		}
+		drain();
+		refill();
+	}
+
+	final void discard(Slot slot) {
+		synchronized (this) {
+			if (slot.state == Slot.CLOSED) {
+				return;
+			}
+			if (slot.state == Slot.IDLE) {
+				idle.remove(slot);
+			}
+			slot.state = Slot.CLOSED;
+			total--;
+		}
+		slot.channel.close();
+		drain();
+		refill();
+	}
+
+	/**
+	 * Open a connection for the oldest pending acquire if the pool has room.
+	 */
+	final void drain() {
+		Pending waiter;
+		synchronized (this) {
+			if (closed || pending.isEmpty() || total >= options.maxConnections()) {
+				return;
+			}
+			total++;
+			waiter = pending.peekFirst();
+		}
+		connect(waiter);
+	}
+
+	static void close(List<Slot> slots) {
+		if (slots != null) {
+			for (Slot slot : slots) {
+				slot.channel.close();
+			}
+		}
+	}
+
+	static final class Slot {
+
+		static final int ACQUIRED = 0;
+		static final int IDLE     = 1;
+		static final int CLOSED   = 2;
+
+		final BoundedChannelPool pool;
+		final Channel            channel;
+		final long               createdAt;
+
+		long releasedAt;
+		int  state;
+
+		Slot(BoundedChannelPool pool, Channel channel) {
+			this.pool = pool;
+			this.channel = channel;
+			this.createdAt = System.nanoTime();
+			this.releasedAt = createdAt;
+			this.state = ACQUIRED;
+		}
+	}
+
+	static final class Pending {
+
+		final Promise<Channel> promise;
+
+		ScheduledFuture<?> timeout;
+
+		Pending(Promise<Channel> promise) {
+			this.promise = promise;
+		}
+
+		void cancelTimeout() {
+			ScheduledFuture<?> timeout = this.timeout;
+			if (timeout != null) {
+				timeout.cancel(false);
+			}
+		}
+	}
+
+	static final long MIN_SWEEP_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+	static final long REFILL_NANOS    = TimeUnit.SECONDS.toNanos(1);
+
+	static final AttributeKey<Slot> SLOT = AttributeKey.newInstance("poolSlot");
+
+	static final Logger log = Loggers.getLogger(BoundedChannelPool.class);
+}
@@ -16,19 +16,35 @@
 
 package reactor.ipc.netty.resources;
 
+import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiFunction;
 import java.util.function.Supplier;
 
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
 import io.netty.channel.pool.ChannelPool;
 import io.netty.channel.pool.ChannelPoolHandler;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ImmediateEventExecutor;
 import io.netty.util.concurrent.Promise;
 import io.netty.util.internal.PlatformDependent;
+import reactor.ipc.netty.options.ClientOptions;
 import reactor.util.Logger;
 import reactor.util.Loggers;
 
@@ -40,63 +56,332 @@ final class DefaultPoolResources implements PoolResources {
 	final ConcurrentMap<SocketAddress, Pool>                     channelPools;
 	final String                                                 name;
 	final BiFunction<Bootstrap, ChannelPoolHandler, ChannelPool> provider;
+	final int                                                    maxPools;
+	final long                                                   maxPoolIdleNanos;
+	/**
+	 * The pools in least recently selected order if their number or idle time is
+	 * bounded, null otherwise. Also guards pool creation and removal in that case.
+	 */
+	final LinkedHashMap<SocketAddress, Pool>                     accessOrder;
+
+	long nextSweep;
 
 	DefaultPoolResources(String name,
 			BiFunction<Bootstrap, ChannelPoolHandler, ChannelPool> provider) {
+		this(name, provider, -1, null);
+	}
+
+	DefaultPoolResources(String name,
+			BiFunction<Bootstrap, ChannelPoolHandler, ChannelPool> provider,
+			int maxPools,
+			Duration maxPoolIdleTime) {
 		this.name = name;
 		this.provider = provider;
+		this.maxPools = maxPools;
+		this.maxPoolIdleNanos = maxPoolIdleTime != null ? maxPoolIdleTime.toNanos() : 0L;
+		this.nextSweep = System.nanoTime() + maxPoolIdleNanos;
 		this.channelPools = PlatformDependent.newConcurrentHashMap();
+		this.accessOrder = maxPools > 0 || maxPoolIdleNanos > 0L ?
+				new LinkedHashMap<>(16, 0.75f, true) : null;
 	}
 
 	@Override
 	public ChannelPool selectOrCreate(SocketAddress remote,
 			Supplier<? extends Bootstrap> bootstrap) {
 		SocketAddress address = remote;
+		Bootstrap b = null;
+		if (address == null) {
+			b = bootstrap.get();
+			address = b.config()
+			           .remoteAddress();
+		}
+		Bootstrap created = b;
+		return select(key(address, bootstrap),
+				() -> created != null ? created : bootstrap.get()
+				                                           .remoteAddress(remote));
+	}
+
+	final Pool select(SocketAddress key, Supplier<? extends Bootstrap> bootstrap) {
+		if (accessOrder != null) {
+			return selectBounded(key, bootstrap);
+		}
 		for (; ; ) {
-			Pool pool = channelPools.get(remote);
+			Pool pool = channelPools.get(key);
 			if (pool != null) {
 				return pool;
 			}
-			//pool = new SimpleChannelPool(bootstrap);
-			Bootstrap b = bootstrap.get();
-			if (remote != null) {
-				b = b.remoteAddress(remote);
-			}
-			else {
-				address = b.config()
-				          .remoteAddress();
-			}
 			if (log.isDebugEnabled()) {
-				log.debug("New {} client pool for {}", name, address);
+				log.debug("New {} client pool for {}", name, key);
 			}
-			pool = new Pool(b, provider);
-			if (channelPools.putIfAbsent(address, pool) == null) {
+			pool = new Pool(this, key, bootstrap.get(), provider);
+			if (channelPools.putIfAbsent(key, pool) == null) {
+				pool.start();
 				return pool;
 			}
 			pool.close();
 		}
 	}
 
+	/**
+	 * Select or create a pool under the {@link #accessOrder} lock, removing the pools
+	 * idle for too long and the least recently used pools beyond {@link #maxPools}.
+	 */
+	final Pool selectBounded(SocketAddress key, Supplier<? extends Bootstrap> bootstrap) {
+		List<Pool> removed;
+		Pool pool;
+		boolean created = false;
+		synchronized (accessOrder) {
+			long now = System.nanoTime();
+			removed = sweep(now);
+			pool = accessOrder.get(key);
+			if (pool == null) {
+				if (log.isDebugEnabled()) {
+					log.debug("New {} client pool for {}", name, key);
+				}
+				pool = new Pool(this, key, bootstrap.get(), provider);
+				accessOrder.put(key, pool);
+				channelPools.put(key, pool);
+				created = true;
+				if (maxPools > 0) {
+					removed = evictLeastRecentlyUsed(removed);
+				}
+			}
+			pool.lastAccess = now;
+		}
+		if (removed != null) {
+			for (Pool r : removed) {
+				r.evict();
+			}
+		}
+		if (created) {
+			pool.start();
+		}
+		return pool;
+	}
+
+	/**
+	 * Remove the pools left without connection nor pending acquire for longer than
+	 * the maximum pool idle time, at most every half maximum pool idle time. Must be
+	 * called under the {@link #accessOrder} lock.
+	 *
+	 * @return the removed pools to close, added to the given list if any
+	 */
+	final List<Pool> sweep(long now) {
+		if (maxPoolIdleNanos <= 0L || now - nextSweep < 0L) {
+			return null;
+		}
+		nextSweep = now + maxPoolIdleNanos / 2;
+		List<Pool> removed = null;
+		for (Iterator<Pool> it = accessOrder.values()
+		                                   .iterator(); it.hasNext(); ) {
+			Pool pool = it.next();
+			//the following pools have all been selected more recently
+			if (now - pool.lastAccess < maxPoolIdleNanos) {
+				break;
+			}
+			if (pool.isEmpty()) {
+				it.remove();
+				removed = remove(pool, removed);
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Remove the least recently used pools beyond {@link #maxPools}, preferring pools
+	 * without any connection and never removing a pool with pending acquires. The
+	 * limit is exceeded until such a pool can be removed. Must be called under the
+	 * {@link #accessOrder} lock.
+	 *
+	 * @return the removed pools to close, added to the given list if any
+	 */
+	final List<Pool> evictLeastRecentlyUsed(List<Pool> removed) {
+		while (accessOrder.size() > maxPools) {
+			Pool lru = null;
+			//the most recently used pool is the one just created
+			int candidates = accessOrder.size() - 1;
+			for (Pool pool : accessOrder.values()) {
+				if (candidates-- == 0) {
+					break;
+				}
+				if (pool.isEmpty()) {
+					lru = pool;
+					break;
+				}
+				if (lru == null && pool.pendingAcquires() == 0) {
+					lru = pool;
+				}
+			}
+			if (lru == null) {
+				if (log.isDebugEnabled()) {
+					log.debug("No {} client pool can be removed, now {} pools",
+							name,
+							accessOrder.size());
+				}
+				return removed;
+			}
+			accessOrder.remove(lru.key);
+			removed = remove(lru, removed);
+		}
+		return removed;
+	}
+
+	final List<Pool> remove(Pool pool, List<Pool> removed) {
+		channelPools.remove(pool.key, pool);
+		if (log.isDebugEnabled()) {
+			log.debug("Removing {} client pool for {}", name, pool.key);
+		}
+		if (removed == null) {
+			removed = new ArrayList<>();
+		}
+		removed.add(pool);
+		return removed;
+	}
+
+	/**
+	 * Return the pool key of a remote address: its canonical form, along with the
+	 * canonical proxy address if the given {@link ClientOptions} use a proxy so that
+	 * proxied and direct connections to the same remote are never pooled together.
+	 */
+	static SocketAddress key(SocketAddress address,
+			Supplier<? extends Bootstrap> bootstrap) {
+		SocketAddress key = canonical(address);
+		if (bootstrap instanceof ClientOptions) {
+			InetSocketAddress proxy = ((ClientOptions) bootstrap).getProxyAddress();
+			if (proxy != null) {
+				return new ProxiedAddress(key, canonical(proxy));
+			}
+		}
+		return key;
+	}
+
+	/**
+	 * Return the canonical form of a remote address: an unresolved lower case host
+	 * and port for an {@link InetSocketAddress}, whether resolved or not, or the
+	 * address itself.
+	 */
+	static SocketAddress canonical(SocketAddress address) {
+		if (address instanceof InetSocketAddress) {
+			InetSocketAddress inet = (InetSocketAddress) address;
+			return InetSocketAddress.createUnresolved(inet.getHostString()
+			                                              .toLowerCase(Locale.ROOT),
+					inet.getPort());
+		}
+		return address;
+	}
+
+	/**
+	 * The pool key of a remote address reached through a proxy
+	 */
+	static final class ProxiedAddress extends SocketAddress {
+
+		final SocketAddress address;
+		final SocketAddress proxy;
+
+		ProxiedAddress(SocketAddress address, SocketAddress proxy) {
+			this.address = address;
+			this.proxy = proxy;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof ProxiedAddress)) {
+				return false;
+			}
+			ProxiedAddress that = (ProxiedAddress) o;
+			return address.equals(that.address) && proxy.equals(that.proxy);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * address.hashCode() + proxy.hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return address + " via " + proxy;
+		}
+	}
+
 	final static class Pool extends AtomicBoolean
-			implements ChannelPoolHandler, ChannelPool {
+			implements ChannelPoolHandler, ChannelPool, PoolMetrics {
 
-		final ChannelPool pool;
+		final DefaultPoolResources parent;
+		final SocketAddress        key;
+		final Bootstrap            bootstrap;
+		final ChannelPool          pool;
+		final EventLoopGroup       group;
 
-		int activeConnections;
+		volatile long    lastAccess;
+		volatile boolean retired;
 
-		Pool(Bootstrap bootstrap,
+		final LongAdder   total    = new LongAdder();
+		final LongAdder   active   = new LongAdder();
+		final LongAdder   pending  = new LongAdder();
+		final LongAdder   created  = new LongAdder();
+		final LongAdder   closed   = new LongAdder();
+		final LongAdder   evicted  = new LongAdder();
+		final LongAdder   acquired = new LongAdder();
+		final LongAdder   failed   = new LongAdder();
+		final LongAdder[] latency  = new LongAdder[ACQUIRE_LATENCY_BUCKETS];
+
+		Pool(DefaultPoolResources parent,
+				SocketAddress key,
+				Bootstrap bootstrap,
 				BiFunction<Bootstrap, ChannelPoolHandler, ChannelPool> provider) {
+			for (int i = 0; i < latency.length; i++) {
+				latency[i] = new LongAdder();
+			}
+			this.parent = parent;
+			this.key = key;
+			this.bootstrap = bootstrap;
+			this.group = bootstrap.config()
+			                      .group();
 			this.pool = provider.apply(bootstrap, this);
 		}
 
 		@Override
 		public Future<Channel> acquire() {
-			return pool.acquire();
+			return acquire(executor().<Channel>newPromise());
 		}
 
 		@Override
 		public Future<Channel> acquire(Promise<Channel> promise) {
-			return pool.acquire(promise);
+			if (retired) {
+				//removed after being selected, acquire from its replacement
+				return parent.select(key, bootstrap::clone)
+				             .acquire(promise);
+			}
+			long start = System.nanoTime();
+			pending.increment();
+			//complete the caller promise only once the counters are updated, from the
+			// thread completing the acquire rather than hopping to another event loop
+			Future<Channel> f = pool.acquire(ImmediateEventExecutor.INSTANCE.<Channel>newPromise());
+			promise.addListener(p -> {
+				if (p.isCancelled()) {
+					f.cancel(false);
+				}
+			});
+			f.addListener(future -> {
+				onAcquired(future, start);
+				if (!future.isSuccess()) {
+					if (retired) {
+						//closed by an eviction racing with this acquire
+						parent.select(key, bootstrap::clone)
+						      .acquire(promise);
+					}
+					else {
+						promise.tryFailure(future.cause());
+					}
+				}
+				else if (!promise.trySuccess(f.getNow())) {
+					release(f.getNow());
+				}
+			});
+			return promise;
 		}
 
 		@Override
@@ -109,6 +394,25 @@ final class DefaultPoolResources implements PoolResources {
 			return pool.release(channel, promise);
 		}
 
+		/**
+		 * Start the background work of the pool once it has been published, e.g. opening
+		 * the minimum idle connections of a {@link BoundedChannelPool}.
+		 */
+		final void start() {
+			if (pool instanceof BoundedChannelPool) {
+				((BoundedChannelPool) pool).refill();
+			}
+		}
+
+		/**
+		 * Close this pool removed by the idle sweep or the least recently used
+		 * eviction, redirecting later acquires to a new pool.
+		 */
+		final void evict() {
+			retired = true;
+			close();
+		}
+
 		@Override
 		public void close() {
 			if(compareAndSet(false, true)) {
@@ -118,43 +422,159 @@ final class DefaultPoolResources implements PoolResources {
 
 		@Override
 		public void channelReleased(Channel ch) throws Exception {
-			activeConnections--;
+			if (ch.attr(ACQUIRED)
+			      .getAndSet(null) != null) {
+				active.decrement();
+			}
 			if (log.isDebugEnabled()) {
 				log.debug("Released {}, now {} active connections",
 						ch.toString(),
-						activeConnections);
+						activeConnections());
 			}
 		}
 
 		@Override
 		public void channelAcquired(Channel ch) throws Exception {
-			activeConnections++;
+			markAcquired(ch);
 			if (log.isDebugEnabled()) {
 				log.debug("Acquired {}, now {} active connections",
 						ch.toString(),
-						activeConnections);
+						activeConnections());
 			}
 		}
 
 		@Override
 		public void channelCreated(Channel ch) throws Exception {
-			activeConnections++;
+			created.increment();
+			total.increment();
+			ch.closeFuture()
+			  .addListener(f -> {
+				  total.decrement();
+				  closed.increment();
+				  if (ch.attr(ACQUIRED)
+				        .get() == null) {
+					  evicted.increment();
+				  }
+			  });
+			//a new connection is handed over to its acquirer, some pools also
+			// notify channelAcquired for it: markAcquired only counts it once.
+			markAcquired(ch);
 			if (log.isDebugEnabled()) {
 				log.debug("Created {}, now {} active connections",
 						ch.toString(),
-						activeConnections);
+						activeConnections());
 			}
 		}
 
+		@Override
+		public int totalConnections() {
+			return total.intValue();
+		}
+
+		@Override
+		public int activeConnections() {
+			return active.intValue();
+		}
+
+		@Override
+		public int idleConnections() {
+			return Math.max(0, totalConnections() - activeConnections());
+		}
+
+		@Override
+		public int pendingAcquires() {
+			return pending.intValue();
+		}
+
+		@Override
+		public long createdConnections() {
+			return created.sum();
+		}
+
+		@Override
+		public long closedConnections() {
+			return closed.sum();
+		}
+
+		@Override
+		public long evictedConnections() {
+			return evicted.sum();
+		}
+
+		@Override
+		public long acquiredConnections() {
+			return acquired.sum();
+		}
+
+		@Override
+		public long failedAcquires() {
+			return failed.sum();
+		}
+
+		@Override
+		public long[] acquireLatencyHistogram() {
+			long[] histogram = new long[latency.length];
+			for (int i = 0; i < histogram.length; i++) {
+				histogram[i] = latency[i].sum();
+			}
+			return histogram;
+		}
+
+		/**
+		 * Return the calling event loop if it belongs to the pool event loops, or the
+		 * next event loop.
+		 */
+		final EventExecutor executor() {
+			for (EventExecutor executor : group) {
+				if (executor.inEventLoop()) {
+					return executor;
+				}
+			}
+			return group.next();
+		}
+
+		final boolean isEmpty() {
+			return total.sum() == 0L && active.sum() == 0L && pending.sum() == 0L;
+		}
+
+		final void markAcquired(Channel ch) {
+			if (ch.attr(ACQUIRED)
+			      .getAndSet(Boolean.TRUE) == null) {
+				active.increment();
+			}
+		}
+
+		final void onAcquired(Future<?> f, long start) {
+			pending.decrement();
+			if (!f.isSuccess()) {
+				failed.increment();
+				return;
+			}
+			acquired.increment();
+			long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			int bucket = millis == 0L ? 0 : 64 - Long.numberOfLeadingZeros(millis);
+			latency[Math.min(bucket, latency.length - 1)].increment();
+		}
+
 		@Override
 		public String toString() {
 			return pool.getClass()
-			           .getSimpleName() + "{" + "activeConnections=" + activeConnections + '}';
+			           .getSimpleName() + "{" + "totalConnections=" + totalConnections() + ", activeConnections=" + activeConnections() + ", pendingAcquires=" + pendingAcquires() + '}';
 		}
 	}
 
+	@Override
+	public Map<SocketAddress, PoolMetrics> metrics() {
+		return Collections.unmodifiableMap(channelPools);
+	}
+
 	@Override
 	public void dispose() {
+		if (accessOrder != null) {
+			synchronized (accessOrder) {
+				accessOrder.clear();
+			}
+		}
 		Pool pool;
 		for (SocketAddress key: channelPools.keySet()) {
 			pool = channelPools.remove(key);
@@ -164,6 +584,9 @@ final class DefaultPoolResources implements PoolResources {
 		}
 	}
 
+	static final AttributeKey<Boolean> ACQUIRED =
+			AttributeKey.newInstance("poolAcquired");
+
 	static final Logger log = Loggers.getLogger(DefaultPoolResources.class);
 
 }
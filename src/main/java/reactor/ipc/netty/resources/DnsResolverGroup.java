@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package reactor.ipc.netty.resources;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentMap;
+
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.resolver.AddressResolver;
+import io.netty.resolver.AddressResolverGroup;
+import io.netty.resolver.InetNameResolver;
+import io.netty.resolver.dns.DefaultDnsCache;
+import io.netty.resolver.dns.DnsCache;
+import io.netty.resolver.dns.DnsNameResolver;
+import io.netty.resolver.dns.DnsNameResolverBuilder;
+import io.netty.resolver.dns.DnsServerAddresses;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.internal.PlatformDependent;
+
+/**
+ * An {@link AddressResolverGroup} resolving host names with asynchronous DNS queries
+ * sent from the event loop of the connecting channel, instead of blocking JDK lookups.
+ * All its resolvers share:
+ * <ul>
+ *     <li>a cache honoring the record TTL within configured bounds</li>
+ *     <li>a negative cache for names that failed to resolve</li>
+ *     <li>the in-flight lookups, concurrent resolutions of the same name waiting for
+ *     a single query</li>
+ * </ul>
+ * Use with {@link reactor.ipc.netty.options.ClientOptions#resolver(AddressResolverGroup)}.
+ *
+ * @author agent
+ */
+public final class DnsResolverGroup extends AddressResolverGroup<InetSocketAddress> {
+
+	/**
+	 * Default minimum time a resolved address is cached, whatever its record TTL
+	 */
+	public static final Duration DEFAULT_MIN_TTL      = Duration.ZERO;
+	/**
+	 * Default maximum time a resolved address is cached, whatever its record TTL
+	 */
+	public static final Duration DEFAULT_MAX_TTL      = Duration.ofMinutes(5);
+	/**
+	 * Default time a resolution failure is cached
+	 */
+	public static final Duration DEFAULT_NEGATIVE_TTL = Duration.ofSeconds(10);
+
+	/**
+	 * Create a {@link DnsResolverGroup} querying the system name servers with default
+	 * cache durations.
+	 *
+	 * @return a new {@link DnsResolverGroup}
+	 */
+	public static DnsResolverGroup create() {
+		return new DnsResolverGroup(DEFAULT_MIN_TTL,
+				DEFAULT_MAX_TTL,
+				DEFAULT_NEGATIVE_TTL,
+				DnsServerAddresses.defaultAddresses());
+	}
+
+	/**
+	 * Create a {@link DnsResolverGroup} querying the given name servers in sequence
+	 * with default cache durations.
+	 *
+	 * @param nameServers the name servers to query
+	 *
+	 * @return a new {@link DnsResolverGroup}
+	 */
+	public static DnsResolverGroup create(InetSocketAddress... nameServers) {
+		return create(DEFAULT_MIN_TTL, DEFAULT_MAX_TTL, DEFAULT_NEGATIVE_TTL, nameServers);
+	}
+
+	/**
+	 * Create a {@link DnsResolverGroup} querying the given name servers in sequence, or
+	 * the system ones if none are given.
+	 *
+	 * @param minTtl the minimum time a resolved address is cached
+	 * @param maxTtl the maximum time a resolved address is cached
+	 * @param negativeTtl the time a resolution failure is cached
+	 * @param nameServers the name servers to query, the system ones if empty
+	 *
+	 * @return a new {@link DnsResolverGroup}
+	 */
+	public static DnsResolverGroup create(Duration minTtl,
+			Duration maxTtl,
+			Duration negativeTtl,
+			InetSocketAddress... nameServers) {
+		Objects.requireNonNull(nameServers, "nameServers");
+		return new DnsResolverGroup(minTtl,
+				maxTtl,
+				negativeTtl,
+				nameServers.length == 0 ? DnsServerAddresses.defaultAddresses() :
+						DnsServerAddresses.sequential(nameServers));
+	}
+
+	final DnsCache                                          cache;
+	final DnsServerAddresses                                nameServers;
+	final ConcurrentMap<String, Promise<List<InetAddress>>> inflight;
+
+	DnsResolverGroup(Duration minTtl,
+			Duration maxTtl,
+			Duration negativeTtl,
+			DnsServerAddresses nameServers) {
+		this.cache = new DefaultDnsCache(seconds(minTtl, "minTtl"),
+				seconds(maxTtl, "maxTtl"),
+				seconds(negativeTtl, "negativeTtl"));
+		this.nameServers = nameServers;
+		this.inflight = PlatformDependent.newConcurrentHashMap();
+	}
+
+	/**
+	 * Clear the cached resolutions, successful or not.
+	 */
+	public void clearCache() {
+		cache.clear();
+	}
+
+	@Override
+	protected AddressResolver<InetSocketAddress> newResolver(EventExecutor executor)
+			throws Exception {
+		if (!(executor instanceof EventLoop)) {
+			throw new IllegalStateException("unsupported executor type: " + executor.getClass()
+			                                                                        .getName() + " (expected: EventLoop)");
+		}
+		EventLoop loop = (EventLoop) executor;
+		EventLoopGroup group = loop.parent() != null ? loop.parent() : loop;
+		DnsNameResolver resolver = new DnsNameResolverBuilder(loop)
+				.channelType(DefaultLoopEpollDetector.getDatagramChannel(group))
+				.nameServerAddresses(nameServers)
+				.resolveCache(cache)
+				.build();
+		return new CoalescingResolver(loop, resolver).asAddressResolver();
+	}
+
+	static int seconds(Duration duration, String name) {
+		Objects.requireNonNull(duration, name);
+		if (duration.isNegative()) {
+			throw new IllegalArgumentException(name + " must be positive, was: " + duration);
+		}
+		return (int) Math.min(duration.getSeconds(), Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Resolve through the event loop {@link DnsNameResolver}, unless the same name is
+	 * already being resolved by any resolver of this group, in which case the pending
+	 * lookup result is reused.
+	 */
+	final class CoalescingResolver extends InetNameResolver {
+
+		final DnsNameResolver delegate;
+
+		CoalescingResolver(EventLoop loop, DnsNameResolver delegate) {
+			super(loop);
+			this.delegate = delegate;
+		}
+
+		@Override
+		protected void doResolve(String inetHost, Promise<InetAddress> promise)
+				throws Exception {
+			resolveShared(inetHost).addListener((FutureListener<List<InetAddress>>) f -> {
+				if (!f.isSuccess()) {
+					promise.tryFailure(f.cause());
+				}
+				else if (f.getNow()
+				          .isEmpty()) {
+					promise.tryFailure(new UnknownHostException(inetHost));
+				}
+				else {
+					promise.trySuccess(f.getNow()
+					                    .get(0));
+				}
+			});
+		}
+
+		@Override
+		protected void doResolveAll(String inetHost, Promise<List<InetAddress>> promise)
+				throws Exception {
+			resolveShared(inetHost).addListener((FutureListener<List<InetAddress>>) f -> {
+				if (f.isSuccess()) {
+					promise.trySuccess(f.getNow());
+				}
+				else {
+					promise.tryFailure(f.cause());
+				}
+			});
+		}
+
+		@Override
+		public void close() {
+			delegate.close();
+		}
+
+		final Future<List<InetAddress>> resolveShared(String inetHost) {
+			Promise<List<InetAddress>> promise = executor().newPromise();
+			Promise<List<InetAddress>> pending = inflight.putIfAbsent(inetHost, promise);
+			if (pending != null) {
+				return pending;
+			}
+			promise.addListener(f -> inflight.remove(inetHost, promise));
+			delegate.resolveAll(inetHost, promise);
+			return promise;
+		}
+	}
+}
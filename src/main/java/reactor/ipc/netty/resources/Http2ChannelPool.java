@@ -0,0 +1,592 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package reactor.ipc.netty.resources;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.pool.ChannelPool;
+import io.netty.channel.pool.ChannelPoolHandler;
+import io.netty.handler.codec.http.FullHttpMessage;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMessage;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http2.DefaultHttp2Connection;
+import io.netty.handler.codec.http2.Http2Connection;
+import io.netty.handler.codec.http2.Http2ConnectionHandler;
+import io.netty.handler.codec.http2.Http2ConnectionHandlerBuilder;
+import io.netty.handler.codec.http2.Http2Error;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2Stream;
+import io.netty.handler.codec.http2.HttpConversionUtil;
+import io.netty.handler.codec.http2.InboundHttp2ToHttpAdapterBuilder;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.SslHandshakeCompletionEvent;
+import io.netty.util.AsciiString;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.PromiseCombiner;
+import reactor.ipc.netty.NettyPipeline;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+/**
+ * A {@link ChannelPool} leasing HTTP/2 streams rather than connections. Each acquired
+ * {@link Channel} is an {@link Http2StreamChannel} carrying a single request/response
+ * exchange over a shared connection. A new connection is only opened when every
+ * established one has as many leased streams as its peer {@code
+ * SETTINGS_MAX_CONCURRENT_STREAMS} allows. Connections use TLS with ALPN {@literal h2}
+ * negotiation if an {@link SslContext} is given, or cleartext HTTP/2 with prior
+ * knowledge otherwise.
+ *
+ * @author agent
+ */
+final class Http2ChannelPool implements ChannelPool {
+
+	/**
+	 * Maximum size of an HTTP/2 response, aggregated before being dispatched to its
+	 * stream
+	 */
+	static final int MAX_CONTENT_LENGTH = 16 * 1024 * 1024;
+
+	final Bootstrap               bootstrap;
+	final ChannelPoolHandler      handler;
+	final SslContext              sslContext;
+	final List<Connection>        connections;
+	final Queue<Promise<Channel>> pending;
+
+	boolean connecting;
+	boolean closed;
+
+	Http2ChannelPool(Bootstrap bootstrap,
+			ChannelPoolHandler handler,
+			SslContext sslContext) {
+		this.handler = handler;
+		this.sslContext = sslContext;
+		this.connections = new ArrayList<>();
+		this.pending = new ArrayDeque<>();
+		this.bootstrap = bootstrap.clone()
+		                          .handler(new ChannelInitializer<Channel>() {
+			                          @Override
+			                          protected void initChannel(Channel ch)
+					                          throws Exception {
+				                          initConnection(ch);
+			                          }
+		                          });
+	}
+
+	@Override
+	public Future<Channel> acquire() {
+		return acquire(bootstrap.config()
+		                        .group()
+		                        .next()
+		                        .<Channel>newPromise());
+	}
+
+	@Override
+	public Future<Channel> acquire(Promise<Channel> promise) {
+		Connection connection;
+		synchronized (this) {
+			if (closed) {
+				promise.tryFailure(new IllegalStateException("Pool closed"));
+				return promise;
+			}
+			connection = select();
+			if (connection == null) {
+				pending.add(promise);
+				if (!connecting) {
+					connecting = true;
+					connect();
+				}
+				return promise;
+			}
+			connection.leased++;
+		}
+		connection.openStream(promise);
+		return promise;
+	}
+
+	@Override
+	public Future<Void> release(Channel channel) {
+		return release(channel,
+				channel.eventLoop()
+				       .newPromise());
+	}
+
+	@Override
+	public Future<Void> release(Channel channel, Promise<Void> promise) {
+		if (!(channel instanceof Http2StreamChannel) || ((Http2StreamChannel) channel).connection.pool != this) {
+			promise.tryFailure(new IllegalArgumentException("Channel " + channel + " was not acquired from this pool"));
+			return promise;
+		}
+		channel.close()
+		       .addListener(f -> promise.trySuccess(null));
+		return promise;
+	}
+
+	@Override
+	public void close() {
+		List<Connection> connections;
+		List<Promise<Channel>> pending;
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			connections = new ArrayList<>(this.connections);
+			pending = new ArrayList<>(this.pending);
+			this.connections.clear();
+			this.pending.clear();
+		}
+		for (Connection connection : connections) {
+			connection.channel.close();
+		}
+		for (Promise<Channel> promise : pending) {
+			promise.tryFailure(new IllegalStateException("Pool closed"));
+		}
+	}
+
+	final void initConnection(Channel ch) {
+		ChannelPipeline pipeline = ch.pipeline();
+		if (sslContext != null) {
+			SocketAddress remote = bootstrap.config()
+			                                .remoteAddress();
+			if (remote instanceof InetSocketAddress) {
+				InetSocketAddress address = (InetSocketAddress) remote;
+				pipeline.addLast(NettyPipeline.SslHandler,
+						sslContext.newHandler(ch.alloc(),
+								address.getHostString(),
+								address.getPort()));
+			}
+			else {
+				pipeline.addLast(NettyPipeline.SslHandler,
+						sslContext.newHandler(ch.alloc()));
+			}
+		}
+		Http2Connection connection = new DefaultHttp2Connection(false);
+		Http2ConnectionHandler codec = new Http2ConnectionHandlerBuilder()
+				.connection(connection)
+				.frameListener(new InboundHttp2ToHttpAdapterBuilder(connection)
+						.maxContentLength(MAX_CONTENT_LENGTH)
+						.propagateSettings(true)
+						.build())
+				.build();
+		pipeline.addLast(NettyPipeline.HttpCodecHandler, codec);
+		pipeline.addLast(NettyPipeline.Http2Multiplex, new Connection(this, ch, codec));
+	}
+
+	final void connect() {
+		if (log.isDebugEnabled()) {
+			log.debug("Connecting new HTTP/2 connection to {}",
+					bootstrap.config()
+					         .remoteAddress());
+		}
+		bootstrap.connect()
+		         .addListener((ChannelFutureListener) f -> {
+			         if (!f.isSuccess()) {
+				         onConnectFailure(f.cause());
+			         }
+		         });
+	}
+
+	/**
+	 * Select an established connection with a free stream, must be called under this
+	 * pool lock.
+	 *
+	 * @return an established connection with a free stream or null
+	 */
+	final Connection select() {
+		for (Connection connection : connections) {
+			if (connection.leased < connection.maxStreams()) {
+				return connection;
+			}
+		}
+		return null;
+	}
+
+	final void onReady(Connection connection) {
+		synchronized (this) {
+			connecting = false;
+			if (!closed) {
+				connection.ready = true;
+				connections.add(connection);
+			}
+		}
+		if (!connection.ready) {
+			connection.channel.close();
+			return;
+		}
+		drain();
+	}
+
+	final void onConnectFailure(Throwable cause) {
+		List<Promise<Channel>> failed;
+		synchronized (this) {
+			connecting = false;
+			failed = new ArrayList<>(pending);
+			pending.clear();
+		}
+		for (Promise<Channel> promise : failed) {
+			promise.tryFailure(cause);
+		}
+	}
+
+	final void onConnectionClosed(Connection connection) {
+		synchronized (this) {
+			connections.remove(connection);
+		}
+		drain();
+	}
+
+	final void onStreamReleased(Connection connection) {
+		synchronized (this) {
+			connection.leased--;
+		}
+		drain();
+	}
+
+	/**
+	 * Lease streams to pending acquirers as long as connections have capacity, opening
+	 * a new connection if needed.
+	 */
+	final void drain() {
+		List<Connection> selected = null;
+		List<Promise<Channel>> promises = null;
+		synchronized (this) {
+			while (!pending.isEmpty()) {
+				Connection connection = select();
+				if (connection == null) {
+					if (!connecting && !closed) {
+						connecting = true;
+						connect();
+					}
+					break;
+				}
+				connection.leased++;
+				if (selected == null) {
+					selected = new ArrayList<>();
+					promises = new ArrayList<>();
+				}
+				selected.add(connection);
+				promises.add(pending.poll());
+			}
+		}
+		if (selected != null) {
+			for (int i = 0; i < selected.size(); i++) {
+				selected.get(i)
+				        .openStream(promises.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Dispatch the aggregated responses of a multiplexed connection to their stream
+	 * channel and translate the stream channels writes to HTTP/2 frames.
+	 */
+	static final class Connection extends ChannelInboundHandlerAdapter {
+
+		final Http2ChannelPool                pool;
+		final Channel                         channel;
+		final Http2ConnectionHandler          codec;
+		final AsciiString                     scheme;
+		final IntObjectMap<Http2StreamChannel> streams;
+		final Set<Http2StreamChannel>         leases;
+
+		ChannelHandlerContext codecContext;
+		Throwable             failure;
+		int                   leased;
+		boolean               ready;
+
+		Connection(Http2ChannelPool pool, Channel channel, Http2ConnectionHandler codec) {
+			this.pool = pool;
+			this.channel = channel;
+			this.codec = codec;
+			this.scheme = pool.sslContext != null ? HTTPS : HTTP;
+			this.streams = new IntObjectHashMap<>();
+			this.leases = new HashSet<>();
+		}
+
+		@Override
+		public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+			this.codecContext = ctx.pipeline()
+			                       .context(codec);
+		}
+
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+			if (msg instanceof Http2Settings) {
+				if (!ready && failure == null) {
+					pool.onReady(this);
+				}
+				return;
+			}
+			if (msg instanceof HttpMessage) {
+				Http2StreamChannel stream = streams.get(((HttpMessage) msg).headers()
+				                                                           .getInt(STREAM_ID,
+						                                                           0));
+				if (stream != null && stream.isActive()) {
+					stream.pipeline()
+					      .fireChannelRead(msg);
+					stream.pipeline()
+					      .fireChannelReadComplete();
+					return;
+				}
+			}
+			ReferenceCountUtil.release(msg);
+		}
+
+		@Override
+		public void userEventTriggered(ChannelHandlerContext ctx, Object evt)
+				throws Exception {
+			if (evt instanceof SslHandshakeCompletionEvent) {
+				SslHandshakeCompletionEvent handshake = (SslHandshakeCompletionEvent) evt;
+				if (!handshake.isSuccess()) {
+					failure = handshake.cause();
+				}
+				else if (!ApplicationProtocolNames.HTTP_2.equals(ctx.pipeline()
+				                                                   .get(SslHandler.class)
+				                                                   .applicationProtocol())) {
+					failure = new IllegalStateException("HTTP/2 has not been negotiated " +
+							"with " + ctx.channel()
+							             .remoteAddress());
+					ctx.close();
+				}
+			}
+			ctx.fireUserEventTriggered(evt);
+		}
+
+		@Override
+		public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause)
+				throws Exception {
+			log.error("HTTP/2 connection error, closing {}", ctx.channel(), cause);
+			if (failure == null) {
+				failure = cause;
+			}
+			ctx.close();
+		}
+
+		@Override
+		public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+			if (ready) {
+				pool.onConnectionClosed(this);
+			}
+			else {
+				pool.onConnectFailure(failure != null ? failure :
+						new ClosedChannelException());
+			}
+			for (Http2StreamChannel stream : new ArrayList<>(leases)) {
+				stream.close();
+			}
+			ctx.fireChannelInactive();
+		}
+
+		final int maxStreams() {
+			return codec.connection()
+			            .local()
+			            .maxActiveStreams();
+		}
+
+		final void openStream(Promise<Channel> promise) {
+			Http2StreamChannel stream = new Http2StreamChannel(this);
+			channel.eventLoop()
+			       .register(stream)
+			       .addListener((ChannelFutureListener) f -> {
+				       if (!f.isSuccess()) {
+					       pool.onStreamReleased(this);
+					       promise.tryFailure(f.cause());
+					       return;
+				       }
+				       leases.add(stream);
+				       if (!channel.isActive()) {
+					       stream.close();
+					       promise.tryFailure(new ClosedChannelException());
+					       return;
+				       }
+				       if (promise.trySuccess(stream)) {
+					       stream.acquired = true;
+					       pool.handler.channelAcquired(stream);
+				       }
+				       else {
+					       stream.close();
+				       }
+			       });
+		}
+
+		final void onStreamClosed(Http2StreamChannel stream) {
+			leases.remove(stream);
+			if (stream.streamId != 0) {
+				streams.remove(stream.streamId);
+				Http2Stream s = codec.connection()
+				                     .stream(stream.streamId);
+				if (s != null && s.state() != Http2Stream.State.CLOSED && channel.isActive()) {
+					codec.resetStream(codecContext,
+							stream.streamId,
+							Http2Error.CANCEL.code(),
+							codecContext.newPromise());
+					channel.flush();
+				}
+			}
+			if (stream.acquired) {
+				try {
+					pool.handler.channelReleased(stream);
+				}
+				catch (Exception e) {
+					log.error("Failed releasing stream {}", stream, e);
+				}
+			}
+			pool.onStreamReleased(this);
+		}
+
+		/**
+		 * Fail the given stream after a write failure: the stream exchange is errored
+		 * and the stream closed, which resets it and frees it from this connection.
+		 */
+		final void onStreamWriteFailed(Http2StreamChannel stream, Throwable cause) {
+			if (log.isDebugEnabled()) {
+				log.debug("Failed writing on HTTP/2 stream {}", stream, cause);
+			}
+			stream.pipeline()
+			      .fireExceptionCaught(cause);
+			stream.close();
+		}
+
+		/**
+		 * Encode a message written on the given stream.
+		 *
+		 * @return the future of the encoded frames
+		 */
+		final ChannelFuture write(Http2StreamChannel stream, Object msg) {
+			if (msg instanceof HttpMessage) {
+				if (stream.streamId != 0) {
+					throw new IllegalStateException("Headers already sent on stream " + stream.streamId);
+				}
+				HttpMessage message = (HttpMessage) msg;
+				stream.streamId = codec.connection()
+				                       .local()
+				                       .incrementAndGetNextStreamId();
+				streams.put(stream.streamId, stream);
+
+				message.headers()
+				       .set(HttpConversionUtil.ExtensionHeaderNames.SCHEME.text(), scheme);
+				Http2Headers headers = HttpConversionUtil.toHttp2Headers(message, false);
+				String host = message.headers()
+				                     .get(HttpHeaderNames.HOST);
+				if (host != null) {
+					headers.authority(host);
+				}
+
+				ByteBuf content = msg instanceof FullHttpMessage ?
+						((FullHttpMessage) msg).content() : null;
+				if (content != null && content.isReadable()) {
+					ChannelPromise promise = codecContext.newPromise();
+					PromiseCombiner combiner = new PromiseCombiner();
+					combiner.add(writeHeaders(stream, headers, false));
+					combiner.add(writeData(stream, content.retain(), true));
+					combiner.finish(promise);
+					return promise;
+				}
+				//without a declared body, the request ends with its headers
+				return writeHeaders(stream,
+						headers,
+						content != null || (!HttpUtil.isTransferEncodingChunked(
+								message) && HttpUtil.getContentLength(message, 0L) == 0L));
+			}
+			if (stream.streamId == 0) {
+				throw new IllegalStateException("Headers not sent on stream");
+			}
+			if (msg instanceof HttpContent) {
+				return writeData(stream,
+						((HttpContent) msg).content()
+						                   .retain(),
+						msg instanceof LastHttpContent);
+			}
+			if (msg instanceof ByteBuf) {
+				return writeData(stream, ((ByteBuf) msg).retain(), false);
+			}
+			throw new IllegalArgumentException("Unsupported message type on HTTP/2 stream: " + msg.getClass()
+			                                                                                    .getName());
+		}
+
+		final ChannelFuture writeHeaders(Http2StreamChannel stream,
+				Http2Headers headers,
+				boolean endStream) {
+			stream.endStream = endStream;
+			return codec.encoder()
+			            .writeHeaders(codecContext,
+					     stream.streamId,
+					     headers,
+					     0,
+					     endStream,
+					     codecContext.newPromise());
+		}
+
+		final ChannelFuture writeData(Http2StreamChannel stream,
+				ByteBuf data,
+				boolean endStream) {
+			if (stream.endStream) {
+				//the stream already ended, e.g. with the headers of a bodyless request
+				boolean empty = !data.isReadable();
+				data.release();
+				if (empty) {
+					return codecContext.newSucceededFuture();
+				}
+				throw new IllegalStateException("Stream " + stream.streamId + " already ended");
+			}
+			stream.endStream = endStream;
+			return codec.encoder()
+			            .writeData(codecContext,
+					     stream.streamId,
+					     data,
+					     0,
+					     endStream,
+					     codecContext.newPromise());
+		}
+	}
+
+	static final AsciiString STREAM_ID =
+			HttpConversionUtil.ExtensionHeaderNames.STREAM_ID.text();
+	static final AsciiString HTTP      = AsciiString.of("http");
+	static final AsciiString HTTPS     = AsciiString.of("https");
+
+	static final Logger log = Loggers.getLogger(Http2ChannelPool.class);
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package reactor.ipc.netty.resources;
+
+import java.time.Duration;
+
+/**
+ * A live view of the connection counters of a single {@link
+ * io.netty.channel.pool.ChannelPool} held by a {@link PoolResources}. Gauges reflect
+ * the current state, counters are cumulative since the pool creation: sample them
+ * periodically to derive rates.
+ *
+ * @author agent
+ * @since 0.6
+ */
+public interface PoolMetrics {
+
+	/**
+	 * Number of buckets in {@link #acquireLatencyHistogram()}
+	 */
+	int ACQUIRE_LATENCY_BUCKETS = 16;
+
+	/**
+	 * Return the exclusive upper bound of the given {@link #acquireLatencyHistogram()}
+	 * bucket, or {@literal null} for the last unbounded bucket. Bucket {@code i} counts
+	 * acquires completed in less than {@code 2^i} milliseconds and not counted by a
+	 * previous bucket.
+	 *
+	 * @param bucket the bucket index
+	 *
+	 * @return the bucket exclusive upper bound or null if unbounded
+	 */
+	static Duration acquireLatencyUpperBound(int bucket) {
+		if (bucket < 0 || bucket >= ACQUIRE_LATENCY_BUCKETS) {
+			throw new IllegalArgumentException("bucket must be in [0, " + ACQUIRE_LATENCY_BUCKETS + "), was: " + bucket);
+		}
+		if (bucket == ACQUIRE_LATENCY_BUCKETS - 1) {
+			return null;
+		}
+		return Duration.ofMillis(1L << bucket);
+	}
+
+	/**
+	 * Return the number of open connections, idle or active.
+	 *
+	 * @return the number of open connections
+	 */
+	int totalConnections();
+
+	/**
+	 * Return the number of connections currently acquired.
+	 *
+	 * @return the number of connections currently acquired
+	 */
+	int activeConnections();
+
+	/**
+	 * Return the number of open connections waiting in the pool.
+	 *
+	 * @return the number of open connections waiting in the pool
+	 */
+	int idleConnections();
+
+	/**
+	 * Return the number of acquires not yet completed.
+	 *
+	 * @return the number of acquires not yet completed
+	 */
+	int pendingAcquires();
+
+	/**
+	 * Return the cumulative number of connections opened.
+	 *
+	 * @return the cumulative number of connections opened
+	 */
+	long createdConnections();
+
+	/**
+	 * Return the cumulative number of connections closed, including evictions.
+	 *
+	 * @return the cumulative number of connections closed
+	 */
+	long closedConnections();
+
+	/**
+	 * Return the cumulative number of connections closed while idle in the pool, either
+	 * evicted by the pool or by the remote peer.
+	 *
+	 * @return the cumulative number of idle connections closed
+	 */
+	long evictedConnections();
+
+	/**
+	 * Return the cumulative number of successful acquires.
+	 *
+	 * @return the cumulative number of successful acquires
+	 */
+	long acquiredConnections();
+
+	/**
+	 * Return the cumulative number of failed or cancelled acquires.
+	 *
+	 * @return the cumulative number of failed or cancelled acquires
+	 */
+	long failedAcquires();
+
+	/**
+	 * Return a copy of the successful acquire latency histogram, with {@link
+	 * #ACQUIRE_LATENCY_BUCKETS} buckets bounded by {@link #acquireLatencyUpperBound(int)}.
+	 *
+	 * @return a copy of the acquire latency histogram
+	 */
+	long[] acquireLatencyHistogram();
+}
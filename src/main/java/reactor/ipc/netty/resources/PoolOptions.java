@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package reactor.ipc.netty.resources;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Options of the connection pools created by {@link PoolResources#fixed(String,
+ * java.util.function.Consumer)}, applying to each pool of a remote address, and of
+ * the set of remote address pools.
+ *
+ * @author agent
+ */
+public final class PoolOptions {
+
+	/**
+	 * Create new {@link PoolOptions} with default values
+	 *
+	 * @return new {@link PoolOptions}
+	 */
+	public static PoolOptions create() {
+		return new PoolOptions();
+	}
+
+	int      maxConnections     = PoolResources.DEFAULT_POOL_MAX_CONNECTION;
+	int      maxPendingAcquires = -1;
+	int      minIdle            = 0;
+	Duration acquireTimeout     = null;
+	Duration maxIdleTime        = null;
+	Duration maxLifeTime        = null;
+	boolean  lifo               = true;
+	int      maxPools           = -1;
+	Duration maxPoolIdleTime    = null;
+
+	PoolOptions() {
+	}
+
+	PoolOptions(PoolOptions options) {
+		this.maxConnections = options.maxConnections;
+		this.maxPendingAcquires = options.maxPendingAcquires;
+		this.minIdle = options.minIdle;
+		this.acquireTimeout = options.acquireTimeout;
+		this.maxIdleTime = options.maxIdleTime;
+		this.maxLifeTime = options.maxLifeTime;
+		this.lifo = options.lifo;
+		this.maxPools = options.maxPools;
+		this.maxPoolIdleTime = options.maxPoolIdleTime;
+	}
+
+	/**
+	 * Set the maximum number of connections, open or being opened. Further acquires
+	 * wait for a connection to be released.
+	 *
+	 * @param maxConnections the maximum number of connections
+	 *
+	 * @return {@literal this}
+	 */
+	public PoolOptions maxConnections(int maxConnections) {
+		if (maxConnections <= 0) {
+			throw new IllegalArgumentException("maxConnections must be strictly positive, was: " + maxConnections);
+		}
+		this.maxConnections = maxConnections;
+		return this;
+	}
+
+	/**
+	 * Set the maximum number of acquires waiting for a connection once the pool is
+	 * saturated, further acquires failing immediately. Default to -1, unbounded.
+	 *
+	 * @param maxPendingAcquires the maximum number of pending acquires, 0 to fail as
+	 * soon as the pool is saturated or -1 for unbounded
+	 *
+	 * @return {@literal this}
+	 */
+	public PoolOptions maxPendingAcquires(int maxPendingAcquires) {
+		if (maxPendingAcquires < -1) {
+			throw new IllegalArgumentException("maxPendingAcquires must be positive or -1, was: " + maxPendingAcquires);
+		}
+		this.maxPendingAcquires = maxPendingAcquires;
+		return this;
+	}
+
+	/**
+	 * Set the number of idle connections to keep open, within {@link
+	 * #maxConnections(int)}. They are opened as soon as the pool of a remote address is
+	 * created and reopened in the background when closed, evicted or acquired. They are
+	 * not closed by {@link #maxIdleTime(Duration)} but are by {@link
+	 * #maxLifeTime(Duration)}. Default to 0.
+	 *
+	 * @param minIdle the minimum number of idle connections
+	 *
+	 * @return {@literal this}
+	 */
+	public PoolOptions minIdle(int minIdle) {
+		if (minIdle < 0) {
+			throw new IllegalArgumentException("minIdle must be positive, was: " + minIdle);
+		}
+		this.minIdle = minIdle;
+		return this;
+	}
+
+	/**
+	 * Set the maximum time an acquire waits for a connection before failing with a
+	 * {@link java.util.concurrent.TimeoutException}. Default to waiting indefinitely.
+	 *
+	 * @param acquireTimeout the maximum time to wait for a connection, null to wait
+	 * indefinitely
+	 *
+	 * @return {@literal this}
+	 */
+	public PoolOptions acquireTimeout(Duration acquireTimeout) {
+		this.acquireTimeout = positive(acquireTimeout, "acquireTimeout");
+		return this;
+	}
+
+	/**
+	 * Set the time after which a connection left idle in the pool is closed. Default
+	 * to keeping idle connections indefinitely.
+	 *
+	 * @param maxIdleTime the maximum idle time of a pooled connection, null to keep
+	 * them indefinitely
+	 *
+	 * @return {@literal this}
+	 */
+	public PoolOptions maxIdleTime(Duration maxIdleTime) {
+		this.maxIdleTime = positive(maxIdleTime, "maxIdleTime");
+		return this;
+	}
+
+	/**
+	 * Set the time after which a connection is closed instead of being acquired or
+	 * released to the pool. Default to keeping connections indefinitely.
+	 *
+	 * @param maxLifeTime the maximum life time of a pooled connection, null to keep
+	 * them indefinitely
+	 *
+	 * @return {@literal this}
+	 */
+	public PoolOptions maxLifeTime(Duration maxLifeTime) {
+		this.maxLifeTime = positive(maxLifeTime, "maxLifeTime");
+		return this;
+	}
+
+	/**
+	 * Acquire the most recently released idle connection first, keeping a small set
+	 * of connections warm and letting the others expire. This is the default.
+	 *
+	 * @return {@literal this}
+	 */
+	public PoolOptions lifo() {
+		this.lifo = true;
+		return this;
+	}
+
+	/**
+	 * Acquire the least recently released idle connection first, spreading use
+	 * across all pooled connections.
+	 *
+	 * @return {@literal this}
+	 */
+	public PoolOptions fifo() {
+		this.lifo = false;
+		return this;
+	}
+
+	/**
+	 * Set the maximum number of remote address pools, closing the least recently used
+	 * pool when a new remote address would exceed it. Pools without any connection are
+	 * closed first and pools with pending acquires are never closed, the maximum being
+	 * exceeded until one can be. Connections still acquired from a closed pool are
+	 * closed on release. Default to -1, unbounded.
+	 *
+	 * @param maxPools the maximum number of remote address pools or -1 for unbounded
+	 *
+	 * @return {@literal this}
+	 */
+	public PoolOptions maxPools(int maxPools) {
+		if (maxPools == 0 || maxPools < -1) {
+			throw new IllegalArgumentException("maxPools must be strictly positive or -1, was: " + maxPools);
+		}
+		this.maxPools = maxPools;
+		return this;
+	}
+
+	/**
+	 * Set the time after which the pool of a remote address without any connection or
+	 * pending acquire is removed. Default to keeping pools until disposed.
+	 *
+	 * @param maxPoolIdleTime the maximum time a remote address pool stays empty, null
+	 * to keep them until disposed
+	 *
+	 * @return {@literal this}
+	 */
+	public PoolOptions maxPoolIdleTime(Duration maxPoolIdleTime) {
+		this.maxPoolIdleTime = positive(maxPoolIdleTime, "maxPoolIdleTime");
+		return this;
+	}
+
+	/**
+	 * Return a copy of these options
+	 *
+	 * @return a copy of these options
+	 */
+	public PoolOptions duplicate() {
+		return new PoolOptions(this);
+	}
+
+	/**
+	 * Return the maximum number of connections
+	 *
+	 * @return the maximum number of connections
+	 */
+	public int maxConnections() {
+		return maxConnections;
+	}
+
+	/**
+	 * Return the maximum number of pending acquires, -1 if unbounded
+	 *
+	 * @return the maximum number of pending acquires, -1 if unbounded
+	 */
+	public int maxPendingAcquires() {
+		return maxPendingAcquires;
+	}
+
+	/**
+	 * Return the minimum number of idle connections
+	 *
+	 * @return the minimum number of idle connections
+	 */
+	public int minIdle() {
+		return minIdle;
+	}
+
+	/**
+	 * Return the acquire timeout if any
+	 *
+	 * @return the acquire timeout if any
+	 */
+	public Duration acquireTimeout() {
+		return acquireTimeout;
+	}
+
+	/**
+	 * Return the maximum idle time of a pooled connection if any
+	 *
+	 * @return the maximum idle time of a pooled connection if any
+	 */
+	public Duration maxIdleTime() {
+		return maxIdleTime;
+	}
+
+	/**
+	 * Return the maximum life time of a pooled connection if any
+	 *
+	 * @return the maximum life time of a pooled connection if any
+	 */
+	public Duration maxLifeTime() {
+		return maxLifeTime;
+	}
+
+	/**
+	 * Return true if the most recently released connections are acquired first
+	 *
+	 * @return true if the most recently released connections are acquired first
+	 */
+	public boolean isLifo() {
+		return lifo;
+	}
+
+	/**
+	 * Return the maximum number of remote address pools, -1 if unbounded
+	 *
+	 * @return the maximum number of remote address pools, -1 if unbounded
+	 */
+	public int maxPools() {
+		return maxPools;
+	}
+
+	/**
+	 * Return the maximum time a remote address pool stays empty if any
+	 *
+	 * @return the maximum time a remote address pool stays empty if any
+	 */
+	public Duration maxPoolIdleTime() {
+		return maxPoolIdleTime;
+	}
+
+	@Override
+	public String toString() {
+		return "PoolOptions{" + "maxConnections=" + maxConnections + ", maxPendingAcquires=" + maxPendingAcquires + ", minIdle=" + minIdle + ", acquireTimeout=" + acquireTimeout + ", maxIdleTime=" + maxIdleTime + ", maxLifeTime=" + maxLifeTime + ", lifo=" + lifo + ", maxPools=" + maxPools + ", maxPoolIdleTime=" + maxPoolIdleTime + '}';
+	}
+
+	static Duration positive(Duration duration, String name) {
+		if (duration != null && (duration.isNegative() || duration.isZero())) {
+			throw new IllegalArgumentException(name + " must be strictly positive, was: " + duration);
+		}
+		return duration;
+	}
+}
@@ -17,12 +17,17 @@
 package reactor.ipc.netty.resources;
 
 import java.net.SocketAddress;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.pool.ChannelPool;
 import io.netty.channel.pool.FixedChannelPool;
 import io.netty.channel.pool.SimpleChannelPool;
+import io.netty.handler.ssl.SslContext;
 import reactor.core.Cancellation;
 
 /**
@@ -60,6 +65,23 @@ public interface PoolResources extends Cancellation {
 		return new DefaultPoolResources(name, SimpleChannelPool::new);
 	}
 
+	/**
+	 * Create an uncapped {@link PoolResources} to provide automatically for {@link
+	 * ChannelPool} keeping idle connections per event loop.
+	 * <p>An acquire issued from an event loop is served by an idle connection bound to
+	 * the same event loop first, then steals an idle connection from another event loop
+	 * and finally opens a new connection on the calling event loop. Pipelines are then
+	 * mostly set up without handing over to another thread.
+	 *
+	 * @param name the channel pool map name
+	 *
+	 * @return a new {@link PoolResources} to provide automatically for {@link
+	 * ChannelPool}
+	 */
+	static PoolResources affine(String name) {
+		return new DefaultPoolResources(name, AffineChannelPool::new);
+	}
+
 	/**
 	 * Create a capped {@link PoolResources} to provide automatically for {@link
 	 * ChannelPool}.
@@ -100,6 +122,94 @@ public interface PoolResources extends Cancellation {
 
 	}
 
+	/**
+	 * Create a capped {@link PoolResources} to provide automatically for {@link
+	 * ChannelPool}, configured by the given {@link PoolOptions}.
+	 * <p>Beyond the maximum number of connections, acquires wait for a release in a
+	 * queue that can be bounded and timed out. Idle connections are leased in LIFO
+	 * order by default and closed once idle or alive for too long. Remote address pools
+	 * can be bounded in number and removed once empty for too long.
+	 *
+	 * @param name the channel pool map name
+	 * @param options the {@link PoolOptions} configurator
+	 *
+	 * @return a new {@link PoolResources} to provide automatically for {@link
+	 * ChannelPool}
+	 */
+	static PoolResources fixed(String name, Consumer<? super PoolOptions> options) {
+		Objects.requireNonNull(options, "options");
+		PoolOptions poolOptions = PoolOptions.create();
+		options.accept(poolOptions);
+		return new DefaultPoolResources(name,
+				(bootstrap, handler) -> new BoundedChannelPool(bootstrap,
+						handler,
+						poolOptions),
+				poolOptions.maxPools(),
+				poolOptions.maxPoolIdleTime());
+	}
+
+	/**
+	 * Create a {@link PoolResources} balancing connections across the endpoints given
+	 * by {@link BalancerOptions}, whatever the requested remote address. Each acquire
+	 * selects the endpoint with the least acquired connections, among all endpoints or
+	 * two picked at random, and ejects endpoints for a while after consecutive failed
+	 * acquires. Each endpoint is pooled by {@link
+	 * BalancerOptions#poolResources(PoolResources)}.
+	 *
+	 * @param name the channel pool map name
+	 * @param options the {@link BalancerOptions} configurator
+	 *
+	 * @return a new {@link PoolResources} balancing connections across endpoints
+	 */
+	static PoolResources balanced(String name, Consumer<? super BalancerOptions> options) {
+		Objects.requireNonNull(options, "options");
+		BalancerOptions balancerOptions = BalancerOptions.create();
+		options.accept(balancerOptions);
+		return new BalancedPoolResources(name, balancerOptions.duplicate());
+	}
+
+	/**
+	 * Create a {@link PoolResources} multiplexing acquired channels as HTTP/2 streams
+	 * over shared cleartext connections, assuming the remote supports HTTP/2 with prior
+	 * knowledge.
+	 * <p>An acquired {@link io.netty.channel.Channel} carries a single request/response
+	 * exchange and has the multiplexed connection as {@link
+	 * io.netty.channel.Channel#parent()}. A new connection is opened only when all
+	 * established ones use as many streams as their remote {@code
+	 * SETTINGS_MAX_CONCURRENT_STREAMS} allows.
+	 *
+	 * @param name the channel pool map name
+	 *
+	 * @return a new {@link PoolResources} to provide automatically for {@link
+	 * ChannelPool}
+	 */
+	static PoolResources http2(String name) {
+		return new DefaultPoolResources(name,
+				(bootstrap, handler) -> new Http2ChannelPool(bootstrap, handler, null));
+	}
+
+	/**
+	 * Create a {@link PoolResources} multiplexing acquired channels as HTTP/2 streams
+	 * over shared TLS connections. The given {@link SslContext} must negotiate {@code
+	 * h2} with ALPN, connections failing to do so are rejected.
+	 *
+	 * @param name the channel pool map name
+	 * @param sslContext the client {@link SslContext} configured with ALPN {@code h2}
+	 *
+	 * @return a new {@link PoolResources} to provide automatically for {@link
+	 * ChannelPool}
+	 * @see #http2(String)
+	 */
+	static PoolResources http2(String name, SslContext sslContext) {
+		if (sslContext == null || !sslContext.isClient()) {
+			throw new IllegalArgumentException("A client SslContext is required, was: " + sslContext);
+		}
+		return new DefaultPoolResources(name,
+				(bootstrap, handler) -> new Http2ChannelPool(bootstrap,
+						handler,
+						sslContext));
+	}
+
 	/**
 	 * Return an existing or new {@link ChannelPool}. The implementation will take care
 	 * of
@@ -115,6 +225,18 @@ public interface PoolResources extends Cancellation {
 	ChannelPool selectOrCreate(SocketAddress address,
 			Supplier<? extends Bootstrap> bootstrap);
 
+	/**
+	 * Return a live view of the {@link PoolMetrics} of each {@link ChannelPool}
+	 * currently held, keyed by remote address. Implementations may key pools by a
+	 * canonical form of the remote address, such as an unresolved {@link
+	 * java.net.InetSocketAddress}, combined with the proxy address if any.
+	 *
+	 * @return the {@link PoolMetrics} by remote address, empty if not supported
+	 */
+	default Map<SocketAddress, PoolMetrics> metrics() {
+		return Collections.emptyMap();
+	}
+
 	@Override
 	default void dispose() {
 		//noop default
@@ -17,6 +17,7 @@
 package reactor.ipc.netty.tcp;
 
 import java.net.SocketAddress;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
 import java.util.function.Supplier;
@@ -28,6 +29,7 @@ import io.netty.channel.ServerChannel;
 import io.netty.channel.pool.ChannelPool;
 import io.netty.channel.socket.DatagramChannel;
 import reactor.ipc.netty.resources.LoopResources;
+import reactor.ipc.netty.resources.PoolMetrics;
 import reactor.ipc.netty.resources.PoolResources;
 
 /**
@@ -105,6 +107,11 @@ public class TcpResources implements PoolResources, LoopResources {
 		return defaultPools.selectOrCreate(address, bootstrap);
 	}
 
+	@Override
+	public Map<SocketAddress, PoolMetrics> metrics() {
+		return defaultPools.metrics();
+	}
+
 	@Override
 	public Class<? extends Channel> onChannel(EventLoopGroup group) {
 		return defaultLoops.onChannel(group);
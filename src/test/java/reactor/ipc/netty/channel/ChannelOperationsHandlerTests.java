@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package reactor.ipc.netty.channel;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.After;
+import org.junit.Test;
+import reactor.core.publisher.DirectProcessor;
+import reactor.core.publisher.Flux;
+import reactor.ipc.netty.NettyPipeline;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * @author agent
+ */
+public class ChannelOperationsHandlerTests {
+
+	EmbeddedChannel channel;
+	WriteRecorder   recorder;
+
+	ChannelOperationsHandler handler(FlushMode flushMode) {
+		return handler(flushMode, 0, PendingWriteOverflow.FAIL);
+	}
+
+	ChannelOperationsHandler handler(FlushMode flushMode,
+			int pendingWritesCapacity,
+			PendingWriteOverflow overflow) {
+		ChannelOperationsHandler handler =
+				new ChannelOperationsHandler(flushMode, pendingWritesCapacity, overflow);
+		recorder = new WriteRecorder();
+		channel = new EmbeddedChannel();
+		channel.pipeline()
+		       .addLast(recorder)
+		       .addLast(NettyPipeline.ReactiveBridge, handler);
+		return handler;
+	}
+
+	@After
+	public void cleanup() {
+		if (channel != null) {
+			channel.finishAndReleaseAll();
+		}
+	}
+
+	@Test
+	public void flushOnMemoryUsedResetsPendingBytesOnEachFlush() {
+		handler(FlushMode.MANUAL_BOUNDARY).flushOnMemoryUsed(2);
+
+		channel.writeAndFlush(Flux.just(buf("a"), buf("b"), buf("c")));
+		channel.writeAndFlush(Flux.just(buf("d"), buf("e"), buf("f")));
+
+		//the flush completing a publisher starts over the memory accounting
+		assertThat(recorder.toString(), is("a b | c | d e | f |"));
+	}
+
+	@Test
+	public void flushOnEachFlushesEveryItem() {
+		handler(FlushMode.MANUAL_BOUNDARY).flushOnEach();
+
+		channel.writeAndFlush(Flux.just(buf("a"), buf("b"), buf("c")));
+
+		assertThat(recorder.toString(), is("a | b | c |"));
+	}
+
+	@Test
+	public void flushOnCompleteFlushesOnceThePublisherTerminates() {
+		handler(FlushMode.AUTO_EACH).flushOnComplete();
+
+		channel.writeAndFlush(Flux.just(buf("a"), buf("b"), buf("c")));
+
+		assertThat(recorder.toString(), is("a b c |"));
+	}
+
+	@Test
+	public void flushOnBoundaryFlushesEachWrittenPublisher() {
+		handler(FlushMode.MANUAL_BOUNDARY);
+
+		//as sendGroups writes each group
+		channel.writeAndFlush(Flux.just(buf("a"), buf("b")));
+		channel.writeAndFlush(Flux.just(buf("c"), buf("d")));
+
+		assertThat(recorder.toString(), is("a b | c d |"));
+	}
+
+	@Test
+	public void flushOnBoundaryFlushesHeldMessagesWithTheFirstItem() {
+		handler(FlushMode.MANUAL_BOUNDARY);
+		DirectProcessor<ByteBuf> body = DirectProcessor.create();
+
+		//as HTTP headers held for the first body element
+		channel.write(buf("head"));
+		channel.writeAndFlush(body);
+
+		assertThat(recorder.toString(), is("head"));
+
+		body.onNext(buf("a"));
+		body.onNext(buf("b"));
+		body.onComplete();
+
+		assertThat(recorder.toString(), is("head a | b |"));
+	}
+
+	@Test
+	public void flushOnLoopCoalescesTheWritesOfAnEventLoopIteration() {
+		handler(FlushMode.AUTO_EACH).flushOnLoop();
+
+		ChannelFuture first = channel.writeAndFlush(Flux.just(buf("a"), buf("b")));
+		ChannelFuture second = channel.writeAndFlush(Flux.just(buf("c"), buf("d")));
+
+		assertThat(recorder.toString(), is("a b c d"));
+		assertThat(first.isDone(), is(false));
+
+		channel.runPendingTasks();
+
+		assertThat(recorder.toString(), is("a b c d |"));
+		assertThat(first.isSuccess(), is(true));
+		assertThat(second.isSuccess(), is(true));
+	}
+
+	@Test
+	public void autoLoopFlushModeCoalescesSingleMessages() {
+		handler(FlushMode.AUTO_LOOP);
+
+		channel.write(buf("a"));
+		channel.write(buf("b"));
+		channel.flush();
+
+		assertThat(recorder.toString(), is("a b"));
+
+		channel.runPendingTasks();
+		channel.writeAndFlush(buf("c"));
+
+		assertThat(recorder.toString(), is("a b | c"));
+
+		channel.runPendingTasks();
+
+		assertThat(recorder.toString(), is("a b | c |"));
+	}
+
+	@Test
+	public void failOverflowRejectsTheIncomingWrite() {
+		handler(FlushMode.MANUAL_BOUNDARY, 2, PendingWriteOverflow.FAIL);
+		DirectProcessor<ByteBuf> current = DirectProcessor.create();
+
+		channel.writeAndFlush(current);
+		channel.writeAndFlush(buf("a"));
+		channel.writeAndFlush(buf("b"));
+		ByteBuf c = buf("c");
+		ChannelFuture overflow = channel.writeAndFlush(c);
+
+		assertThat(overflow.cause(), instanceOf(IllegalStateException.class));
+		assertThat(c.refCnt(), is(0));
+
+		current.onComplete();
+
+		assertThat(recorder.toString(), is("a b |"));
+	}
+
+	@Test
+	public void dropOldestOverflowDropsTheOldestPayloadOnly() {
+		handler(FlushMode.MANUAL_BOUNDARY, 2, PendingWriteOverflow.DROP_OLDEST);
+		DirectProcessor<ByteBuf> current = DirectProcessor.create();
+
+		channel.writeAndFlush(current);
+		ChannelFuture headers = channel.writeAndFlush(Flux.just(buf("x")));
+		ByteBuf a = buf("a");
+		ChannelFuture dropped = channel.writeAndFlush(a);
+		ChannelFuture last = channel.writeAndFlush(buf("c"));
+
+		assertThat(dropped.cause(), instanceOf(IllegalStateException.class));
+		assertThat(a.refCnt(), is(0));
+
+		current.onComplete();
+
+		assertThat(recorder.toString(), is("x | c |"));
+		assertThat(headers.isSuccess(), is(true));
+		assertThat(last.isSuccess(), is(true));
+	}
+
+	@Test
+	public void dropOldestOverflowFailsTheIncomingWriteWithoutPayloadToDrop() {
+		handler(FlushMode.MANUAL_BOUNDARY, 1, PendingWriteOverflow.DROP_OLDEST);
+		DirectProcessor<ByteBuf> current = DirectProcessor.create();
+
+		channel.writeAndFlush(current);
+		channel.writeAndFlush(Flux.just(buf("x")));
+		ByteBuf c = buf("c");
+		ChannelFuture overflow = channel.writeAndFlush(c);
+
+		assertThat(overflow.cause(), instanceOf(IllegalStateException.class));
+		assertThat(c.refCnt(), is(0));
+
+		current.onComplete();
+
+		assertThat(recorder.toString(), is("x |"));
+	}
+
+	@Test
+	public void backpressureOverflowWithholdsReadsWhileFull() {
+		handler(FlushMode.MANUAL_BOUNDARY, 2, PendingWriteOverflow.BACKPRESSURE);
+		channel.config()
+		       .setAutoRead(false);
+		int reads = recorder.reads;
+		DirectProcessor<ByteBuf> current = DirectProcessor.create();
+
+		channel.writeAndFlush(current);
+		channel.writeAndFlush(buf("a"));
+		channel.read();
+
+		assertThat(recorder.reads, is(reads + 1));
+
+		channel.writeAndFlush(buf("b"));
+		channel.read();
+
+		assertThat(recorder.reads, is(reads + 1));
+
+		ByteBuf c = buf("c");
+		ChannelFuture overflow = channel.writeAndFlush(c);
+
+		assertThat(overflow.cause(), instanceOf(IllegalStateException.class));
+		assertThat(c.refCnt(), is(0));
+
+		current.onComplete();
+
+		assertThat(recorder.toString(), is("a b |"));
+		assertThat(recorder.reads, is(reads + 2));
+	}
+
+	@Test
+	public void backpressureOverflowOnlyResumesWithheldReads() {
+		handler(FlushMode.MANUAL_BOUNDARY, 1, PendingWriteOverflow.BACKPRESSURE);
+		channel.config()
+		       .setAutoRead(false);
+		int reads = recorder.reads;
+		DirectProcessor<ByteBuf> current = DirectProcessor.create();
+
+		channel.writeAndFlush(current);
+		channel.writeAndFlush(buf("a"));
+		current.onComplete();
+
+		assertThat(recorder.toString(), is("a |"));
+		assertThat(recorder.reads, is(reads));
+	}
+
+	@Test
+	public void backpressureOverflowBoundsTheDemandOfTheSentPublisher() {
+		handler(FlushMode.MANUAL_BOUNDARY, 2, PendingWriteOverflow.BACKPRESSURE);
+		List<Long> requests = new ArrayList<>();
+
+		channel.writeAndFlush(Flux.range(0, 8)
+		                          .map(i -> buf("" + i))
+		                          .doOnRequest(requests::add));
+
+		//more items are only requested once the written ones are confirmed
+		assertThat(recorder.toString(), is("0 1 | 2 3 | 4 5 | 6 7 |"));
+		assertThat(requests, everyItem(is(2L)));
+	}
+
+	@Test
+	public void removedHandlerFailsAndReleasesPendingWrites() {
+		handler(FlushMode.MANUAL_BOUNDARY, 2, PendingWriteOverflow.BACKPRESSURE);
+		ByteBuf a = buf("a");
+		ByteBuf b = buf("b");
+
+		channel.config()
+		       .setAutoRead(false);
+		int reads = recorder.reads;
+
+		ChannelFuture current = channel.writeAndFlush(DirectProcessor.<ByteBuf>create());
+		ChannelFuture first = channel.writeAndFlush(a);
+		ChannelFuture second = channel.writeAndFlush(b);
+		channel.read();
+
+		assertThat(recorder.reads, is(reads));
+
+		channel.pipeline()
+		       .remove(NettyPipeline.ReactiveBridge);
+
+		assertThat(current.cause(), instanceOf(IllegalStateException.class));
+		assertThat(first.cause(), instanceOf(IllegalStateException.class));
+		assertThat(second.cause(), instanceOf(IllegalStateException.class));
+		assertThat(a.refCnt(), is(0));
+		assertThat(b.refCnt(), is(0));
+		assertThat(recorder.reads, is(reads + 1));
+	}
+
+	static ByteBuf buf(String s) {
+		return Unpooled.copiedBuffer(s, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Record the written messages content and the flushes, as "|", in order, and
+	 * count the channel reads.
+	 */
+	static final class WriteRecorder extends ChannelOutboundHandlerAdapter {
+
+		final List<String> events = new ArrayList<>();
+
+		int reads;
+
+		@Override
+		public void read(ChannelHandlerContext ctx) throws Exception {
+			reads++;
+			ctx.read();
+		}
+
+		@Override
+		public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+				throws Exception {
+			events.add(((ByteBuf) msg).toString(StandardCharsets.UTF_8));
+			ctx.write(msg, promise);
+		}
+
+		@Override
+		public void flush(ChannelHandlerContext ctx) throws Exception {
+			events.add("|");
+			ctx.flush();
+		}
+
+		@Override
+		public String toString() {
+			return String.join(" ", events);
+		}
+	}
+}
@@ -16,12 +16,42 @@
 
 package reactor.ipc.netty.http;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.util.concurrent.Future;
 import org.junit.Test;
+import org.testng.Assert;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.ipc.netty.NettyContext;
+import reactor.ipc.netty.SocketUtils;
 import reactor.ipc.netty.http.client.HttpClient;
 import reactor.ipc.netty.http.client.HttpClientException;
+import reactor.ipc.netty.http.client.HttpClientResponse;
+import reactor.ipc.netty.http.server.HttpServer;
+import reactor.ipc.netty.resources.DnsResolverGroup;
+import reactor.ipc.netty.resources.PoolResources;
+import reactor.test.StepVerifier;
 
 /**
  * @author Stephane Maldini
@@ -102,4 +132,414 @@ public class HttpClientTests {
 		}
 	}
 
+	@Test
+	public void compressedResponsesAreInflated() {
+		NettyContext c = HttpServer.create(opts -> opts.listen(0)
+		                                               .compression(0))
+		                           .newHandler((req, res) -> res.header("Content-Type",
+				                           "text/plain")
+		                                                        .sendString(Flux.just("Hello ",
+				                                                        "World ")
+		                                                                        .repeat(99)))
+		                           .block();
+
+		HttpClient client = HttpClient.create(opts -> opts.connect("localhost",
+				c.address()
+				 .getPort())
+		                                                  .compression(true));
+
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			expected.append("Hello World ");
+		}
+
+		for (int i = 0; i < 2; i++) {
+			HttpClientResponse response = client.get("/")
+			                                    .block();
+			Assert.assertNull(response.responseHeaders()
+			                          .get(HttpHeaderNames.CONTENT_ENCODING));
+			StepVerifier.create(response.receive()
+			                            .aggregate()
+			                            .asString())
+			            .expectNext(expected.toString())
+			            .expectComplete()
+			            .verify();
+		}
+
+		c.dispose();
+	}
+
+
+	@Test
+	public void cancelledResponsesAreDrainedAndReused() {
+		List<Integer> clientPorts = new CopyOnWriteArrayList<>();
+		NettyContext c = HttpServer.create(0)
+		                           .newHandler((req, res) -> {
+			                           clientPorts.add(req.remoteAddress()
+			                                              .getPort());
+			                           return res.sendString(Flux.interval(Duration.ofMillis(10))
+			                                                     .take(20)
+			                                                     .map(i -> "chunk" + i));
+		                           })
+		                           .block();
+		PoolResources pool = PoolResources.fixed("drain", 1);
+		HttpClient client = HttpClient.create(opts -> opts.connect("localhost",
+				c.address()
+				 .getPort())
+		                                                  .poolResources(pool)
+		                                                  .autoDrain(1024,
+				                                                  Duration.ofSeconds(5)));
+
+		for (int i = 0; i < 2; i++) {
+			HttpClientResponse response = client.get("/")
+			                                    .block();
+			//a drained then reused connection still reads on demand
+			Assert.assertFalse(response.context()
+			                           .channel()
+			                           .config()
+			                           .isAutoRead());
+			StepVerifier.create(response.receive()
+			                            .asString()
+			                            .take(1))
+			            .expectNextCount(1)
+			            .expectComplete()
+			            .verify();
+		}
+
+		Assert.assertEquals(clientPorts.size(), 2);
+		Assert.assertEquals(clientPorts.get(0), clientPorts.get(1));
+
+		pool.dispose();
+		c.dispose();
+	}
+
+	@Test
+	public void drainBoundOnlyCountsBytesReceivedAfterCancel() {
+		String first = String.join("", Collections.nCopies(600, "a"));
+		List<Integer> clientPorts = cancelledResponsePorts(Flux.just(first)
+		                                                       .concatWith(Flux.interval(Duration.ofMillis(10))
+		                                                                       .take(10)
+		                                                                       .map(i -> "chunk" + i)),
+				256,
+				Duration.ofSeconds(5));
+
+		Assert.assertEquals(clientPorts.get(0), clientPorts.get(1));
+	}
+
+	@Test
+	public void cancelledResponsesOverTheDrainBoundAreClosed() {
+		String chunk = String.join("", Collections.nCopies(1024, "a"));
+		List<Integer> clientPorts = cancelledResponsePorts(Flux.interval(Duration.ofMillis(10))
+		                                                       .take(20)
+		                                                       .map(i -> chunk),
+				1024,
+				Duration.ofSeconds(5));
+
+		Assert.assertNotEquals(clientPorts.get(0), clientPorts.get(1));
+	}
+
+	@Test
+	public void cancelledResponsesDrainingTooLongAreClosed() {
+		List<Integer> clientPorts = cancelledResponsePorts(Flux.interval(Duration.ofMillis(100))
+		                                                       .take(30)
+		                                                       .map(i -> "chunk" + i),
+				1024 * 1024,
+				Duration.ofMillis(300));
+
+		Assert.assertNotEquals(clientPorts.get(0), clientPorts.get(1));
+	}
+
+	/**
+	 * Send two requests through a single connection pool, each cancelling its response
+	 * after the first chunk of the given body, and return the client ports seen by the
+	 * server.
+	 */
+	static List<Integer> cancelledResponsePorts(Flux<String> body,
+			long drainMaxBytes,
+			Duration drainMaxTime) {
+		List<Integer> clientPorts = new CopyOnWriteArrayList<>();
+		NettyContext c = HttpServer.create(0)
+		                           .newHandler((req, res) -> {
+			                           clientPorts.add(req.remoteAddress()
+			                                              .getPort());
+			                           return res.sendString(body);
+		                           })
+		                           .block();
+		PoolResources pool = PoolResources.fixed("drain", 1);
+		HttpClient client = HttpClient.create(opts -> opts.connect("localhost",
+				c.address()
+				 .getPort())
+		                                                  .poolResources(pool)
+		                                                  .autoDrain(drainMaxBytes,
+				                                                  drainMaxTime));
+
+		for (int i = 0; i < 2; i++) {
+			HttpClientResponse response = client.get("/")
+			                                    .block();
+			StepVerifier.create(response.receive()
+			                            .asString()
+			                            .take(1))
+			            .expectNextCount(1)
+			            .expectComplete()
+			            .verify();
+		}
+
+		Assert.assertEquals(clientPorts.size(), 2);
+		pool.dispose();
+		c.dispose();
+		return clientPorts;
+	}
+
+	@Test
+	public void balancedClientSpreadsRequestsAndEjectsFailingEndpoints() {
+		NettyContext first = HttpServer.create(0)
+		                               .newHandler((req, res) -> res.sendString(Mono.just("first")))
+		                               .block();
+		NettyContext second = HttpServer.create(0)
+		                                .newHandler((req, res) -> res.sendString(Mono.just("second")))
+		                                .block();
+		InetSocketAddress unavailable =
+				new InetSocketAddress("localhost", SocketUtils.findAvailableTcpPort());
+
+		PoolResources balancer = PoolResources.balanced("balanced",
+				opts -> opts.endpoints(new InetSocketAddress("localhost",
+								first.address()
+								     .getPort()),
+						new InetSocketAddress("localhost",
+								second.address()
+								      .getPort()),
+						unavailable)
+				            .maxFailures(1)
+				            .ejectionTime(Duration.ofMinutes(1)));
+		HttpClient client = HttpClient.create(opts -> opts.connect("localhost",
+				first.address()
+				     .getPort())
+		                                                  .poolResources(balancer));
+
+		Map<String, Integer> responses = new ConcurrentHashMap<>();
+		for (int i = 0; i < 9; i++) {
+			String body = client.get("/")
+			                    .then(r -> r.receive()
+			                                .aggregate()
+			                                .asString())
+			                    .otherwiseReturn("failed")
+			                    .block();
+			responses.merge(body, 1, Integer::sum);
+		}
+
+		Assert.assertTrue(responses.getOrDefault("failed", 0) <= 1, responses.toString());
+		Assert.assertTrue(responses.getOrDefault("first", 0) >= 2, responses.toString());
+		Assert.assertTrue(responses.getOrDefault("second", 0) >= 2, responses.toString());
+
+		balancer.dispose();
+		first.dispose();
+		second.dispose();
+	}
+
+	@Test
+	public void balancedClientEjectsEndpointsClosingConnections() {
+		NettyContext ok = HttpServer.create(0)
+		                            .newHandler((req, res) -> res.sendString(Mono.just("ok")))
+		                            .block();
+		NettyContext reset = HttpServer.create(0)
+		                               .newHandler((req, res) -> {
+			                               req.context()
+			                                  .channel()
+			                                  .close();
+			                               return Mono.never();
+		                               })
+		                               .block();
+
+		PoolResources endpointPools = PoolResources.elastic("endpoints");
+		PoolResources balancer = PoolResources.balanced("balanced",
+				opts -> opts.endpoints(new InetSocketAddress("localhost",
+								ok.address()
+								  .getPort()),
+						new InetSocketAddress("localhost",
+								reset.address()
+								     .getPort()))
+				            .maxFailures(2)
+				            .ejectionTime(Duration.ofMinutes(1))
+				            .poolResources(endpointPools));
+		HttpClient client = HttpClient.create(opts -> opts.connect("localhost",
+				ok.address()
+				  .getPort())
+		                                                  .poolResources(balancer));
+
+		Map<String, Integer> responses = new ConcurrentHashMap<>();
+		for (int i = 0; i < 10; i++) {
+			String body = client.get("/")
+			                    .then(r -> r.receive()
+			                                .aggregate()
+			                                .asString())
+			                    .otherwiseReturn("failed")
+			                    .block(Duration.ofSeconds(5));
+			responses.merge(body, 1, Integer::sum);
+		}
+
+		Assert.assertTrue(responses.getOrDefault("failed", 0) <= 2, responses.toString());
+		Assert.assertTrue(responses.getOrDefault("ok", 0) >= 8, responses.toString());
+
+		//the user supplied endpoint pools are left to their owner
+		balancer.dispose();
+		Assert.assertFalse(endpointPools.metrics()
+		                                .isEmpty());
+
+		endpointPools.dispose();
+		ok.dispose();
+		reset.dispose();
+	}
+
+	@Test
+	public void dnsResolutionIsCachedAndCoalesced() throws Exception {
+		NettyContext c = HttpServer.create(0)
+		                           .newHandler((req, res) -> res.sendString(Mono.just("Hello")))
+		                           .block();
+		EventLoopGroup loops = new NioEventLoopGroup(2);
+
+		try (StandInDns dns = new StandInDns(100)) {
+			DnsResolverGroup resolver = DnsResolverGroup.create(dns.address());
+			HttpClient client = HttpClient.create(opts -> opts.resolver(resolver)
+			                                                  .disablePool());
+			String url = "http://test.reactor:" + c.address()
+			                                       .getPort() + "/";
+
+			for (int i = 0; i < 2; i++) {
+				StepVerifier.create(client.get(url)
+				                          .flatMap(r -> r.receive()
+				                                         .aggregate()
+				                                         .asString()))
+				            .expectNext("Hello")
+				            .expectComplete()
+				            .verify(Duration.ofSeconds(10));
+				//resolved once then served from the cache
+				Assert.assertEquals(dns.queries("test.reactor"), 1);
+			}
+
+			for (int i = 0; i < 2; i++) {
+				StepVerifier.create(client.get("http://missing.reactor:" + c.address()
+				                                                          .getPort() + "/"))
+				            .expectError()
+				            .verify(Duration.ofSeconds(10));
+				//the failure is cached too
+				Assert.assertEquals(dns.queries("missing.reactor"), 1);
+			}
+
+			List<Future<InetSocketAddress>> lookups = new ArrayList<>();
+			for (int i = 0; i < 10; i++) {
+				lookups.add(resolver.getResolver(loops.next())
+				                    .resolve(InetSocketAddress.createUnresolved(
+						                    "coalesced.reactor",
+						                    80)));
+			}
+			for (Future<InetSocketAddress> lookup : lookups) {
+				Assert.assertEquals(lookup.get(10, TimeUnit.SECONDS)
+				                          .getAddress(),
+						InetAddress.getByAddress(new byte[]{127, 0, 0, 1}));
+			}
+			//concurrent lookups from different event loops share a single query
+			Assert.assertEquals(dns.queries("coalesced.reactor"), 1);
+			resolver.close();
+		}
+		finally {
+			loops.shutdownGracefully();
+			c.dispose();
+		}
+	}
+
+	/**
+	 * A minimal DNS server answering A queries for names ending with
+	 * {@literal .reactor} with 127.0.0.1, except {@literal missing.reactor} which does
+	 * not exist.
+	 */
+	static final class StandInDns implements AutoCloseable {
+
+		final DatagramSocket             socket;
+		final Map<String, AtomicInteger> queries;
+		final long                       delayMillis;
+		final Thread                     thread;
+
+		StandInDns(long delayMillis) throws IOException {
+			this.socket = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+			this.queries = new ConcurrentHashMap<>();
+			this.delayMillis = delayMillis;
+			this.thread = new Thread(this::serve, "stand-in-dns");
+			this.thread.setDaemon(true);
+			this.thread.start();
+		}
+
+		InetSocketAddress address() {
+			return (InetSocketAddress) socket.getLocalSocketAddress();
+		}
+
+		int queries(String name) {
+			AtomicInteger count = queries.get(name);
+			return count == null ? 0 : count.get();
+		}
+
+		void serve() {
+			byte[] buffer = new byte[512];
+			while (!socket.isClosed()) {
+				try {
+					DatagramPacket query = new DatagramPacket(buffer, buffer.length);
+					socket.receive(query);
+					byte[] response = answer(Arrays.copyOf(query.getData(), query.getLength()));
+					Thread.sleep(delayMillis);
+					socket.send(new DatagramPacket(response,
+							response.length,
+							query.getSocketAddress()));
+				}
+				catch (Exception e) {
+					//closed
+				}
+			}
+		}
+
+		byte[] answer(byte[] query) {
+			StringBuilder name = new StringBuilder();
+			int index = 12;
+			while (query[index] != 0) {
+				int length = query[index];
+				if (name.length() > 0) {
+					name.append('.');
+				}
+				name.append(new String(query, index + 1, length, StandardCharsets.US_ASCII));
+				index += length + 1;
+			}
+			int questionEnd = index + 5;
+			int type = (query[index + 1] & 0xFF) << 8 | (query[index + 2] & 0xFF);
+			String host = name.toString()
+			                  .toLowerCase();
+
+			boolean exists = host.endsWith(".reactor") && !host.equals("missing.reactor");
+			boolean answered = exists && type == 1;
+			if (type == 1) {
+				queries.computeIfAbsent(host, h -> new AtomicInteger())
+				       .incrementAndGet();
+			}
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			out.write(query[0]);
+			out.write(query[1]);
+			out.write(0x81);
+			out.write(exists ? 0x80 : 0x83);
+			out.write(0);
+			out.write(1);
+			out.write(0);
+			out.write(answered ? 1 : 0);
+			out.write(new byte[4], 0, 4);
+			out.write(query, 12, questionEnd - 12);
+			if (answered) {
+				out.write(new byte[]{(byte) 0xC0, 12, 0, 1, 0, 1, 0, 0, 0, 60, 0, 4, 127, 0, 0, 1},
+						0,
+						16);
+			}
+			return out.toByteArray();
+		}
+
+		@Override
+		public void close() {
+			socket.close();
+		}
+	}
 }
@@ -16,17 +16,39 @@
 
 package reactor.ipc.netty.http;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
 import io.netty.handler.codec.LineBasedFrameDecoder;
+import io.netty.handler.codec.http.HttpHeaderNames;
 import org.junit.Test;
 import org.testng.Assert;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.scheduler.Schedulers;
 import reactor.ipc.netty.NettyContext;
 import reactor.ipc.netty.http.client.HttpClient;
 import reactor.ipc.netty.http.client.HttpClientResponse;
 import reactor.ipc.netty.http.server.HttpServer;
+import reactor.ipc.netty.http.server.HttpServerRoutes;
 import reactor.ipc.netty.resources.PoolResources;
 import reactor.ipc.netty.tcp.TcpClient;
 import reactor.test.StepVerifier;
@@ -60,6 +82,556 @@ public class HttpServerTests {
 		            .verify();
 	}
 
+	@Test
+	public void flushOnMemoryUsed() {
+
+		Flux<String> test = Flux.range(0, 1000)
+		                        .map(n -> String.format("%010d", n));
+
+		NettyContext c = HttpServer.create(0)
+		                           .newHandler((req, resp) -> resp.options(o -> o.flushOnMemoryUsed(256)
+		                                                                         .prefetchMemory(8, 1024))
+		                                                          .sendString(test.map(s -> s + "\n")))
+		                           .block();
+
+		Flux<String> client = HttpClient.create(c.address()
+		                                         .getPort())
+		                                .get("/")
+		                                .block()
+		                                .addDecoder(new LineBasedFrameDecoder(10))
+		                                .receive()
+		                                .asString();
+
+		StepVerifier.create(client)
+		            .expectNextSequence(test.toIterable())
+		            .expectComplete()
+		            .verify();
+
+		c.dispose();
+	}
+
+	@Test
+	public void requestOnWriteConfirm() {
+
+		Flux<String> test = Flux.range(0, 1000)
+		                        .map(n -> String.format("%010d", n));
+
+		NettyContext c = HttpServer.create(0)
+		                           .newHandler((req, resp) -> resp.options(o -> o.prefetch(16)
+		                                                                         .requestOnWriteConfirm())
+		                                                          .sendString(test.map(s -> s + "\n")))
+		                           .block();
+
+		Flux<String> client = HttpClient.create(c.address()
+		                                         .getPort())
+		                                .get("/")
+		                                .block()
+		                                .addDecoder(new LineBasedFrameDecoder(10))
+		                                .receive()
+		                                .asString();
+
+		StepVerifier.create(client)
+		            .expectNextSequence(test.toIterable())
+		            .expectComplete()
+		            .verify();
+
+		c.dispose();
+	}
+
+	@Test
+	public void routesMatchInRegistrationOrder() {
+		NettyContext c =
+				HttpServer.create(0)
+				          .newRouter(routes -> {
+					          routes.get("/users/{id}/orders/{order}",
+							          (req, res) -> res.sendString(Mono.just(req.param("id") + ":" + req.param("order"))))
+					                .get("/users/{id}",
+							                (req, res) -> res.sendString(Mono.just("user " + req.param("id"))))
+					                .get("/users/me", (req, res) -> res.sendString(Mono.just("me")))
+					                .route(req -> req.uri()
+					                                 .startsWith("/custom"),
+							                (req, res) -> res.sendString(Mono.just("custom")))
+					                .get("/custom/{id}",
+							                (req, res) -> res.sendString(Mono.just("unreachable")));
+				          })
+				          .block();
+
+		HttpClient client = HttpClient.create(c.address()
+		                                       .getPort());
+
+		StepVerifier.create(Flux.just("/users/42/orders/7",
+				"/users/42",
+				"/users/me",
+				"/custom/1")
+		                        .concatMap(uri -> client.get(uri)
+		                                                .flatMap(r -> r.receive()
+		                                                               .aggregate()
+		                                                               .asString())))
+		            .expectNext("42:7", "user 42", "user me", "custom")
+		            .expectComplete()
+		            .verify();
+
+		c.dispose();
+	}
+
+	@Test
+	public void scalarResponseHasContentLength() {
+		NettyContext c = HttpServer.create(0)
+		                           .newHandler((req, res) -> res.sendString(Mono.just("Hello")))
+		                           .block();
+
+		HttpClientResponse response = HttpClient.create(c.address()
+		                                                 .getPort())
+		                                        .get("/")
+		                                        .block();
+
+		Assert.assertEquals(response.responseHeaders()
+		                            .get(HttpHeaderNames.CONTENT_LENGTH), "5");
+		Assert.assertFalse(response.responseHeaders()
+		                           .contains(HttpHeaderNames.TRANSFER_ENCODING));
+		StepVerifier.create(response.receive()
+		                            .aggregate()
+		                            .asString())
+		            .expectNext("Hello")
+		            .expectComplete()
+		            .verify();
+
+		c.dispose();
+	}
+
+	@Test
+	public void bufferedResponseHasContentLength() {
+		NettyContext c = HttpServer.create(opts -> opts.listen(0)
+		                                               .responseBufferThreshold(1024))
+		                           .newHandler((req, res) -> res.sendString(Flux.just("Hello", " ", "World")))
+		                           .block();
+
+		HttpClientResponse response = HttpClient.create(c.address()
+		                                                 .getPort())
+		                                        .get("/")
+		                                        .block();
+
+		Assert.assertEquals(response.responseHeaders()
+		                            .get(HttpHeaderNames.CONTENT_LENGTH), "11");
+		StepVerifier.create(response.receive()
+		                            .aggregate()
+		                            .asString())
+		            .expectNext("Hello World")
+		            .expectComplete()
+		            .verify();
+
+		c.dispose();
+	}
+
+	@Test
+	public void bufferedResponseCompletesWithManyElements() {
+		NettyContext c = HttpServer.create(opts -> opts.listen(0)
+		                                               .responseBufferThreshold(1024))
+		                           .newRouter(routes -> routes.get("/available",
+				                           (req, res) -> res.sendString(Flux.range(0, 100)
+				                                                            .map(i -> "a")))
+		                                                      .get("/confirm",
+				                           (req, res) -> res.options(o -> o.requestOnWriteConfirm())
+				                                            .sendString(Flux.range(0, 100)
+				                                                            .map(i -> "b"))))
+		                           .block();
+
+		for (String path : new String[]{"/available", "/confirm"}) {
+			HttpClientResponse response = HttpClient.create(c.address()
+			                                                 .getPort())
+			                                        .get(path)
+			                                        .block(Duration.ofSeconds(30));
+
+			Assert.assertEquals(response.responseHeaders()
+			                            .get(HttpHeaderNames.CONTENT_LENGTH), "100");
+			StepVerifier.create(response.receive()
+			                            .aggregate()
+			                            .asString()
+			                            .map(String::length))
+			            .expectNext(100)
+			            .expectComplete()
+			            .verify(Duration.ofSeconds(30));
+		}
+
+		c.dispose();
+	}
+
+	@Test
+	public void bodyPublishedOffTheEventLoopIsFullySent() {
+		NettyContext c = HttpServer.create(0)
+		                           .newHandler((req, res) -> res.sendString(Flux.range(0, 10000)
+		                                                                        .map(i -> "a")
+		                                                                        .publishOn(Schedulers.parallel(), 16)))
+		                           .block();
+
+		HttpClientResponse response = HttpClient.create(c.address()
+		                                                 .getPort())
+		                                        .get("/")
+		                                        .block(Duration.ofSeconds(30));
+
+		StepVerifier.create(response.receive()
+		                            .aggregate()
+		                            .asString()
+		                            .map(String::length))
+		            .expectNext(10000)
+		            .expectComplete()
+		            .verify(Duration.ofSeconds(30));
+
+		c.dispose();
+	}
+
+	@Test
+	public void routesExposeUriTemplateCacheMetrics() {
+		AtomicReference<HttpServerRoutes> routes = new AtomicReference<>();
+		NettyContext c = HttpServer.create(0)
+		                           .newRouter(r -> routes.set(r.get("/users/{id}",
+				                           (req, res) -> res.sendString(Mono.just(req.param("id"))))
+		                                                       .get("/files/{name}.txt",
+				                           (req, res) -> res.sendString(Mono.just(req.param("name"))))))
+		                           .block();
+
+		Assert.assertEquals(routes.get()
+		                          .uriTemplateCacheSize(), 0);
+
+		for (String uri : new String[]{"/files/a.txt", "/files/a.txt", "/users/1"}) {
+			StepVerifier.create(HttpClient.create(c.address()
+			                                       .getPort())
+			                              .get(uri)
+			                              .flatMap(r -> r.receive()
+			                                             .aggregate()
+			                                             .asString()))
+			            .expectNextCount(1)
+			            .expectComplete()
+			            .verify(Duration.ofSeconds(30));
+		}
+
+		//the tree route is resolved without cache, each request of the regex route
+		//tests the route then resolves its params
+		Assert.assertEquals(routes.get()
+		                          .uriTemplateCacheSize(), 1);
+		Assert.assertEquals(routes.get()
+		                          .uriTemplateCacheHitRate(), 0.75d, 0d);
+
+		c.dispose();
+	}
+
+	@Test
+	public void pipelinedRequestsAreAnsweredInOrder() throws Exception {
+		CountDownLatch latch = new CountDownLatch(2);
+		NettyContext c =
+				HttpServer.create(opts -> opts.listen(0)
+				                              .pipelining(3))
+				          .newRouter(routes -> routes.get("/{n}", (req, res) -> {
+					          String n = req.param("n");
+					          if (n.equals("1")) {
+						          //only answers once the subsequent requests are handled
+						          return res.sendString(Mono.fromCallable(() -> latch.await(5,
+								          TimeUnit.SECONDS) ? n : "timeout")
+						                                    .subscribeOn(Schedulers.elastic()));
+					          }
+					          latch.countDown();
+					          return res.sendString(Mono.just(n));
+				          }))
+				          .block();
+
+		try (Socket socket = new Socket("localhost", c.address().getPort())) {
+			socket.setSoTimeout(10000);
+			OutputStream out = socket.getOutputStream();
+			out.write(("GET /1 HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+					"GET /2 HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+					"GET /3 HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n")
+					.getBytes(StandardCharsets.US_ASCII));
+			out.flush();
+
+			ByteArrayOutputStream received = new ByteArrayOutputStream();
+			InputStream in = socket.getInputStream();
+			byte[] buffer = new byte[1024];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				received.write(buffer, 0, read);
+			}
+
+			String[] responses = received.toString("US-ASCII")
+			                             .split("HTTP/1.1 200 OK");
+			Assert.assertEquals(responses.length, 4);
+			for (int i = 1; i < responses.length; i++) {
+				Assert.assertTrue(responses[i].endsWith("\r\n\r\n" + i),
+						responses[i]);
+			}
+		}
+		finally {
+			c.dispose();
+		}
+	}
+
+	@Test
+	public void pipelinedRequestsAreDispatchedOneAtATimeByDefault() throws Exception {
+		AtomicInteger inFlight = new AtomicInteger();
+		AtomicInteger maxInFlight = new AtomicInteger();
+		NettyContext c =
+				HttpServer.create(0)
+				          .newRouter(routes -> routes.get("/{n}", (req, res) -> {
+					          maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+					          return res.sendString(Mono.delay(Duration.ofMillis(50))
+					                                    .map(d -> req.param("n"))
+					                                    .doOnNext(n -> inFlight.decrementAndGet()));
+				          }))
+				          .block();
+
+		try (Socket socket = new Socket("localhost", c.address().getPort())) {
+			socket.setSoTimeout(10000);
+			OutputStream out = socket.getOutputStream();
+			out.write(("GET /1 HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+					"GET /2 HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+					"GET /3 HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n")
+					.getBytes(StandardCharsets.US_ASCII));
+			out.flush();
+
+			ByteArrayOutputStream received = new ByteArrayOutputStream();
+			InputStream in = socket.getInputStream();
+			byte[] buffer = new byte[1024];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				received.write(buffer, 0, read);
+			}
+
+			String[] responses = received.toString("US-ASCII")
+			                             .split("HTTP/1.1 200 OK");
+			Assert.assertEquals(responses.length, 4);
+			for (int i = 1; i < responses.length; i++) {
+				Assert.assertTrue(responses[i].endsWith("\r\n\r\n" + i),
+						responses[i]);
+			}
+			Assert.assertEquals(maxInFlight.get(), 1);
+		}
+		finally {
+			c.dispose();
+		}
+	}
+
+	@Test
+	public void pipelinedResponsesAreTerminatedOnClose() throws Exception {
+		CountDownLatch dispatched = new CountDownLatch(2);
+		CountDownLatch terminated = new CountDownLatch(2);
+		NettyContext c =
+				HttpServer.create(opts -> opts.listen(0)
+				                              .pipelining(2))
+				          .newHandler((req, res) -> {
+					          req.context()
+					             .onClose(terminated::countDown);
+					          dispatched.countDown();
+					          //never answers, the second response waits for the first
+					          return res.sendString(Mono.never());
+				          })
+				          .block();
+
+		try (Socket socket = new Socket("localhost", c.address().getPort())) {
+			OutputStream out = socket.getOutputStream();
+			out.write(("GET /1 HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+					"GET /2 HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+					"GET /3 HTTP/1.1\r\nHost: localhost\r\n\r\n")
+					.getBytes(StandardCharsets.US_ASCII));
+			out.flush();
+			Assert.assertTrue(dispatched.await(5, TimeUnit.SECONDS));
+		}
+
+		Assert.assertTrue(terminated.await(5, TimeUnit.SECONDS));
+		c.dispose();
+	}
+
+	@Test
+	public void http2ServerAcceptsHttp11() {
+		NettyContext c = HttpServer.create(opts -> opts.listen(0)
+		                                               .http2(100))
+		                           .newHandler((req, res) -> res.sendString(Mono.just("Hello")))
+		                           .block();
+
+		StepVerifier.create(HttpClient.create(c.address()
+		                                       .getPort())
+		                              .get("/")
+		                              .flatMap(r -> r.receive()
+		                                             .aggregate()
+		                                             .asString()))
+		            .expectNext("Hello")
+		            .expectComplete()
+		            .verify();
+
+		c.dispose();
+	}
+
+	@Test
+	public void http2ClientMultiplexesStreams() {
+		NettyContext c = HttpServer.create(opts -> opts.listen(0)
+		                                               .http2(100))
+		                           .newHandler((req, res) -> res.sendString(Mono.just("Hello " + req.uri())))
+		                           .block();
+
+		PoolResources pool = PoolResources.http2("h2");
+		HttpClient client = HttpClient.create(opts -> opts.connect("localhost",
+				c.address()
+				 .getPort())
+		                                                  .poolResources(pool));
+
+		List<Channel> connections = new CopyOnWriteArrayList<>();
+		StepVerifier.create(Flux.range(1, 10)
+		                        .flatMap(i -> client.get("/" + i)
+		                                            .flatMap(r -> {
+			                                            connections.add(r.channel()
+			                                                             .parent());
+			                                            return r.receive()
+			                                                    .aggregate()
+			                                                    .asString();
+		                                            })))
+		            .expectNextCount(10)
+		            .expectComplete()
+		            .verify(Duration.ofSeconds(30));
+
+		Assert.assertEquals(connections.size(), 10);
+		Assert.assertEquals(new HashSet<>(connections).size(), 1);
+
+		pool.dispose();
+		c.dispose();
+	}
+
+	@Test
+	public void http2StreamsRespondIndependently() {
+		MonoProcessor<Void> slowReceived = MonoProcessor.create();
+		MonoProcessor<String> fastReceived = MonoProcessor.create();
+		NettyContext c = HttpServer.create(opts -> opts.listen(0)
+		                                               .http2(100))
+		                           .newRouter(routes -> routes.get("/slow", (req, res) -> {
+			                           slowReceived.onComplete();
+			                           //only answers once the subsequent stream response is received
+			                           return res.sendString(fastReceived.map(s -> "slow after " + s));
+		                           })
+		                                                      .get("/fast", (req, res) -> res.sendString(Mono.just("fast"))))
+		                           .block();
+
+		PoolResources pool = PoolResources.http2("h2");
+		HttpClient client = HttpClient.create(opts -> opts.connect("localhost",
+				c.address()
+				 .getPort())
+		                                                  .poolResources(pool));
+
+		StepVerifier.create(Flux.merge(client.get("/slow")
+		                                     .flatMap(r -> r.receive()
+		                                                    .aggregate()
+		                                                    .asString()),
+				slowReceived.then(() -> client.get("/fast"))
+				            .flatMap(r -> r.receive()
+				                           .aggregate()
+				                           .asString())
+				            .doOnNext(fastReceived::onNext)))
+		            .expectNext("fast", "slow after fast")
+		            .expectComplete()
+		            .verify(Duration.ofSeconds(30));
+
+		pool.dispose();
+		c.dispose();
+	}
+
+	@Test
+	public void http2RequestBodyIsStreamed() {
+		NettyContext c = HttpServer.create(opts -> opts.listen(0)
+		                                               .http2(100))
+		                           .newHandler((req, res) -> res.sendString(req.receive()
+		                                                                       .map(ByteBuf::readableBytes)
+		                                                                       .reduce(0, Integer::sum)
+		                                                                       .map(String::valueOf)))
+		                           .block();
+
+		PoolResources pool = PoolResources.http2("h2");
+		HttpClient client = HttpClient.create(opts -> opts.connect("localhost",
+				c.address()
+				 .getPort())
+		                                                  .poolResources(pool));
+
+		char[] chunk = new char[1024];
+		Arrays.fill(chunk, 'a');
+		//larger than the initial stream window, only sent as the server reads it
+		StepVerifier.create(client.post("/upload",
+				req -> req.sendString(Flux.range(0, 2048)
+				                          .map(i -> new String(chunk))))
+		                          .flatMap(r -> r.receive()
+		                                         .aggregate()
+		                                         .asString()))
+		            .expectNext(String.valueOf(2048 * 1024))
+		            .expectComplete()
+		            .verify(Duration.ofSeconds(30));
+
+		pool.dispose();
+		c.dispose();
+	}
+
+	@Test
+	public void compressedResponses() throws Exception {
+		NettyContext c = HttpServer.create(opts -> opts.listen(0)
+		                                               .compression(16))
+		                           .newRouter(routes -> routes
+				                           .get("/stream", (req, res) -> res.header("Content-Type", "text/plain")
+				                                                            .sendString(Flux.just("Hello ", "World ")
+				                                                                            .repeat(99)))
+				                           .get("/full", (req, res) -> res.header("Content-Type", "application/json; charset=utf-8")
+				                                                          .sendString(Mono.just("{\"hello\": \"world\"}")))
+				                           .get("/small", (req, res) -> res.header("Content-Type", "text/plain")
+				                                                           .sendString(Mono.just("tiny")))
+				                           .get("/binary", (req, res) -> res.header("Content-Type", "image/png")
+				                                                            .sendString(Mono.just("not really a png"))))
+		                           .block();
+
+		HttpClient client = HttpClient.create(c.address()
+		                                       .getPort());
+
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			expected.append("Hello World ");
+		}
+		Assert.assertEquals(getGzip(client, "/stream", "gzip"), expected.toString());
+		Assert.assertEquals(getGzip(client, "/full", "deflate;q=0.5, gzip"),
+				"{\"hello\": \"world\"}");
+
+		HttpClientResponse small = client.get("/small",
+				req -> req.header("Accept-Encoding", "gzip")
+				          .sendHeaders())
+		                                 .block();
+		Assert.assertNull(small.responseHeaders()
+		                       .get(HttpHeaderNames.CONTENT_ENCODING));
+		small.dispose();
+
+		HttpClientResponse binary = client.get("/binary",
+				req -> req.header("Accept-Encoding", "gzip")
+				          .sendHeaders())
+		                                  .block();
+		Assert.assertNull(binary.responseHeaders()
+		                        .get(HttpHeaderNames.CONTENT_ENCODING));
+		binary.dispose();
+
+		c.dispose();
+	}
+
+	static String getGzip(HttpClient client, String uri, String acceptEncoding)
+			throws Exception {
+		HttpClientResponse response = client.get(uri,
+				req -> req.header("Accept-Encoding", acceptEncoding)
+				          .sendHeaders())
+		                                    .block();
+		Assert.assertEquals(response.responseHeaders()
+		                            .get(HttpHeaderNames.CONTENT_ENCODING), "gzip");
+		byte[] body = response.receive()
+		                      .aggregate()
+		                      .asByteArray()
+		                      .block();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+			byte[] buffer = new byte[1024];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+		}
+		return out.toString("UTF-8");
+	}
+
 	@Test
 	public void keepAlive() {
 		NettyContext c = HttpServer.create(0)
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package reactor.ipc.netty.http.server;
+
+import java.nio.charset.StandardCharsets;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * @author agent
+ */
+public class HttpResponseBufferHandlerTests {
+
+	@Test
+	public void bodylessResponsesArePassedThrough() {
+		EmbeddedChannel channel = new EmbeddedChannel(new HttpResponseBufferHandler(1024));
+		for (HttpMethod method : new HttpMethod[]{HttpMethod.HEAD, HttpMethod.GET, HttpMethod.GET, HttpMethod.GET}) {
+			channel.writeInbound(new DefaultHttpRequest(HttpVersion.HTTP_1_1, method, "/"));
+			channel.readInbound();
+		}
+
+		assertPassedThrough(channel, HttpResponseStatus.OK);
+		assertPassedThrough(channel, HttpResponseStatus.NO_CONTENT);
+		assertPassedThrough(channel, HttpResponseStatus.NOT_MODIFIED);
+
+		channel.writeOutbound(new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK),
+				Unpooled.copiedBuffer("Hello", StandardCharsets.UTF_8),
+				LastHttpContent.EMPTY_LAST_CONTENT);
+		FullHttpResponse full = channel.readOutbound();
+		assertThat(full.headers()
+		               .get(HttpHeaderNames.CONTENT_LENGTH), is("5"));
+		assertThat(full.content()
+		               .toString(StandardCharsets.UTF_8), is("Hello"));
+		full.release();
+
+		channel.finish();
+	}
+
+	@Test
+	public void heldContentWritesCompleteBeforeTheLastFrame() {
+		EmbeddedChannel channel = new EmbeddedChannel(new HttpResponseBufferHandler(1024));
+		channel.writeInbound(new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/"));
+		channel.readInbound();
+
+		ChannelFuture response = channel.writeAndFlush(new DefaultHttpResponse(HttpVersion.HTTP_1_1,
+				HttpResponseStatus.OK));
+		ChannelFuture content = channel.writeAndFlush(Unpooled.copiedBuffer("Hello",
+				StandardCharsets.UTF_8));
+
+		assertThat(content.isSuccess(), is(true));
+		assertThat(response.isDone(), is(false));
+		assertThat(channel.outboundMessages()
+		                  .isEmpty(), is(true));
+
+		channel.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+		assertThat(response.isSuccess(), is(true));
+		FullHttpResponse full = channel.readOutbound();
+		assertThat(full.content()
+		               .toString(StandardCharsets.UTF_8), is("Hello"));
+		full.release();
+
+		channel.finish();
+	}
+
+	static void assertPassedThrough(EmbeddedChannel channel, HttpResponseStatus status) {
+		HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, status);
+		channel.writeOutbound(response, LastHttpContent.EMPTY_LAST_CONTENT);
+		assertThat(channel.readOutbound(), sameInstance(response));
+		assertThat(HttpUtil.isContentLengthSet(response), is(false));
+		assertThat(channel.readOutbound(), sameInstance(LastHttpContent.EMPTY_LAST_CONTENT));
+	}
+}
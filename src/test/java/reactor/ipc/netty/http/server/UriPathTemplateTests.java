@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2011-2016 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package reactor.ipc.netty.http.server;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class UriPathTemplateTests {
+
+	@Test
+	public void matchExtractsVariables() {
+		HttpPredicate.UriPathTemplate template =
+				new HttpPredicate.UriPathTemplate("/users/{id}/orders/{order}");
+
+		Map<String, String> params = template.match("/users/42/orders/7");
+
+		assertEquals("42", params.get("id"));
+		assertEquals("7", params.get("order"));
+		assertTrue(template.matches("/users/42/orders/7"));
+		assertFalse(template.matches("/users/42"));
+		assertTrue(template.match("/users/42").isEmpty());
+	}
+
+	@Test
+	public void cacheIsBounded() {
+		HttpPredicate.UriPathTemplate template =
+				new HttpPredicate.UriPathTemplate("/users/{id}", 32);
+
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(String.valueOf(i),
+					template.match("/users/" + i)
+					        .get("id"));
+		}
+
+		assertTrue(template.cacheSize() <= 32);
+		assertEquals(0d, template.cacheHitRate(), 0d);
+
+		template.match("/users/999");
+		assertTrue(template.cacheHitRate() > 0d);
+	}
+
+	@Test
+	public void cacheCanBeDisabled() {
+		HttpPredicate.UriPathTemplate template =
+				new HttpPredicate.UriPathTemplate("/users/{id}", 0);
+
+		assertEquals("1", template.match("/users/1").get("id"));
+		assertEquals("1", template.match("/users/1").get("id"));
+		assertEquals(0, template.cacheSize());
+		assertEquals(0d, template.cacheHitRate(), 0d);
+	}
+}
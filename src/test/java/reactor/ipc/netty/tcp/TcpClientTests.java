@@ -24,14 +24,21 @@ import java.nio.channels.SocketChannel;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 
+import io.netty.channel.Channel;
+import io.netty.channel.pool.ChannelPool;
 import io.netty.handler.codec.LineBasedFrameDecoder;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -43,10 +50,15 @@ import reactor.ipc.netty.NettyContext;
 import reactor.ipc.netty.NettyPipeline;
 import reactor.ipc.netty.SocketUtils;
 import reactor.ipc.netty.http.client.HttpClient;
+import reactor.ipc.netty.options.ClientOptions;
+import reactor.ipc.netty.resources.PoolMetrics;
+import reactor.ipc.netty.resources.PoolResources;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -353,6 +365,325 @@ public class TcpClientTests {
 		client.dispose();
 	}
 
+	@Test
+	public void fixedPoolBoundsAcquiresAndEvictsIdleConnections() throws Exception {
+		PoolResources resources = PoolResources.fixed("bounded",
+				opts -> opts.maxConnections(1)
+				            .maxPendingAcquires(1)
+				            .acquireTimeout(Duration.ofMillis(500))
+				            .maxIdleTime(Duration.ofMillis(300)));
+		ChannelPool pool = echoPool(resources);
+
+		Channel first = pool.acquire()
+		                    .get(5, TimeUnit.SECONDS);
+		assertTrue(first.isActive());
+
+		Future<Channel> timedOut = pool.acquire();
+		Future<Channel> rejected = pool.acquire();
+		assertTrue(rejected.await(1, TimeUnit.SECONDS));
+		assertThat(rejected.cause(), instanceOf(IllegalStateException.class));
+		assertTrue(timedOut.await(5, TimeUnit.SECONDS));
+		assertThat(timedOut.cause(), instanceOf(TimeoutException.class));
+
+		pool.release(first)
+		    .get(5, TimeUnit.SECONDS);
+		Channel second = pool.acquire()
+		                     .get(5, TimeUnit.SECONDS);
+		assertThat(second, is(first));
+		pool.release(second)
+		    .get(5, TimeUnit.SECONDS);
+
+		assertTrue(first.closeFuture()
+		                .await(5, TimeUnit.SECONDS));
+
+		resources.dispose();
+	}
+
+	@Test
+	public void poolMetricsCountConnectionsOnce() throws Exception {
+		PoolResources resources =
+				PoolResources.fixed("metrics", opts -> opts.maxConnections(1));
+		ChannelPool pool = echoPool(resources);
+		PoolMetrics metrics = echoPoolMetrics(resources);
+
+		Channel channel = pool.acquire()
+		                      .get(5, TimeUnit.SECONDS);
+		assertThat(metrics.totalConnections(), is(1));
+		assertThat(metrics.activeConnections(), is(1));
+		assertThat(metrics.idleConnections(), is(0));
+		assertThat(metrics.createdConnections(), is(1L));
+
+		Future<Channel> pending = pool.acquire();
+		assertThat(metrics.pendingAcquires(), is(1));
+
+		pool.release(channel)
+		    .get(5, TimeUnit.SECONDS);
+		assertThat(pending.get(5, TimeUnit.SECONDS), is(channel));
+		assertThat(metrics.pendingAcquires(), is(0));
+		assertThat(metrics.activeConnections(), is(1));
+		assertThat(metrics.acquiredConnections(), is(2L));
+		assertThat(Arrays.stream(metrics.acquireLatencyHistogram())
+		                 .sum(), is(2L));
+
+		pool.release(channel)
+		    .get(5, TimeUnit.SECONDS);
+		assertThat(metrics.activeConnections(), is(0));
+		assertThat(metrics.idleConnections(), is(1));
+
+		CountDownLatch closed = new CountDownLatch(1);
+		channel.close()
+		       .addListener(f -> closed.countDown());
+		assertTrue(closed.await(5, TimeUnit.SECONDS));
+		assertThat(metrics.totalConnections(), is(0));
+		assertThat(metrics.closedConnections(), is(1L));
+		assertThat(metrics.evictedConnections(), is(1L));
+		assertThat(metrics.createdConnections(), is(1L));
+
+		resources.dispose();
+	}
+
+	@Test
+	public void fixedPoolFreesConnectionsClosedWhileAcquired() throws Exception {
+		PoolResources resources = PoolResources.fixed("closed",
+				opts -> opts.maxConnections(1)
+				            .acquireTimeout(Duration.ofSeconds(1)));
+		ChannelPool pool = echoPool(resources);
+		PoolMetrics metrics = echoPoolMetrics(resources);
+
+		Channel channel = pool.acquire()
+		                      .get(5, TimeUnit.SECONDS);
+		Future<Channel> pending = pool.acquire();
+
+		channel.close()
+		       .await(5, TimeUnit.SECONDS);
+		Channel next = pending.get(5, TimeUnit.SECONDS);
+		assertThat(next, not(channel));
+
+		//releasing the closed connection must not free its slot a second time
+		pool.release(channel)
+		    .get(5, TimeUnit.SECONDS);
+		Future<Channel> exceeding = pool.acquire();
+		assertTrue(exceeding.await(5, TimeUnit.SECONDS));
+		assertThat(exceeding.cause(), instanceOf(TimeoutException.class));
+		assertThat(metrics.totalConnections(), is(1));
+
+		pool.release(next)
+		    .get(5, TimeUnit.SECONDS);
+		resources.dispose();
+	}
+
+	@Test
+	public void affinePoolPrefersConnectionsOfTheCallingEventLoop() throws Exception {
+		PoolResources resources = PoolResources.affine("affine");
+		ChannelPool pool = echoPool(resources);
+
+		Iterator<EventExecutor> loops = TcpResources.get()
+		                                            .onClient(false)
+		                                            .iterator();
+		EventExecutor loopA = loops.next();
+		EventExecutor loopB = loops.next();
+
+		Channel first = loopA.submit(() -> pool.acquire())
+		                     .get(5, TimeUnit.SECONDS)
+		                     .get(5, TimeUnit.SECONDS);
+		assertThat(first.eventLoop(), is(loopA));
+		pool.release(first)
+		    .get(5, TimeUnit.SECONDS);
+
+		Channel reused = loopA.submit(() -> pool.acquire())
+		                      .get(5, TimeUnit.SECONDS)
+		                      .get(5, TimeUnit.SECONDS);
+		assertThat(reused, is(first));
+		pool.release(reused)
+		    .get(5, TimeUnit.SECONDS);
+
+		Channel stolen = loopB.submit(() -> pool.acquire())
+		                      .get(5, TimeUnit.SECONDS)
+		                      .get(5, TimeUnit.SECONDS);
+		assertThat(stolen, is(first));
+
+		Channel created = loopB.submit(() -> pool.acquire())
+		                       .get(5, TimeUnit.SECONDS)
+		                       .get(5, TimeUnit.SECONDS);
+		assertThat(created, not(first));
+		assertThat(created.eventLoop(), is(loopB));
+
+		pool.release(stolen)
+		    .get(5, TimeUnit.SECONDS);
+		pool.release(created)
+		    .get(5, TimeUnit.SECONDS);
+		resources.dispose();
+	}
+
+	@Test
+	public void poolAcquiresCompleteOnTheCallingEventLoop() throws Exception {
+		PoolResources resources = PoolResources.affine("calling");
+		ChannelPool pool = echoPool(resources);
+
+		Iterator<EventExecutor> loops = TcpResources.get()
+		                                            .onClient(false)
+		                                            .iterator();
+		loops.next();
+		EventExecutor loop = loops.next();
+
+		for (int i = 0; i < 2; i++) {
+			CompletableFuture<Boolean> inLoop = new CompletableFuture<>();
+			Future<Channel> acquired = loop.submit(() -> pool.acquire()
+			                                                 .addListener(f -> inLoop.complete(loop.inEventLoop())))
+			                               .get(5, TimeUnit.SECONDS);
+			assertTrue(inLoop.get(5, TimeUnit.SECONDS));
+			pool.release(acquired.get(5, TimeUnit.SECONDS))
+			    .get(5, TimeUnit.SECONDS);
+		}
+		resources.dispose();
+	}
+
+	@Test
+	public void fixedPoolKeepsMinimumIdleConnectionsOpen() throws Exception {
+		CountDownLatch warm = new CountDownLatch(2);
+		CountDownLatch replaced = new CountDownLatch(3);
+		NettyContext server = TcpServer.create(0)
+		                               .newHandler((in, out) -> {
+			                               warm.countDown();
+			                               replaced.countDown();
+			                               return Mono.never();
+		                               })
+		                               .block(Duration.ofSeconds(5));
+		int port = server.address()
+		                 .getPort();
+		PoolResources resources = PoolResources.fixed("warm",
+				opts -> opts.maxConnections(2)
+				            .minIdle(2));
+		ChannelPool pool = resources.selectOrCreate(new InetSocketAddress("localhost",
+				port), poolOptions());
+		PoolMetrics metrics = resources.metrics()
+		                               .get(InetSocketAddress.createUnresolved("localhost",
+				                               port));
+
+		//the minimum idle connections saturate the pool: acquires wait for them
+		assertTrue(warm.await(5, TimeUnit.SECONDS));
+		Channel first = pool.acquire()
+		                    .get(5, TimeUnit.SECONDS);
+		Channel second = pool.acquire()
+		                     .get(5, TimeUnit.SECONDS);
+		assertThat(metrics.createdConnections(), is(2L));
+		pool.release(first)
+		    .get(5, TimeUnit.SECONDS);
+		pool.release(second)
+		    .get(5, TimeUnit.SECONDS);
+
+		//closing an idle connection opens its replacement
+		first.close();
+		assertTrue(replaced.await(5, TimeUnit.SECONDS));
+		assertThat(metrics.createdConnections(), is(3L));
+
+		resources.dispose();
+		server.dispose();
+	}
+
+	@Test
+	public void poolsAreKeyedByHostAndPortAndEvicted() throws Exception {
+		ClientOptions options = poolOptions();
+		PoolResources resources = PoolResources.fixed("hosts",
+				opts -> opts.maxPools(1)
+				            .maxPoolIdleTime(Duration.ofMillis(100)));
+
+		ChannelPool pool = echoPool(resources);
+		assertThat(resources.selectOrCreate(InetSocketAddress.createUnresolved("LOCALHOST",
+				echoServerPort), options), is(pool));
+		assertThat(resources.metrics()
+		                    .size(), is(1));
+
+		InetSocketAddress address = new InetSocketAddress("127.0.0.1", echoServerPort);
+		ChannelPool other = resources.selectOrCreate(address, options);
+		assertThat(resources.metrics()
+		                    .size(), is(1));
+		assertTrue(resources.metrics()
+		                    .containsKey(InetSocketAddress.createUnresolved("127.0.0.1",
+				                    echoServerPort)));
+
+		//select again once the pool idle time has elapsed
+		ChannelPool reselected = TcpResources.get()
+		                                     .onClient(false)
+		                                     .next()
+		                                     .schedule(() -> resources.selectOrCreate(address,
+				                                     options), 250, TimeUnit.MILLISECONDS)
+		                                     .get(5, TimeUnit.SECONDS);
+		assertThat(reselected, not(other));
+
+		resources.dispose();
+	}
+
+	@Test
+	public void leastRecentlyUsedEvictionPrefersEmptyPools() throws Exception {
+		ClientOptions options = poolOptions();
+		PoolResources resources = PoolResources.fixed("lru", opts -> opts.maxPools(2));
+
+		ChannelPool busy = echoPool(resources);
+		Channel channel = busy.acquire()
+		                      .get(5, TimeUnit.SECONDS);
+		ChannelPool empty =
+				resources.selectOrCreate(new InetSocketAddress("127.0.0.1", echoServerPort),
+						options);
+		resources.selectOrCreate(new InetSocketAddress("localhost", abortServerPort),
+				options);
+
+		assertTrue(resources.metrics()
+		                    .containsKey(InetSocketAddress.createUnresolved("localhost",
+				                    echoServerPort)));
+		assertThat(resources.metrics()
+		                    .containsKey(InetSocketAddress.createUnresolved("127.0.0.1",
+				                    echoServerPort)), is(false));
+
+		//an evicted pool still selected by a caller acquires from its replacement
+		Channel replaced = empty.acquire()
+		                        .get(5, TimeUnit.SECONDS);
+		assertTrue(replaced.isActive());
+
+		busy.release(channel)
+		    .get(5, TimeUnit.SECONDS);
+		resources.dispose();
+	}
+
+	@Test
+	public void proxiedAndDirectConnectionsArePooledApart() {
+		ClientOptions proxied = poolOptions().proxy(ClientOptions.Proxy.SOCKS5,
+				"localhost",
+				abortServerPort);
+		PoolResources resources = PoolResources.fixed("proxy");
+		InetSocketAddress address =
+				InetSocketAddress.createUnresolved("localhost", echoServerPort);
+
+		ChannelPool pool = resources.selectOrCreate(address, poolOptions());
+		assertThat(resources.selectOrCreate(address, proxied), not(pool));
+		assertThat(resources.selectOrCreate(address, proxied),
+				is(resources.selectOrCreate(address, proxied)));
+		assertThat(resources.metrics()
+		                    .size(), is(2));
+
+		resources.dispose();
+	}
+
+	/**
+	 * Return the {@link ClientOptions} of the pool tests, connecting with the NIO
+	 * {@link TcpResources} client event loops.
+	 */
+	static ClientOptions poolOptions() {
+		return ClientOptions.create()
+		                    .loopResources(TcpResources.get())
+		                    .preferNative(false);
+	}
+
+	ChannelPool echoPool(PoolResources resources) {
+		return resources.selectOrCreate(new InetSocketAddress("localhost", echoServerPort),
+				poolOptions());
+	}
+
+	PoolMetrics echoPoolMetrics(PoolResources resources) {
+		return resources.metrics()
+		                .get(InetSocketAddress.createUnresolved("localhost", echoServerPort));
+	}
+
 	@Test
 	public void nettyNetChannelAcceptsNettyChannelHandlers() throws InterruptedException {
 		HttpClient client = HttpClient.create();